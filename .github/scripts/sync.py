@@ -36,6 +36,8 @@ with open(env_file, "a") as myfile:
 # commands to sync the local repo in the runner to GCS central production bucket
 # -c flag : to compute and compare checksums (instead of comparing mtime) for files
 
-utilities.run_shell_command('gsutil -m rsync -d -c -r packages/ gs://' + central_bucket + '/packages/')
+# -x flag : to skip the gzip variants of specs that the packager writes, which are only published to s3
+utilities.run_shell_command('gsutil -m rsync -d -c -r -x "^[^/]+/[^/]+/spec\\.json\\.gz$" packages/ gs://' +
+                            central_bucket + '/packages/')
 utilities.run_shell_command('gsutil cp categories.json gs://' + central_bucket + '/categories.json')
 utilities.run_shell_command('gsutil cp packages.json gs://' + central_bucket + '/packages.json')
\ No newline at end of file
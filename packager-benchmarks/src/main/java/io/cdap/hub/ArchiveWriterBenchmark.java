@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the archive of a synthetic package version, which is what the packager does for each package version
+ * when it creates archives.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ArchiveWriterBenchmark {
+
+  @Param({ "65536", "8388608" })
+  private int jarSize;
+
+  @Param({ "1", "4" })
+  private int parallelism;
+
+  private File dir;
+  private File archiveFile;
+  private List<File> files;
+  private ArchiveWriter archiveWriter;
+
+  @Setup
+  public void setup() throws Exception {
+    dir = BenchmarkFiles.createTempDir();
+    File versionDir = SyntheticHub.builder(dir).setPackages(1).setVersions(1).setJarSize(jarSize).build()
+      .generate().get(0);
+    files = new ArrayList<>(Arrays.asList(versionDir.listFiles()));
+    files.sort(Packager.FILE_COMPARATOR);
+    archiveFile = new File(dir, "archive.zip");
+    archiveWriter = new ArchiveWriter(parallelism, false);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    BenchmarkFiles.delete(dir);
+  }
+
+  @Benchmark
+  public File write() throws Exception {
+    archiveWriter.write(archiveFile, files, 0L);
+    return archiveFile;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.Files;
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPKeyPair;
+import org.bouncycastle.openpgp.PGPKeyRingGenerator;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.operator.PGPDigestCalculator;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPContentSignerBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPDigestCalculatorProviderBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPKeyPair;
+import org.bouncycastle.openpgp.operator.jcajce.JcePBESecretKeyEncryptorBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Creates the files that benchmarks run against, so that benchmarks don't depend on anything outside the build.
+ */
+final class BenchmarkFiles {
+  static final String KEY_PASSWORD = "benchmark";
+
+  private BenchmarkFiles() {
+  }
+
+  static File createTempDir() {
+    return Files.createTempDir();
+  }
+
+  /**
+   * Writes a file of random bytes. The same seed always gives the same bytes.
+   */
+  static File writeRandomFile(File file, int size, long seed) throws IOException {
+    byte[] bytes = new byte[size];
+    new Random(seed).nextBytes(bytes);
+    Files.write(bytes, file);
+    return file;
+  }
+
+  /**
+   * Writes a keyring containing a new RSA signing key, encrypted with {@link #KEY_PASSWORD}.
+   *
+   * @return the id of the key
+   */
+  static long writeKeyring(File keyringFile) throws IOException, PGPException, GeneralSecurityException {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    PGPKeyPair keyPair = new JcaPGPKeyPair(PGPPublicKey.RSA_GENERAL, generator.generateKeyPair(), new Date());
+    PGPDigestCalculator sha1 = new JcaPGPDigestCalculatorProviderBuilder().build().get(HashAlgorithmTags.SHA1);
+    PGPKeyRingGenerator keyRingGenerator = new PGPKeyRingGenerator(
+      PGPSignature.POSITIVE_CERTIFICATION, keyPair, "benchmark", sha1, null, null,
+      new JcaPGPContentSignerBuilder(keyPair.getPublicKey().getAlgorithm(), HashAlgorithmTags.SHA256),
+      new JcePBESecretKeyEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256, sha1).build(KEY_PASSWORD.toCharArray()));
+    try (OutputStream os = new FileOutputStream(keyringFile)) {
+      keyRingGenerator.generateSecretKeyRing().encode(os);
+    }
+    return keyPair.getKeyID();
+  }
+
+  static void delete(File file) throws IOException {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Could not delete " + file);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the digests of a file that is not in the digest cache, which is the hashing the S3Publisher does to
+ * decide whether a file has to be pushed. Files above the default multipart threshold also get a multipart ETag.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DigestCacheBenchmark {
+
+  @Param({ "1048576", "67108864" })
+  private int fileSize;
+
+  private File dir;
+  private File file;
+
+  @Setup
+  public void setup() throws Exception {
+    dir = BenchmarkFiles.createTempDir();
+    file = BenchmarkFiles.writeRandomFile(new File(dir, "file.jar"), fileSize, 0L);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    BenchmarkFiles.delete(dir);
+  }
+
+  @Benchmark
+  public FileDigest get() throws Exception {
+    // a new cache every time, so that the digests are always computed
+    return DigestCache.inMemory(S3Publisher.DEFAULT_MULTIPART_THRESHOLD, S3Publisher.DEFAULT_MULTIPART_PART_SIZE)
+      .get(file);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a synthetic hub without signing or archiving, so that the time is spent reading specs and writing
+ * the catalogs. Each package has 5 versions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PackagerBenchmark {
+
+  @Param({ "100", "1000" })
+  private int packages;
+
+  @Param({ "false", "true" })
+  private boolean compactCatalogs;
+
+  private File dir;
+  private Packager packager;
+
+  @Setup
+  public void setup() throws Exception {
+    dir = BenchmarkFiles.createTempDir();
+    SyntheticHub.builder(dir).setPackages(packages).setVersions(5).setJarSize(1024).build().generate();
+    packager = Packager.builder(dir)
+      .setCreateZip(false)
+      .setWhitelist(Collections.<String>emptySet())
+      .setCompactCatalogs(compactCatalogs)
+      .build();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    BenchmarkFiles.delete(dir);
+  }
+
+  @Benchmark
+  public Hub build() throws Exception {
+    return packager.build();
+  }
+}
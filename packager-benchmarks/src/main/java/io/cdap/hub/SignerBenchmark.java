@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signs a single file, for files from the size of a spec to the size of a large jar.
+ * The Signer has no digest cache, so every invocation signs the file instead of reusing an earlier signature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SignerBenchmark {
+
+  @Param({ "1024", "1048576", "16777216" })
+  private int fileSize;
+
+  private File dir;
+  private File file;
+  private Signer signer;
+
+  @Setup
+  public void setup() throws Exception {
+    dir = BenchmarkFiles.createTempDir();
+    File keyringFile = new File(dir, "secring.gpg");
+    long keyId = BenchmarkFiles.writeKeyring(keyringFile);
+    signer = Signer.fromKeyFile(keyringFile, keyId, BenchmarkFiles.KEY_PASSWORD);
+    file = BenchmarkFiles.writeRandomFile(new File(dir, "file.jar"), fileSize, 0L);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    signer.close();
+    BenchmarkFiles.delete(dir);
+  }
+
+  @Benchmark
+  public File signFile() throws Exception {
+    return signer.signFile(file);
+  }
+}
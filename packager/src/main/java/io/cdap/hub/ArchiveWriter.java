@@ -0,0 +1,337 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Writes package archives, compressing entries in parallel.
+ *
+ * Each entry is compressed on its own into a single entry zip, using the same ZipOutputStream settings as writing
+ * the whole archive with one ZipOutputStream would. The local header and data of a zip entry do not depend on
+ * where in the zip the entry is, so these are copied into the archive in sorted order, followed by the central
+ * directory records with their offsets changed to the entry's position in the archive. This gives exactly the same
+ * bytes as writing the archive serially.
+ *
+ * Small entries are compressed in memory, and larger entries into temporary files, so that memory use does not grow
+ * with the size of the archive, or with the number of archives that are written at the same time.
+ */
+class ArchiveWriter {
+  // extensions of files that are already compressed, and are stored as is when storing compressed files is enabled
+  private static final Set<String> COMPRESSED_EXTENSIONS = ImmutableSet.of("jar", "zip", "gz", "png", "jpg", "jpeg",
+                                                                           "gif");
+  // sizes and offsets at or above this require zip64 records, which can't be stitched together
+  private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+  private static final int ZIP64_MAX_ENTRIES = 0xFFFF;
+  private static final int CEN_HEADER_SIZE = 46;
+  private static final int CEN_OFFSET_POSITION = 42;
+  private static final int END_HEADER_SIZE = 22;
+  private static final int END_SIGNATURE = 0x06054b50;
+  // files up to this size are compressed in memory, larger ones into a temporary file
+  private static final long IN_MEMORY_LIMIT = 64 * 1024;
+  @Nullable
+  private final ExecutorService executor;
+  private final boolean storeCompressedFiles;
+
+  /**
+   * @param parallelism number of entries to compress at the same time
+   * @param storeCompressedFiles whether to store files that are already compressed instead of deflating them.
+   *   This changes the bytes of archives that contain such files.
+   */
+  ArchiveWriter(int parallelism, boolean storeCompressedFiles) {
+    this.executor = parallelism == 1 ? null : ParallelTasks.newPool("archiver", parallelism);
+    this.storeCompressedFiles = storeCompressedFiles;
+  }
+
+  /**
+   * Writes a zip containing the given files and directories, with every entry using the given modified time.
+   * Directories are added recursively, with their contents in sorted order. The archive is written under a temporary
+   * name and then replaces any existing archive, so that an archive is never changed in place.
+   */
+  void write(File archiveFile, List<File> files, long time) throws IOException {
+    File tempFile = AtomicFiles.getTempFile(archiveFile);
+    try {
+      write(archiveFile, tempFile, files, time);
+      AtomicFiles.replace(tempFile, archiveFile);
+    } finally {
+      AtomicFiles.deleteTempFile(archiveFile);
+    }
+  }
+
+  // writes the archive into the output file
+  private void write(File archiveFile, File outputFile, List<File> files, long time) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    for (File file : files) {
+      addEntries(entries, file, "");
+    }
+
+    long totalSize = 0;
+    for (Entry entry : entries) {
+      totalSize += entry.file.length();
+    }
+    // zip64 archives are rare enough that they are just written serially
+    if (totalSize >= ZIP64_LIMIT || entries.size() >= ZIP64_MAX_ENTRIES) {
+      writeSerially(outputFile, entries, time);
+      return;
+    }
+
+    Queue<File> tempFiles = new ConcurrentLinkedQueue<>();
+    try (OutputStream os = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+      List<CompressedEntry> compressed = compressEntries(entries, time, tempFiles);
+      long[] offsets = new long[compressed.size()];
+      long offset = 0;
+      for (int i = 0; i < compressed.size(); i++) {
+        CompressedEntry entry = compressed.get(i);
+        entry.writeLocal(os);
+        offsets[i] = offset;
+        offset += entry.localLength;
+      }
+      if (offset >= ZIP64_LIMIT) {
+        throw new IOException(String.format("Archive %s is too large.", archiveFile));
+      }
+
+      long cenOffset = offset;
+      for (int i = 0; i < compressed.size(); i++) {
+        byte[] cen = compressed.get(i).cen;
+        writeInt(cen, CEN_OFFSET_POSITION, offsets[i]);
+        os.write(cen);
+        offset += cen.length;
+      }
+
+      byte[] end = new byte[END_HEADER_SIZE];
+      writeInt(end, 0, END_SIGNATURE);
+      writeShort(end, 8, entries.size());
+      writeShort(end, 10, entries.size());
+      writeInt(end, 12, offset - cenOffset);
+      writeInt(end, 16, cenOffset);
+      os.write(end);
+    } finally {
+      for (File tempFile : tempFiles) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  private void addEntries(List<Entry> entries, File file, String parent) throws IOException {
+    if (file.isDirectory()) {
+      String path = parent + file.getName() + "/";
+      entries.add(new Entry(file, path));
+      File[] children = file.listFiles();
+      if (children == null) {
+        throw new IOException("Unable to list files in directory " + file);
+      }
+      Arrays.sort(children, Packager.FILE_COMPARATOR);
+      for (File child : children) {
+        addEntries(entries, child, path);
+      }
+    } else {
+      entries.add(new Entry(file, parent + file.getName()));
+    }
+  }
+
+  // compresses every entry, adding the temporary files that are created to the given queue
+  private List<CompressedEntry> compressEntries(List<Entry> entries, final long time,
+                                                final Queue<File> tempFiles) throws IOException {
+    List<CompressedEntry> compressed = new ArrayList<>(entries.size());
+    if (executor == null || entries.size() == 1) {
+      for (Entry entry : entries) {
+        compressed.add(compress(entry, time, tempFiles));
+      }
+      return compressed;
+    }
+
+    List<Callable<CompressedEntry>> tasks = new ArrayList<>(entries.size());
+    for (final Entry entry : entries) {
+      tasks.add(new Callable<CompressedEntry>() {
+        @Override
+        public CompressedEntry call() throws Exception {
+          return compress(entry, time, tempFiles);
+        }
+      });
+    }
+    return ParallelTasks.invokeAll(executor, tasks);
+  }
+
+  // compresses the entry on its own into a zip that contains only that entry
+  private CompressedEntry compress(Entry entry, long time, Queue<File> tempFiles) throws IOException {
+    if (entry.file.length() <= IN_MEMORY_LIMIT) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream((int) entry.file.length() + 1024);
+      try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+        addEntry(zos, entry, time);
+      }
+      byte[] entryZip = bos.toByteArray();
+      int cenStart = readInt(entryZip, entryZip.length - END_HEADER_SIZE + 16);
+      int cenLength = readInt(entryZip, entryZip.length - END_HEADER_SIZE + 12);
+      return new CompressedEntry(Arrays.copyOf(entryZip, cenStart), null, cenStart,
+                                 Arrays.copyOfRange(entryZip, cenStart, cenStart + cenLength));
+    }
+
+    File tempFile = File.createTempFile("archive-entry", ".zip");
+    tempFiles.add(tempFile);
+    try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      addEntry(zos, entry, time);
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(tempFile, "r")) {
+      byte[] end = new byte[END_HEADER_SIZE];
+      raf.seek(raf.length() - END_HEADER_SIZE);
+      raf.readFully(end);
+      long cenStart = readInt(end, 16) & ZIP64_LIMIT;
+      byte[] cen = new byte[readInt(end, 12)];
+      raf.seek(cenStart);
+      raf.readFully(cen);
+      return new CompressedEntry(null, tempFile, cenStart, cen);
+    }
+  }
+
+  private void writeSerially(File archiveFile, List<Entry> entries, long time) throws IOException {
+    try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archiveFile)))) {
+      for (Entry entry : entries) {
+        addEntry(zos, entry, time);
+      }
+    }
+  }
+
+  private void addEntry(final ZipOutputStream zos, Entry entry, long time) throws IOException {
+    ZipEntry zipEntry = new ZipEntry(entry.path);
+    // set time to ensure bytes (and md5) are same for the zip
+    zipEntry.setTime(time);
+    if (entry.file.isDirectory()) {
+      zos.putNextEntry(zipEntry);
+      zos.closeEntry();
+      return;
+    }
+
+    if (storeCompressedFiles && isCompressed(entry.file)) {
+      // stored entries need their size and crc before any data is written
+      final CRC32 crc = new CRC32();
+      FileChunks.read(entry.file, new FileChunks.Consumer() {
+        @Override
+        public void accept(ByteBuffer chunk) {
+          crc.update(chunk);
+        }
+      });
+      zipEntry.setMethod(ZipEntry.STORED);
+      zipEntry.setSize(entry.file.length());
+      zipEntry.setCompressedSize(entry.file.length());
+      zipEntry.setCrc(crc.getValue());
+    }
+    zos.putNextEntry(zipEntry);
+    FileChunks.read(entry.file, new FileChunks.Consumer() {
+      @Override
+      public void accept(ByteBuffer chunk) throws IOException {
+        zos.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+      }
+    });
+    zos.closeEntry();
+  }
+
+  private static boolean isCompressed(File file) {
+    return COMPRESSED_EXTENSIONS.contains(Files.getFileExtension(file.getName()).toLowerCase(Locale.ROOT));
+  }
+
+  private static int readShort(byte[] bytes, int pos) {
+    return (bytes[pos] & 0xff) | ((bytes[pos + 1] & 0xff) << 8);
+  }
+
+  private static int readInt(byte[] bytes, int pos) {
+    return readShort(bytes, pos) | (readShort(bytes, pos + 2) << 16);
+  }
+
+  private static void writeShort(byte[] bytes, int pos, int value) {
+    bytes[pos] = (byte) value;
+    bytes[pos + 1] = (byte) (value >>> 8);
+  }
+
+  private static void writeInt(byte[] bytes, int pos, long value) {
+    writeShort(bytes, pos, (int) (value & 0xffff));
+    writeShort(bytes, pos + 2, (int) ((value >>> 16) & 0xffff));
+  }
+
+  /**
+   * An entry compressed into a zip of its own. The local header and data are kept either in memory or in a temporary
+   * file, and the central directory record is always kept in memory.
+   */
+  private static final class CompressedEntry {
+    @Nullable
+    private final byte[] local;
+    @Nullable
+    private final File tempFile;
+    private final long localLength;
+    private final byte[] cen;
+
+    private CompressedEntry(@Nullable byte[] local, @Nullable File tempFile, long localLength, byte[] cen) {
+      this.local = local;
+      this.tempFile = tempFile;
+      this.localLength = localLength;
+      this.cen = cen;
+    }
+
+    private void writeLocal(OutputStream os) throws IOException {
+      if (local != null) {
+        os.write(local);
+        return;
+      }
+      try (InputStream is = new FileInputStream(tempFile)) {
+        long copied = ByteStreams.copy(ByteStreams.limit(is, localLength), os);
+        if (copied != localLength) {
+          throw new IOException(String.format("Compressed entry %s was truncated.", tempFile));
+        }
+      }
+      // free up disk space as soon as the entry is in the archive
+      tempFile.delete();
+    }
+  }
+
+  /**
+   * A file or directory in the archive, along with its path in the archive.
+   */
+  private static class Entry {
+    private final File file;
+    private final String path;
+
+    private Entry(File file, String path) {
+      this.file = file;
+      this.path = path;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces files created by the build by writing them under a temporary name first, and then renaming them.
+ * A file is never changed in place, so anything that reads it, or shares it through a hard link like a hub
+ * directory published with links, sees either the old file or the new one, but never a partially written one.
+ */
+final class AtomicFiles {
+  private static final String TMP_PREFIX = ".";
+  private static final String TMP_SUFFIX = ".tmp";
+
+  private AtomicFiles() {
+  }
+
+  /**
+   * Returns the temporary file to write the contents of the given file to, before calling
+   * {@link #replace(File, File)}. It is in the same directory, so that it can be renamed atomically.
+   */
+  static File getTempFile(File file) {
+    return new File(file.getParentFile(), TMP_PREFIX + file.getName() + TMP_SUFFIX);
+  }
+
+  /**
+   * Returns whether a file with the given name is a temporary file, which was left behind if the build died while
+   * writing it.
+   */
+  static boolean isTempFile(String fileName) {
+    return fileName.startsWith(TMP_PREFIX) && fileName.endsWith(TMP_SUFFIX);
+  }
+
+  /**
+   * Renames the temporary file to the given file, replacing it if it exists.
+   */
+  static void replace(File tempFile, File file) throws IOException {
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+               StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Deletes the temporary file of the given file if it exists, after writing it failed.
+   */
+  static void deleteTempFile(File file) throws IOException {
+    Files.deleteIfExists(getTempFile(file).toPath());
+  }
+
+  /**
+   * Writes the bytes to the given file, replacing it if it exists.
+   */
+  static void write(byte[] bytes, File file) throws IOException {
+    File tempFile = getTempFile(file);
+    try {
+      Files.write(tempFile.toPath(), bytes);
+      replace(tempFile, file);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+}
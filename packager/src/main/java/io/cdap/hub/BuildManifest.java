@@ -0,0 +1,285 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Records the inputs and outputs of every package version built by the {@link Packager}, so that a later
+ * incremental build can skip signing and archiving package versions whose files have not changed.
+ *
+ * A file is considered unchanged if its size and modified time are the same as when it was built,
+ * or if its size and SHA-256 are the same. Signatures and archives are checked the same way, so that a deleted or
+ * modified output causes the package version to be rebuilt.
+ */
+public class BuildManifest {
+  private static final Logger LOG = LoggerFactory.getLogger(BuildManifest.class);
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private final File manifestFile;
+  private final DigestCache digestCache;
+  private final Contents previous;
+  private final Contents current;
+
+  /**
+   * Creates an empty manifest that will be saved to the given file. Every package version will be rebuilt.
+   *
+   * @param manifestFile the file the manifest is stored in
+   * @param signingKey the id of the key used to sign files, or null if files are not signed
+   * @param createZip whether package archives are created
+   * @param digestCache cache used to get the SHA-256 of files
+   */
+  public static BuildManifest create(File manifestFile, @Nullable String signingKey, boolean createZip,
+                                     DigestCache digestCache) {
+    return new BuildManifest(manifestFile, digestCache,
+                             new Contents(signingKey, createZip), new Contents(signingKey, createZip));
+  }
+
+  /**
+   * Loads the manifest from the given file. If the file does not exist, cannot be read, or was created with a different
+   * signing key or archive setting, the manifest will be empty and every package version will be rebuilt.
+   *
+   * @param manifestFile the file the manifest is stored in
+   * @param signingKey the id of the key used to sign files, or null if files are not signed
+   * @param createZip whether package archives are created
+   * @param digestCache cache used to get the SHA-256 of files
+   */
+  public static BuildManifest load(File manifestFile, @Nullable String signingKey, boolean createZip,
+                                   DigestCache digestCache) {
+    Contents current = new Contents(signingKey, createZip);
+    Contents previous = null;
+    if (manifestFile.isFile()) {
+      try (Reader reader = Files.newReader(manifestFile, StandardCharsets.UTF_8)) {
+        previous = GSON.fromJson(reader, Contents.class);
+      } catch (Exception e) {
+        LOG.warn("Unable to read build manifest {}. All packages will be rebuilt.", manifestFile, e);
+      }
+    }
+    if (previous == null || previous.versions == null ||
+      !Objects.equals(signingKey, previous.signingKey) || createZip != previous.createZip) {
+      previous = new Contents(signingKey, createZip);
+    }
+    return new BuildManifest(manifestFile, digestCache, previous, current);
+  }
+
+  private BuildManifest(File manifestFile, DigestCache digestCache, Contents previous, Contents current) {
+    this.manifestFile = manifestFile;
+    this.digestCache = digestCache;
+    this.previous = previous;
+    this.current = current;
+  }
+
+  /**
+   * Returns whether the package version was built before from exactly the same inputs, and all of its outputs
+   * still exist unchanged.
+   *
+   * @param name package name
+   * @param version package version
+   * @param inputs all files in the package version directory that are not created by the build
+   * @param signedFiles the inputs that should have a signature
+   * @param archive the package archive, or null if the package version does not have one
+   */
+  public boolean isUpToDate(String name, String version, Collection<File> inputs, Collection<File> signedFiles,
+                            @Nullable File archive) throws IOException {
+    VersionEntry entry = previous.versions.get(getKey(name, version));
+    if (entry == null || entry.inputs.size() != inputs.size()) {
+      return false;
+    }
+
+    Map<String, FileEntry> previousInputs = new TreeMap<>();
+    for (FileEntry fileEntry : entry.inputs) {
+      previousInputs.put(fileEntry.path, fileEntry);
+    }
+    for (File input : inputs) {
+      FileEntry fileEntry = previousInputs.get(getPath(name, version, input));
+      if (fileEntry == null || !matches(fileEntry, input)) {
+        return false;
+      }
+      boolean signed = signedFiles.contains(input);
+      if (signed != (fileEntry.signature != null) || signed && !signatureMatches(fileEntry, input)) {
+        return false;
+      }
+    }
+
+    if (archive == null) {
+      return entry.archive == null;
+    }
+    return entry.archive != null && matches(entry.archive, archive) &&
+      (entry.archive.signature == null || signatureMatches(entry.archive, archive));
+  }
+
+  /**
+   * Carries over the entry recorded by the previous build for a package version that is up to date.
+   */
+  public void carryOver(String name, String version) {
+    String key = getKey(name, version);
+    VersionEntry entry = previous.versions.get(key);
+    if (entry != null) {
+      synchronized (current) {
+        current.versions.put(key, entry);
+      }
+    }
+  }
+
+  /**
+   * Records the inputs and outputs of a package version that was just built.
+   *
+   * @param name package name
+   * @param version package version
+   * @param inputs all files in the package version directory that are not created by the build
+   * @param signatures mapping from each signed input to its signature
+   * @param archive the package archive and its signature, or null if the package version does not have one
+   */
+  public void record(String name, String version, Collection<File> inputs, Map<File, File> signatures,
+                     @Nullable SignedFile archive) throws IOException {
+    List<FileEntry> inputEntries = new ArrayList<>(inputs.size());
+    for (File input : inputs) {
+      inputEntries.add(createEntry(getPath(name, version, input), input, signatures.get(input)));
+    }
+    FileEntry archiveEntry = archive == null ? null :
+      createEntry(getPath(name, version, archive.getFile()), archive.getFile(), archive.getSignature());
+
+    synchronized (current) {
+      current.versions.put(getKey(name, version), new VersionEntry(inputEntries, archiveEntry));
+    }
+  }
+
+  /**
+   * Writes the package versions recorded during this build to the manifest file.
+   * Package versions that were not recorded or carried over are dropped.
+   */
+  public void save() throws IOException {
+    synchronized (current) {
+      try (Writer writer = Files.newWriter(manifestFile, StandardCharsets.UTF_8)) {
+        GSON.toJson(current, writer);
+      }
+    }
+    LOG.info("Saved build manifest {}", manifestFile);
+  }
+
+  /**
+   * Deletes the manifest file, if it exists.
+   */
+  public static void delete(File manifestFile) throws IOException {
+    if (manifestFile.exists()) {
+      LOG.info("Deleting build manifest {}", manifestFile);
+      if (!manifestFile.delete()) {
+        throw new IOException("Could not delete build manifest " + manifestFile);
+      }
+    }
+  }
+
+  private static String getKey(String name, String version) {
+    return name + "/" + version;
+  }
+
+  private static String getPath(String name, String version, File file) {
+    return "packages/" + getKey(name, version) + "/" + file.getName();
+  }
+
+  private FileEntry createEntry(String path, File file, @Nullable File signature) throws IOException {
+    return new FileEntry(path, file.length(), file.lastModified(), sha256(file),
+                         signature == null ? null : sha256(signature));
+  }
+
+  private boolean matches(FileEntry entry, File file) throws IOException {
+    if (!file.isFile() || file.length() != entry.size) {
+      return false;
+    }
+    // only hash the file if it was touched, since reading every file is what incremental builds are avoiding
+    return file.lastModified() == entry.modified || entry.sha256.equals(sha256(file));
+  }
+
+  private boolean signatureMatches(FileEntry entry, File file) throws IOException {
+    File signatureFile = getSignatureFile(file);
+    return signatureFile.isFile() && Objects.equals(entry.signature, sha256(signatureFile));
+  }
+
+  private String sha256(File file) throws IOException {
+    return digestCache.get(file).getSha256();
+  }
+
+  private static File getSignatureFile(File file) {
+    return new File(file.getParentFile(), file.getName() + ".asc");
+  }
+
+  /**
+   * What is serialized to the manifest file.
+   */
+  private static class Contents {
+    private final String signingKey;
+    private final boolean createZip;
+    private final Map<String, VersionEntry> versions;
+
+    private Contents(@Nullable String signingKey, boolean createZip) {
+      this.signingKey = signingKey;
+      this.createZip = createZip;
+      this.versions = new TreeMap<>();
+    }
+  }
+
+  /**
+   * Inputs and archive of a single package version.
+   */
+  private static class VersionEntry {
+    private final List<FileEntry> inputs;
+    @Nullable
+    private final FileEntry archive;
+
+    private VersionEntry(List<FileEntry> inputs, @Nullable FileEntry archive) {
+      this.inputs = Collections.unmodifiableList(inputs);
+      this.archive = archive;
+    }
+  }
+
+  /**
+   * Path, size, modified time, and SHA-256 of a file, plus the SHA-256 of its signature if it was signed.
+   */
+  private static class FileEntry {
+    private final String path;
+    private final long size;
+    private final long modified;
+    private final String sha256;
+    @Nullable
+    private final String signature;
+
+    private FileEntry(String path, long size, long modified, String sha256, @Nullable String signature) {
+      this.path = path;
+      this.size = size;
+      this.modified = modified;
+      this.sha256 = sha256;
+      this.signature = signature;
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import io.cdap.hub.spec.PackageMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps a feed of changes to the package catalog, so that clients can apply small deltas instead of downloading
+ * the entire catalog every time it changes.
+ *
+ *   catalog-deltas/head.json
+ *   catalog-deltas/&lt;sequence&gt;.json
+ *
+ * Each build compares the package catalog to a snapshot of the catalog from the previous build. If anything changed,
+ * a delta containing the packages that were added, updated, and removed is written with the next sequence number,
+ * and the head is moved to point to it. Only the most recent deltas are kept, so the head also contains the oldest
+ * sequence number that a client can catch up from. A client whose last applied sequence number is older than that
+ * must download the full catalog again.
+ *
+ * The snapshot is kept in the deltas directory, and is not deleted when the packager cleans. Builds that are published
+ * first continue from the published feed if it is ahead of the deltas directory, so the directory does not have to be
+ * kept between builds, like on CI. The head records the SHA-256 of the package catalog it was built with, and the
+ * published catalog is used as the snapshot if it matches. Sequence numbers never go backwards. If there is no
+ * snapshot to compare against, the feed starts over with the next sequence number, so that every client has to
+ * download the full catalog again.
+ */
+final class CatalogDeltas {
+  static final String DELTAS_DIR = "catalog-deltas";
+  static final String HEAD_NAME = "head.json";
+  static final int DEFAULT_MAX_DELTAS = 100;
+  private static final Logger LOG = LoggerFactory.getLogger(CatalogDeltas.class);
+  private static final String SNAPSHOT_NAME = "snapshot.json";
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private static final Type CATALOG_TYPE = new TypeToken<List<PackageMeta>>() { }.getType();
+
+  private CatalogDeltas() {
+  }
+
+  /**
+   * Writes a delta if the catalog changed since the previous build, and updates the head and snapshot.
+   *
+   * @param baseDir the directory containing the package catalog
+   * @param catalogFile the package catalog file
+   * @param catalog all packages in the catalog
+   * @param maxDeltas maximum number of deltas to keep. Older deltas are deleted.
+   * @return all deltas that are kept, keyed by their path relative to the base directory, followed by the head
+   */
+  static Map<String, File> write(File baseDir, File catalogFile, List<PackageMeta> catalog,
+                                 int maxDeltas) throws IOException {
+    File deltasDir = new File(baseDir, DELTAS_DIR);
+    if (!deltasDir.isDirectory() && !deltasDir.mkdirs()) {
+      throw new IOException("Unable to create directory " + deltasDir);
+    }
+    File headFile = new File(deltasDir, HEAD_NAME);
+    File snapshotFile = new File(deltasDir, SNAPSHOT_NAME);
+    String catalogSha256 = sha256(catalogFile);
+
+    Head head = read(headFile, Head.class);
+    List<PackageMeta> previous = read(snapshotFile, CATALOG_TYPE);
+    if (head == null || previous == null) {
+      // nothing to compare against, so the current catalog is the baseline that future deltas are relative to.
+      // move to the next sequence number, since clients at the previous one may have a different catalog
+      LOG.info("No previous catalog snapshot found in {}. Starting the delta feed over.", deltasDir);
+      long sequence = head == null ? 0 : head.sequence + 1;
+      head = new Head(sequence, sequence, catalog.size(), catalogSha256);
+    } else {
+      Delta delta = diff(head.sequence + 1, previous, catalog);
+      if (delta.isEmpty()) {
+        LOG.info("Package catalog has not changed since delta {}", head.sequence);
+        head = new Head(head.sequence, head.oldestSequence, catalog.size(), catalogSha256);
+      } else {
+        writeJson(new File(deltasDir, delta.sequence + ".json"), delta);
+        LOG.info("Created catalog delta {} with {} added, {} updated, and {} removed packages",
+                 delta.sequence, delta.added.size(), delta.updated.size(), delta.removed.size());
+        head = new Head(delta.sequence, Math.max(head.oldestSequence, delta.sequence - maxDeltas), catalog.size(),
+                        catalogSha256);
+      }
+    }
+
+    Map<String, File> files = new LinkedHashMap<>();
+    for (long sequence = head.oldestSequence + 1; sequence <= head.sequence; sequence++) {
+      File deltaFile = new File(deltasDir, sequence + ".json");
+      if (deltaFile.isFile()) {
+        files.put(DELTAS_DIR + "/" + deltaFile.getName(), deltaFile);
+      }
+    }
+    deleteExpired(deltasDir, head.oldestSequence);
+    writeJson(snapshotFile, catalog);
+    writeJson(headFile, head);
+    files.put(DELTAS_DIR + "/" + HEAD_NAME, headFile);
+    return files;
+  }
+
+  /**
+   * Continues from the delta feed of the published hub, if it is ahead of the feed in the base directory. The
+   * published head and deltas are copied into the deltas directory. The published package catalog becomes the
+   * snapshot if it is the catalog the head was built with, otherwise the next build starts the feed over.
+   *
+   * @param baseDir the directory containing the package catalog
+   * @param publisher the publisher the hub will be published with
+   */
+  static void fetchPublished(File baseDir, Publisher publisher) throws IOException {
+    File deltasDir = new File(baseDir, DELTAS_DIR);
+    if (!deltasDir.isDirectory() && !deltasDir.mkdirs()) {
+      throw new IOException("Unable to create directory " + deltasDir);
+    }
+    File headFile = new File(deltasDir, HEAD_NAME);
+    File snapshotFile = new File(deltasDir, SNAPSHOT_NAME);
+    File tempDir = Files.createTempDir();
+    try {
+      File publishedHeadFile = new File(tempDir, HEAD_NAME);
+      if (!publisher.fetch(DELTAS_DIR + "/" + HEAD_NAME, publishedHeadFile)) {
+        LOG.info("The hub does not have a published catalog delta feed yet.");
+        return;
+      }
+      Head published = read(publishedHeadFile, Head.class);
+      Head local = read(headFile, Head.class);
+      if (published == null || local != null && local.sequence >= published.sequence) {
+        return;
+      }
+
+      LOG.info("Continuing from published catalog delta {}", published.sequence);
+      for (long sequence = published.oldestSequence + 1; sequence <= published.sequence; sequence++) {
+        File deltaFile = new File(deltasDir, sequence + ".json");
+        if (!publisher.fetch(DELTAS_DIR + "/" + deltaFile.getName(), deltaFile) && deltaFile.exists() &&
+          !deltaFile.delete()) {
+          throw new IOException("Could not delete catalog delta " + deltaFile);
+        }
+      }
+      File publishedCatalog = new File(tempDir, Packager.PACKAGE_CATALOG_NAME);
+      if (published.catalogSha256 != null && publisher.fetch(Packager.PACKAGE_CATALOG_NAME, publishedCatalog) &&
+        published.catalogSha256.equals(sha256(publishedCatalog))) {
+        Files.copy(publishedCatalog, snapshotFile);
+      } else {
+        LOG.warn("The published package catalog is not the one delta {} was built with.", published.sequence);
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+          throw new IOException("Could not delete catalog snapshot " + snapshotFile);
+        }
+      }
+      Files.copy(publishedHeadFile, headFile);
+    } finally {
+      for (File file : Files.fileTreeTraverser().postOrderTraversal(tempDir)) {
+        file.delete();
+      }
+    }
+  }
+
+  private static String sha256(File file) throws IOException {
+    return Files.hash(file, Hashing.sha256()).toString();
+  }
+
+  private static Delta diff(long sequence, List<PackageMeta> previous, List<PackageMeta> current) {
+    Map<String, PackageMeta> previousById = index(previous);
+    Map<String, PackageMeta> currentById = index(current);
+    Delta delta = new Delta(sequence, sequence - 1);
+    for (Map.Entry<String, PackageMeta> entry : currentById.entrySet()) {
+      PackageMeta before = previousById.get(entry.getKey());
+      if (before == null) {
+        delta.added.add(entry.getValue());
+      } else if (!GSON.toJsonTree(before).equals(GSON.toJsonTree(entry.getValue()))) {
+        // compare what clients see, since equals() does not include every field
+        delta.updated.add(entry.getValue());
+      }
+    }
+    for (Map.Entry<String, PackageMeta> entry : previousById.entrySet()) {
+      if (!currentById.containsKey(entry.getKey())) {
+        delta.removed.add(new PackageId(entry.getValue().getName(), entry.getValue().getVersion()));
+      }
+    }
+    return delta;
+  }
+
+  // returns packages keyed by name and version, in sorted order
+  private static Map<String, PackageMeta> index(List<PackageMeta> catalog) {
+    Map<String, PackageMeta> packages = new TreeMap<>();
+    for (PackageMeta meta : catalog) {
+      packages.put(meta.getName() + "/" + meta.getVersion(), meta);
+    }
+    return packages;
+  }
+
+  private static void deleteExpired(File deltasDir, long oldestSequence) throws IOException {
+    File[] files = deltasDir.listFiles();
+    if (files == null) {
+      throw new IOException("Unable to list files in directory " + deltasDir);
+    }
+    for (File file : files) {
+      String sequence = Files.getNameWithoutExtension(file.getName());
+      if (!sequence.matches("[0-9]+") || Long.parseLong(sequence) > oldestSequence) {
+        continue;
+      }
+      LOG.info("Deleting expired catalog delta {}", file);
+      if (!file.delete()) {
+        throw new IOException("Could not delete catalog delta " + file);
+      }
+    }
+  }
+
+  @Nullable
+  private static <T> T read(File file, Type type) {
+    if (!file.isFile()) {
+      return null;
+    }
+    try (Reader reader = Files.newReader(file, StandardCharsets.UTF_8)) {
+      return GSON.fromJson(reader, type);
+    } catch (Exception e) {
+      LOG.warn("Unable to read {}. It will be replaced.", file, e);
+      return null;
+    }
+  }
+
+  private static void writeJson(File file, Object object) throws IOException {
+    File tempFile = AtomicFiles.getTempFile(file);
+    try {
+      try (Writer writer = Files.newWriter(tempFile, StandardCharsets.UTF_8)) {
+        GSON.toJson(object, writer);
+        writer.write("\n");
+      }
+      AtomicFiles.replace(tempFile, file);
+    } finally {
+      AtomicFiles.deleteTempFile(file);
+    }
+  }
+
+  /**
+   * What is serialized to the head file.
+   */
+  private static class Head {
+    // sequence number of the latest delta, or 0 if there are none
+    private final long sequence;
+    // oldest sequence number that can be brought up to date with the deltas that are still available
+    private final long oldestSequence;
+    private final int packages;
+    // SHA-256 of the package catalog the head was built with, or null for heads written by older versions
+    @Nullable
+    private final String catalogSha256;
+
+    private Head(long sequence, long oldestSequence, int packages, @Nullable String catalogSha256) {
+      this.sequence = sequence;
+      this.oldestSequence = oldestSequence;
+      this.packages = packages;
+      this.catalogSha256 = catalogSha256;
+    }
+  }
+
+  /**
+   * What is serialized to each delta file.
+   */
+  private static class Delta {
+    private final long sequence;
+    private final long previousSequence;
+    private final List<PackageMeta> added;
+    private final List<PackageMeta> updated;
+    private final List<PackageId> removed;
+
+    private Delta(long sequence, long previousSequence) {
+      this.sequence = sequence;
+      this.previousSequence = previousSequence;
+      this.added = new ArrayList<>();
+      this.updated = new ArrayList<>();
+      this.removed = new ArrayList<>();
+    }
+
+    private boolean isEmpty() {
+      return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+  }
+}
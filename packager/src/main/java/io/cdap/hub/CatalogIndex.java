@@ -0,0 +1,260 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import io.cdap.hub.spec.PackageMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * In-memory index of the package catalog, for finding packages without scanning the entire catalog.
+ *
+ * Packages are indexed by category, org, author, and the words in their label and description. Each of these maps
+ * to the set of packages that have it, so a query is answered by intersecting a few sets. Packages are also indexed
+ * by their CDAP version range. Packages tend to share the same few ranges, so each distinct range maps to the set
+ * of packages that have it, and ranges are sorted by their lower version so that a lookup can stop at the first
+ * range that starts after the version. Packages whose CDAP version range can't be parsed are never compatible.
+ *
+ * Categories, orgs, authors, and words are matched without regard to case. Each word in a text query must be the
+ * start of a word in the package's label or description.
+ */
+public final class CatalogIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(CatalogIndex.class);
+  private static final Splitter WORDS = Splitter.on(CharMatcher.JAVA_LETTER_OR_DIGIT.negate()).omitEmptyStrings();
+  private final List<PackageMeta> packages;
+  private final Map<String, BitSet> categories;
+  private final Map<String, BitSet> orgs;
+  private final Map<String, BitSet> authors;
+  private final NavigableMap<String, BitSet> words;
+  private final List<RangeEntry> ranges;
+
+  private CatalogIndex(List<PackageMeta> packages) {
+    this.packages = Collections.unmodifiableList(new ArrayList<>(packages));
+    this.categories = new HashMap<>();
+    this.orgs = new HashMap<>();
+    this.authors = new HashMap<>();
+    this.words = new TreeMap<>();
+    this.ranges = new ArrayList<>();
+  }
+
+  /**
+   * Builds an index of the given packages.
+   */
+  public static CatalogIndex build(List<PackageMeta> catalog) {
+    CatalogIndex index = new CatalogIndex(catalog);
+    Map<VersionRange, BitSet> rangePackages = new LinkedHashMap<>();
+    for (int i = 0; i < index.packages.size(); i++) {
+      PackageMeta meta = index.packages.get(i);
+      if (meta.getCategories() != null) {
+        for (String category : meta.getCategories()) {
+          addLowerCase(index.categories, category, i);
+        }
+      }
+      addLowerCase(index.orgs, meta.getOrg(), i);
+      addLowerCase(index.authors, meta.getAuthor(), i);
+      for (String text : new String[] { meta.getLabel(), meta.getDescription() }) {
+        for (String word : tokenize(text)) {
+          add(index.words, word, i);
+        }
+      }
+      if (meta.getCdapVersion() == null) {
+        continue;
+      }
+      try {
+        add(rangePackages, VersionRange.parse(meta.getCdapVersion()), i);
+      } catch (IllegalArgumentException e) {
+        LOG.debug("Not indexing CDAP version of package {}-{}: {}", meta.getName(), meta.getVersion(), e.getMessage());
+      }
+    }
+    for (Map.Entry<VersionRange, BitSet> entry : rangePackages.entrySet()) {
+      index.ranges.add(new RangeEntry(entry.getKey(), entry.getValue()));
+    }
+    Collections.sort(index.ranges, new Comparator<RangeEntry>() {
+      @Override
+      public int compare(RangeEntry e1, RangeEntry e2) {
+        return e1.range.getLower().compareTo(e2.range.getLower());
+      }
+    });
+    return index;
+  }
+
+  /**
+   * Returns all packages in the index, in catalog order.
+   */
+  public List<PackageMeta> getPackages() {
+    return packages;
+  }
+
+  /**
+   * Returns the packages that match every condition of the query, in catalog order.
+   */
+  public List<PackageMeta> search(Query query) {
+    BitSet matches = new BitSet(packages.size());
+    matches.set(0, packages.size());
+    if (query.category != null) {
+      matches.and(get(categories, query.category));
+    }
+    if (query.org != null) {
+      matches.and(get(orgs, query.org));
+    }
+    if (query.author != null) {
+      matches.and(get(authors, query.author));
+    }
+    if (query.text != null) {
+      for (String word : tokenize(query.text)) {
+        BitSet wordMatches = new BitSet(packages.size());
+        for (BitSet prefixMatches : words.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+          wordMatches.or(prefixMatches);
+        }
+        matches.and(wordMatches);
+      }
+    }
+    if (query.cdapVersion != null) {
+      matches.and(getCompatible(query.cdapVersion));
+    }
+
+    List<PackageMeta> results = new ArrayList<>(matches.cardinality());
+    for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+      results.add(packages.get(i));
+    }
+    return results;
+  }
+
+  public static Query query() {
+    return new Query();
+  }
+
+  private BitSet getCompatible(Version version) {
+    BitSet compatible = new BitSet(packages.size());
+    for (RangeEntry entry : ranges) {
+      if (!entry.range.isAboveLower(version)) {
+        // ranges are sorted by their lower version, so no later range can contain the version either
+        if (version.compareTo(entry.range.getLower()) < 0) {
+          break;
+        }
+        continue;
+      }
+      if (entry.range.isBelowUpper(version)) {
+        compatible.or(entry.packages);
+      }
+    }
+    return compatible;
+  }
+
+  private static List<String> tokenize(@Nullable String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text != null) {
+      for (String word : WORDS.split(text)) {
+        tokens.add(word.toLowerCase(Locale.ENGLISH));
+      }
+    }
+    return tokens;
+  }
+
+  private static BitSet get(Map<String, BitSet> index, String key) {
+    BitSet packages = index.get(key.toLowerCase(Locale.ENGLISH));
+    return packages == null ? new BitSet() : packages;
+  }
+
+  private static void addLowerCase(Map<String, BitSet> index, @Nullable String key, int packageIndex) {
+    if (key != null) {
+      add(index, key.toLowerCase(Locale.ENGLISH), packageIndex);
+    }
+  }
+
+  private static <K> void add(Map<K, BitSet> index, K key, int packageIndex) {
+    BitSet packages = index.get(key);
+    if (packages == null) {
+      packages = new BitSet();
+      index.put(key, packages);
+    }
+    packages.set(packageIndex);
+  }
+
+  /**
+   * Conditions that packages must match. Conditions that are not set match every package.
+   */
+  public static final class Query {
+    private String category;
+    private String org;
+    private String author;
+    private String text;
+    private Version cdapVersion;
+
+    private Query() {
+    }
+
+    public Query setCategory(@Nullable String category) {
+      this.category = category;
+      return this;
+    }
+
+    public Query setOrg(@Nullable String org) {
+      this.org = org;
+      return this;
+    }
+
+    public Query setAuthor(@Nullable String author) {
+      this.author = author;
+      return this;
+    }
+
+    /**
+     * Set words that must all be in the package's label or description.
+     */
+    public Query setText(@Nullable String text) {
+      this.text = text;
+      return this;
+    }
+
+    /**
+     * Set the CDAP version that packages must be compatible with.
+     */
+    public Query setCdapVersion(@Nullable Version cdapVersion) {
+      this.cdapVersion = cdapVersion;
+      return this;
+    }
+  }
+
+  /**
+   * A distinct CDAP version range, and the packages that have it.
+   */
+  private static class RangeEntry {
+    private final VersionRange range;
+    private final BitSet packages;
+
+    private RangeEntry(VersionRange range, BitSet packages) {
+      this.range = range;
+      this.packages = packages;
+    }
+  }
+}
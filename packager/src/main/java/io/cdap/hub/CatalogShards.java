@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.hub.spec.PackageMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the package catalog into smaller files, so that clients can download only the part of the catalog they need.
+ * This writes a shard for each category containing all packages in that category, fixed size pages of the
+ * entire catalog, and an index file that lists every shard and page along with its size and SHA-256.
+ *
+ *   catalog-index.json
+ *   catalog/categories/&lt;category&gt;.json
+ *   catalog/pages/&lt;page&gt;.json
+ *
+ * Shards and pages contain packages in the same order as the full package catalog.
+ * Each file also has a gzip variant, which is not listed in the index.
+ */
+final class CatalogShards {
+  static final String CATALOG_DIR = "catalog";
+  static final String INDEX_NAME = "catalog-index.json";
+  static final int DEFAULT_PAGE_SIZE = 100;
+  private static final Logger LOG = LoggerFactory.getLogger(CatalogShards.class);
+  private static final String CATEGORIES_DIR = "categories";
+  private static final String PAGES_DIR = "pages";
+  // categories are used as file names and object keys, so only allow names that are safe for both
+  private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+  private CatalogShards() {
+  }
+
+  /**
+   * Writes all shards, pages, and the index, replacing any that were written by a previous build.
+   *
+   * @param baseDir the directory containing the package catalog
+   * @param packageCatalogFile the full package catalog file
+   * @param catalog all packages in the catalog, in catalog order
+   * @param pageSize maximum number of packages in each page
+   * @param compact whether to write the files without any whitespace
+   * @return all shard and page files and their gzip variants, keyed by their path relative to the base directory,
+   *   followed by the index and its gzip variant
+   */
+  static Map<String, File> write(File baseDir, File packageCatalogFile, List<PackageMeta> catalog,
+                                 int pageSize, boolean compact) throws IOException {
+    delete(baseDir);
+    File categoriesDir = new File(new File(baseDir, CATALOG_DIR), CATEGORIES_DIR);
+    File pagesDir = new File(new File(baseDir, CATALOG_DIR), PAGES_DIR);
+    mkdirs(categoriesDir);
+    mkdirs(pagesDir);
+
+    Map<String, List<PackageMeta>> categories = new TreeMap<>();
+    for (PackageMeta meta : catalog) {
+      for (String category : meta.getCategories()) {
+        if (!SAFE_NAME.matcher(category).matches()) {
+          LOG.warn("Not creating a catalog shard for category '{}' since it contains unsafe characters.", category);
+          continue;
+        }
+        List<PackageMeta> categoryPackages = categories.get(category);
+        if (categoryPackages == null) {
+          categoryPackages = new ArrayList<>();
+          categories.put(category, categoryPackages);
+        }
+        categoryPackages.add(meta);
+      }
+    }
+
+    Map<String, File> files = new LinkedHashMap<>();
+    Index index = new Index(pageSize, describe(baseDir, packageCatalogFile, catalog.size()));
+    for (Map.Entry<String, List<PackageMeta>> entry : categories.entrySet()) {
+      String path = String.format("%s/%s/%s.json", CATALOG_DIR, CATEGORIES_DIR, entry.getKey());
+      index.categories.put(entry.getKey(), writeShard(baseDir, path, entry.getValue(), compact, files));
+    }
+    int pageNum = 1;
+    for (List<PackageMeta> page : Lists.partition(catalog, pageSize)) {
+      String path = String.format("%s/%s/%d.json", CATALOG_DIR, PAGES_DIR, pageNum++);
+      index.pages.add(writeShard(baseDir, path, page, compact, files));
+    }
+
+    // the index is written last, since it describes everything else
+    File indexFile = new File(baseDir, INDEX_NAME);
+    Gson gson = compact ? new Gson() : new GsonBuilder().setPrettyPrinting().create();
+    File tempFile = AtomicFiles.getTempFile(indexFile);
+    try {
+      try (Writer writer = Files.newWriter(tempFile, StandardCharsets.UTF_8)) {
+        gson.toJson(index, writer);
+        writer.write("\n");
+      }
+      AtomicFiles.replace(tempFile, indexFile);
+    } finally {
+      AtomicFiles.deleteTempFile(indexFile);
+    }
+    files.put(INDEX_NAME, indexFile);
+    files.put(INDEX_NAME + Gzip.EXTENSION, Gzip.compress(indexFile));
+    LOG.info("Created {} category shards, {} catalog pages, and catalog index {}",
+             index.categories.size(), index.pages.size(), indexFile);
+    return files;
+  }
+
+  /**
+   * Deletes all shards, pages, and the index.
+   */
+  static void delete(File baseDir) throws IOException {
+    File indexFile = new File(baseDir, INDEX_NAME);
+    if (indexFile.exists() && !indexFile.delete()) {
+      throw new IOException("Could not delete catalog index " + indexFile);
+    }
+    Gzip.deleteVariant(indexFile);
+    File catalogDir = new File(baseDir, CATALOG_DIR);
+    for (String dirName : new String[] { CATEGORIES_DIR, PAGES_DIR }) {
+      File[] files = new File(catalogDir, dirName).listFiles();
+      if (files == null) {
+        continue;
+      }
+      for (File file : files) {
+        String fileName = file.getName();
+        if ((fileName.endsWith(".json") || fileName.endsWith(".json" + Gzip.EXTENSION)) && !file.delete()) {
+          throw new IOException("Could not delete catalog shard " + file);
+        }
+      }
+    }
+  }
+
+  private static Shard writeShard(File baseDir, String path, List<PackageMeta> packages, boolean compact,
+                                  Map<String, File> files) throws IOException {
+    File file = new File(baseDir, path);
+    CatalogWriter<PackageMeta> writer = CatalogWriter.open(file, PackageMeta.class, compact);
+    try {
+      for (PackageMeta meta : packages) {
+        writer.write(meta);
+      }
+    } finally {
+      writer.close();
+    }
+    files.put(path, file);
+    files.put(path + Gzip.EXTENSION, Gzip.compress(file));
+    return new Shard(path, writer.getCount(), writer.getSize(), writer.getSha256());
+  }
+
+  // describes a catalog file that was written somewhere else
+  private static Shard describe(File baseDir, File file, int count) throws IOException {
+    String path = baseDir.toURI().relativize(file.toURI()).getPath();
+    return new Shard(path, count, file.length(), DigestCache.inMemory().get(file).getSha256());
+  }
+
+  private static void mkdirs(File dir) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Unable to create directory " + dir);
+    }
+  }
+
+  /**
+   * What is serialized to the index file.
+   */
+  private static class Index {
+    private final int pageSize;
+    private final Shard packages;
+    private final List<Shard> pages;
+    private final Map<String, Shard> categories;
+
+    private Index(int pageSize, Shard packages) {
+      this.pageSize = pageSize;
+      this.packages = packages;
+      this.pages = new ArrayList<>();
+      this.categories = new TreeMap<>();
+    }
+  }
+
+  /**
+   * A catalog file listed in the index.
+   */
+  private static class Shard {
+    private final String path;
+    private final int count;
+    private final long size;
+    private final String sha256;
+
+    private Shard(String path, int count, long size, String sha256) {
+      this.path = path;
+      this.count = count;
+      this.size = size;
+      this.sha256 = sha256;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.CountingOutputStream;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Writes a catalog file as a JSON array, one element at a time, so the whole catalog never has to be held
+ * in memory as a single String. Pretty printed catalogs are byte for byte the same as serializing the entire list
+ * with a pretty printing Gson. The size and SHA-256 of the file are computed as it is written.
+ *
+ * @param <T> type of catalog element
+ */
+class CatalogWriter<T> implements Closeable {
+  private static final Gson GSON = new Gson();
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private final File file;
+  private final Writer writer;
+  private final JsonWriter jsonWriter;
+  private final Class<T> type;
+  private final CountingOutputStream countingOutputStream;
+  private final MessageDigest sha256;
+  private int count;
+  private boolean failed;
+
+  /**
+   * Opens a catalog file for writing. It replaces the existing file once the writer is closed.
+   *
+   * @param file the catalog file
+   * @param type type of catalog element
+   * @param compact whether to write the catalog without any whitespace instead of pretty printing it
+   */
+  static <T> CatalogWriter<T> open(File file, Class<T> type, boolean compact) throws IOException {
+    MessageDigest sha256;
+    try {
+      sha256 = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every java platform is required to support SHA-256
+      throw new IllegalStateException("Could not find message digest SHA-256", e);
+    }
+    // written under a temporary name, and renamed once it is complete
+    FileChannel channel = FileChannel.open(AtomicFiles.getTempFile(file).toPath(), StandardOpenOption.CREATE,
+                                           StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    CountingOutputStream countingOutputStream =
+      new CountingOutputStream(new DigestOutputStream(Channels.newOutputStream(channel), sha256));
+    Writer writer = new BufferedWriter(new OutputStreamWriter(countingOutputStream, StandardCharsets.UTF_8),
+                                       BUFFER_SIZE);
+    return new CatalogWriter<>(file, writer, type, compact, countingOutputStream, sha256);
+  }
+
+  /**
+   * Writes an entire catalog file.
+   */
+  static <T> void write(File file, Iterable<? extends T> elements, Class<T> type, boolean compact) throws IOException {
+    try (CatalogWriter<T> catalogWriter = open(file, type, compact)) {
+      for (T element : elements) {
+        catalogWriter.write(element);
+      }
+    }
+  }
+
+  private CatalogWriter(File file, Writer writer, Class<T> type, boolean compact,
+                        CountingOutputStream countingOutputStream, MessageDigest sha256) throws IOException {
+    this.file = file;
+    this.writer = writer;
+    this.type = type;
+    this.countingOutputStream = countingOutputStream;
+    this.sha256 = sha256;
+    this.jsonWriter = new JsonWriter(writer);
+    // same settings Gson uses when it creates its own JsonWriter
+    if (!compact) {
+      jsonWriter.setIndent("  ");
+    }
+    jsonWriter.setSerializeNulls(false);
+    jsonWriter.beginArray();
+  }
+
+  /**
+   * Appends an element to the catalog.
+   */
+  void write(T element) {
+    try {
+      GSON.toJson(element, type, jsonWriter);
+    } catch (RuntimeException e) {
+      failed = true;
+      throw e;
+    }
+    count++;
+  }
+
+  /**
+   * Returns the number of elements written so far.
+   */
+  int getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the number of bytes in the file. Only valid after the writer is closed.
+   */
+  long getSize() {
+    return countingOutputStream.getCount();
+  }
+
+  /**
+   * Returns the hex encoded SHA-256 of the file. Only valid after the writer is closed, and can only be called once.
+   */
+  String getSha256() {
+    return BaseEncoding.base16().lowerCase().encode(sha256.digest());
+  }
+
+  /**
+   * Ends the catalog and closes the file, which then replaces any existing catalog file. If writing an element
+   * failed, the existing catalog file is kept instead.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      try {
+        jsonWriter.endArray();
+        writer.write("\n");
+      } finally {
+        jsonWriter.close();
+      }
+      if (!failed) {
+        AtomicFiles.replace(AtomicFiles.getTempFile(file), file);
+      }
+    } finally {
+      AtomicFiles.deleteTempFile(file);
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes which packages are compatible with each CDAP minor version, so that a CDAP instance can fetch the list of
+ * packages it can install instead of parsing the version range of every package in the catalog.
+ *
+ *   catalog/compatibility.json
+ *   catalog/compatibility/&lt;major&gt;.&lt;minor&gt;.json
+ *
+ * The index maps each minor version, like '6.5', to the 'name/version' of every compatible package, and each slice
+ * contains the list for one minor version. A package is compatible with a minor version if its CDAP version range
+ * contains any version with that major and minor version, including snapshots. Slices are only written for minor
+ * versions that at least one package is compatible with.
+ *
+ * Version ranges often end at the next major version, like '[6.0.0,7.0.0-SNAPSHOT)', which does not say how many
+ * minor versions the range contains. Minor versions are listed up to the highest one that appears in any range,
+ * or up to the last minor version of that major version if it is higher. That is known for past major versions,
+ * and is taken from the configured latest CDAP version for the current one.
+ */
+final class CompatibilityIndex {
+  static final String INDEX_PATH = CatalogShards.CATALOG_DIR + "/compatibility.json";
+  static final String SLICES_DIR = CatalogShards.CATALOG_DIR + "/compatibility";
+  /**
+   * The latest CDAP version, used when it is not configured.
+   */
+  static final Version DEFAULT_LATEST_CDAP_VERSION = Version.parse("6.10.0");
+  private static final Logger LOG = LoggerFactory.getLogger(CompatibilityIndex.class);
+  // highest minor version of each CDAP major version that will not get any more minor versions
+  private static final Map<Integer, Integer> FINAL_MINOR_VERSIONS = ImmutableMap.of(3, 6, 4, 3, 5, 1);
+  private static final Comparator<Package> PACKAGE_ORDER = new Comparator<Package>() {
+    @Override
+    public int compare(Package p1, Package p2) {
+      int result = p1.getName().compareTo(p2.getName());
+      return result != 0 ? result : compareVersions(p1.getVersion(), p2.getVersion());
+    }
+  };
+
+  private CompatibilityIndex() {
+  }
+
+  /**
+   * Writes the index and a slice for each minor version, replacing any that were written by a previous build.
+   *
+   * @param baseDir the directory containing the package catalog
+   * @param packages all packages in the catalog
+   * @param latestCdapVersion the latest CDAP version, which ranges that end at the next major version extend to
+   * @param compact whether to write the files without any whitespace
+   * @return all slices and their gzip variants, keyed by their path relative to the base directory,
+   *   followed by the index and its gzip variant
+   */
+  static Map<String, File> write(File baseDir, List<Package> packages, Version latestCdapVersion,
+                                 boolean compact) throws IOException {
+    delete(baseDir);
+    File slicesDir = new File(baseDir, SLICES_DIR);
+    if (!slicesDir.isDirectory() && !slicesDir.mkdirs()) {
+      throw new IOException("Unable to create directory " + slicesDir);
+    }
+
+    Map<String, List<String>> compatibility = compute(packages, latestCdapVersion);
+    Gson gson = compact ? new Gson() : new GsonBuilder().setPrettyPrinting().create();
+    Map<String, File> files = new LinkedHashMap<>();
+    for (Map.Entry<String, List<String>> entry : compatibility.entrySet()) {
+      writeJson(baseDir, String.format("%s/%s.json", SLICES_DIR, entry.getKey()), entry.getValue(), gson, files);
+    }
+    writeJson(baseDir, INDEX_PATH, compatibility, gson, files);
+    LOG.info("Created CDAP compatibility index for {} minor versions", compatibility.size());
+    return files;
+  }
+
+  /**
+   * Deletes the index and all slices.
+   */
+  static void delete(File baseDir) throws IOException {
+    File indexFile = new File(baseDir, INDEX_PATH);
+    if (indexFile.exists() && !indexFile.delete()) {
+      throw new IOException("Could not delete compatibility index " + indexFile);
+    }
+    Gzip.deleteVariant(indexFile);
+    File[] files = new File(baseDir, SLICES_DIR).listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String fileName = file.getName();
+      if ((fileName.endsWith(".json") || fileName.endsWith(".json" + Gzip.EXTENSION)) && !file.delete()) {
+        throw new IOException("Could not delete compatibility slice " + file);
+      }
+    }
+  }
+
+  // returns the 'name/version' of compatible packages, keyed by minor version in version order
+  private static Map<String, List<String>> compute(List<Package> packages, Version latestCdapVersion) {
+    List<Package> sorted = new ArrayList<>(packages);
+    Collections.sort(sorted, PACKAGE_ORDER);
+    Map<String, List<String>> compatibility = new LinkedHashMap<>();
+    for (Map.Entry<String, VersionRange> entry : getMinorVersions(packages, latestCdapVersion).entrySet()) {
+      List<String> compatible = new ArrayList<>();
+      for (Package pkg : sorted) {
+        if (isCompatible(pkg, entry.getValue())) {
+          compatible.add(pkg.getName() + "/" + pkg.getVersion());
+        }
+      }
+      compatibility.put(entry.getKey(), compatible);
+    }
+    return compatibility;
+  }
+
+  /**
+   * Returns the CDAP minor versions that packages are checked for compatibility with, in version order.
+   * Each minor version, like '6.5', is mapped to the range of every version with that major and minor version,
+   * assuming that no suffix sorts before 'SNAPSHOT'. Only minor versions that at least one package is compatible
+   * with are returned.
+   *
+   * @param packages all packages in the catalog
+   * @param latestCdapVersion the latest CDAP version. Ranges that end at the next major version, like
+   *   '[6.0.0,7.0.0-SNAPSHOT)', are compatible with every minor version up to its minor version.
+   */
+  static Map<String, VersionRange> getMinorVersions(List<Package> packages, Version latestCdapVersion) {
+    // highest minor version seen at either end of a range, for each major version
+    TreeMap<Integer, Integer> highestMinors = new TreeMap<>();
+    for (Package pkg : packages) {
+      VersionRange range = pkg.getCdapVersionRange();
+      if (range == null || range.isEmpty()) {
+        continue;
+      }
+      for (Version version : new Version[] { range.getLower(), range.getUpper() }) {
+        Integer highest = highestMinors.get(version.getMajor());
+        highestMinors.put(version.getMajor(), highest == null ? version.getMinor() :
+          Math.max(highest, version.getMinor()));
+      }
+    }
+    if (highestMinors.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, VersionRange> minorVersions = new LinkedHashMap<>();
+    for (int major = highestMinors.firstKey(); major <= highestMinors.lastKey(); major++) {
+      Integer highest = highestMinors.get(major);
+      int highestMinor = Math.max(highest == null ? 0 : highest, getFinalMinor(major, latestCdapVersion));
+      for (int minor = 0; minor <= highestMinor; minor++) {
+        VersionRange minorRange = new VersionRange(Version.parse(major + "." + minor + ".0-SNAPSHOT"), true,
+                                                   Version.parse(major + "." + (minor + 1) + ".0-SNAPSHOT"), false);
+        for (Package pkg : packages) {
+          if (isCompatible(pkg, minorRange)) {
+            minorVersions.put(major + "." + minor, minorRange);
+            break;
+          }
+        }
+      }
+    }
+    return minorVersions;
+  }
+
+  // returns the highest minor version that has been released for a major version, or -1 if it is not known
+  private static int getFinalMinor(int major, Version latestCdapVersion) {
+    if (major == latestCdapVersion.getMajor()) {
+      return latestCdapVersion.getMinor();
+    }
+    Integer finalMinor = FINAL_MINOR_VERSIONS.get(major);
+    return finalMinor == null ? -1 : finalMinor;
+  }
+
+  /**
+   * Returns whether the package is compatible with any version in the given range of CDAP versions.
+   */
+  static boolean isCompatible(Package pkg, VersionRange cdapVersions) {
+    VersionRange range = pkg.getCdapVersionRange();
+    return range != null && !range.isEmpty() && range.intersects(cdapVersions);
+  }
+
+  /**
+   * Compares package versions semantically if they can be parsed, and as strings otherwise.
+   */
+  static int compareVersions(String version1, String version2) {
+    try {
+      int result = Version.parse(version1).compareTo(Version.parse(version2));
+      return result != 0 ? result : version1.compareTo(version2);
+    } catch (IllegalArgumentException e) {
+      return version1.compareTo(version2);
+    }
+  }
+
+  private static void writeJson(File baseDir, String path, Object object, Gson gson,
+                                Map<String, File> files) throws IOException {
+    File file = new File(baseDir, path);
+    File tempFile = AtomicFiles.getTempFile(file);
+    try {
+      try (Writer writer = Files.newWriter(tempFile, StandardCharsets.UTF_8)) {
+        gson.toJson(object, writer);
+        writer.write("\n");
+      }
+      AtomicFiles.replace(tempFile, file);
+    } finally {
+      AtomicFiles.deleteTempFile(file);
+    }
+    files.put(path, file);
+    files.put(path + Gzip.EXTENSION, Gzip.compress(file));
+  }
+}
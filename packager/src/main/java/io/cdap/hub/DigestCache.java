@@ -0,0 +1,279 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of file digests, keyed by file path and validated by file size and modified time.
+ * The md5, SHA-256, and multipart ETag of a file are all computed in a single pass over its bytes,
+ * which is shared with signing when the file is signed. The cache can be saved to a file and loaded in a later run,
+ * so that files that did not change are not read at all.
+ */
+public class DigestCache {
+  private static final Logger LOG = LoggerFactory.getLogger(DigestCache.class);
+  private static final Gson GSON = new Gson();
+  // s3 will not accept multipart uploads with more parts than this
+  private static final int MAX_PARTS = 10000;
+  @Nullable
+  private final File cacheFile;
+  private final long multipartThreshold;
+  private final long multipartPartSize;
+  private final ConcurrentMap<String, FileDigest> digests;
+
+  /**
+   * Creates a cache that is not saved to a file, and does not compute multipart ETags.
+   */
+  public static DigestCache inMemory() {
+    return inMemory(Long.MAX_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a cache that is not saved to a file.
+   *
+   * @param multipartThreshold size in bytes above which files are uploaded to s3 in multiple parts
+   * @param multipartPartSize minimum size in bytes of each part of a multipart upload
+   */
+  public static DigestCache inMemory(long multipartThreshold, long multipartPartSize) {
+    return new DigestCache(null, multipartThreshold, multipartPartSize, new ConcurrentHashMap<String, FileDigest>());
+  }
+
+  /**
+   * Loads the cache from the given file. If the file does not exist, cannot be read, or was saved with different
+   * multipart settings, the cache will start out empty.
+   *
+   * @param cacheFile the file the cache is stored in
+   * @param multipartThreshold size in bytes above which files are uploaded to s3 in multiple parts
+   * @param multipartPartSize minimum size in bytes of each part of a multipart upload
+   */
+  public static DigestCache load(File cacheFile, long multipartThreshold, long multipartPartSize) {
+    ConcurrentMap<String, FileDigest> digests = new ConcurrentHashMap<>();
+    if (cacheFile.isFile()) {
+      try (Reader reader = Files.newReader(cacheFile, StandardCharsets.UTF_8)) {
+        Contents contents = GSON.fromJson(reader, Contents.class);
+        if (contents != null && contents.files != null &&
+          contents.multipartThreshold == multipartThreshold && contents.multipartPartSize == multipartPartSize) {
+          digests.putAll(contents.files);
+        }
+      } catch (Exception e) {
+        LOG.warn("Unable to read digest cache {}. All digests will be computed again.", cacheFile, e);
+      }
+    }
+    return new DigestCache(cacheFile, multipartThreshold, multipartPartSize, digests);
+  }
+
+  private DigestCache(@Nullable File cacheFile, long multipartThreshold, long multipartPartSize,
+                      ConcurrentMap<String, FileDigest> digests) {
+    this.cacheFile = cacheFile;
+    this.multipartThreshold = multipartThreshold;
+    this.multipartPartSize = multipartPartSize;
+    this.digests = digests;
+  }
+
+  /**
+   * Returns the cached digest of the file if the file has not changed since it was computed, or null otherwise.
+   */
+  @Nullable
+  public FileDigest getIfCurrent(File file) {
+    FileDigest digest = digests.get(getKey(file));
+    return digest != null && digest.isCurrent(file) ? digest : null;
+  }
+
+  /**
+   * Returns the digest of the file, reading the file only if there is no cached digest for its current
+   * size and modified time.
+   */
+  public FileDigest get(File file) throws IOException {
+    FileDigest digest = getIfCurrent(file);
+    if (digest != null) {
+      return digest;
+    }
+
+    final Digester digester = newDigester(file);
+    FileChunks.read(file, new FileChunks.Consumer() {
+      @Override
+      public void accept(ByteBuffer chunk) {
+        digester.update(chunk);
+      }
+    });
+    return digester.finish();
+  }
+
+  /**
+   * Returns a Digester that computes the digest of the file from bytes that are being read for another purpose.
+   * The digest is added to the cache when the Digester is finished.
+   */
+  public Digester newDigester(File file) {
+    return new Digester(file);
+  }
+
+  /**
+   * Saves the cache to its file, dropping digests of files that no longer exist. Does nothing for in-memory caches.
+   */
+  public void save() throws IOException {
+    if (cacheFile == null) {
+      return;
+    }
+    Contents contents = new Contents(multipartThreshold, multipartPartSize);
+    for (Map.Entry<String, FileDigest> entry : digests.entrySet()) {
+      if (new File(entry.getKey()).isFile()) {
+        contents.files.put(entry.getKey(), entry.getValue());
+      }
+    }
+    try (Writer writer = Files.newWriter(cacheFile, StandardCharsets.UTF_8)) {
+      GSON.toJson(contents, writer);
+    }
+    LOG.info("Saved {} file digests to {}", contents.files.size(), cacheFile);
+  }
+
+  private static String getKey(File file) {
+    return file.getAbsolutePath();
+  }
+
+  private static MessageDigest newMessageDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      // every java platform is required to support md5 and SHA-256
+      throw new IllegalStateException("Could not find message digest " + algorithm, e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    return BaseEncoding.base16().lowerCase().encode(bytes);
+  }
+
+  /**
+   * Computes the md5, SHA-256, and multipart ETag of a file as its bytes are passed in.
+   */
+  public final class Digester {
+    private final File file;
+    private final long size;
+    private final long modified;
+    private final MessageDigest md5;
+    private final MessageDigest sha256;
+    // md5 of the current part and md5 of all part md5s, only used for files uploaded in multiple parts
+    @Nullable
+    private final MessageDigest partMd5;
+    @Nullable
+    private final MessageDigest partsMd5;
+    private final long partSize;
+    private long partRemaining;
+    private int numParts;
+
+    private Digester(File file) {
+      this.file = file;
+      // get these before reading the file, so that a change while it is being read invalidates the digest
+      this.size = file.length();
+      this.modified = file.lastModified();
+      this.md5 = newMessageDigest("MD5");
+      this.sha256 = newMessageDigest("SHA-256");
+      if (size > multipartThreshold) {
+        // same part size as the s3 TransferManager uses
+        this.partSize = Math.max((long) Math.ceil((double) size / MAX_PARTS), multipartPartSize);
+        this.partMd5 = newMessageDigest("MD5");
+        this.partsMd5 = newMessageDigest("MD5");
+      } else {
+        this.partSize = 0L;
+        this.partMd5 = null;
+        this.partsMd5 = null;
+      }
+      this.partRemaining = partSize;
+      this.numParts = 0;
+    }
+
+    /**
+     * Adds the bytes between the position and limit of the given array backed buffer, without changing its position.
+     */
+    public void update(ByteBuffer chunk) {
+      update(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+    }
+
+    public void update(byte[] bytes, int offset, int length) {
+      md5.update(bytes, offset, length);
+      sha256.update(bytes, offset, length);
+      if (partMd5 == null) {
+        return;
+      }
+      while (length > 0) {
+        int partLength = (int) Math.min(length, partRemaining);
+        partMd5.update(bytes, offset, partLength);
+        offset += partLength;
+        length -= partLength;
+        partRemaining -= partLength;
+        if (partRemaining == 0) {
+          finishPart();
+        }
+      }
+    }
+
+    /**
+     * Computes the digest and adds it to the cache.
+     */
+    public FileDigest finish() {
+      String multipartETag = null;
+      if (partMd5 != null && partsMd5 != null) {
+        if (partRemaining < partSize) {
+          finishPart();
+        }
+        multipartETag = hex(partsMd5.digest()) + "-" + numParts;
+      }
+      FileDigest digest = new FileDigest(size, modified, hex(md5.digest()), hex(sha256.digest()), multipartETag);
+      digests.put(getKey(file), digest);
+      return digest;
+    }
+
+    private void finishPart() {
+      partsMd5.update(partMd5.digest());
+      numParts++;
+      partRemaining = partSize;
+    }
+  }
+
+  /**
+   * What is serialized to the cache file.
+   */
+  private static class Contents {
+    private final long multipartThreshold;
+    private final long multipartPartSize;
+    private final Map<String, FileDigest> files;
+
+    private Contents(long multipartThreshold, long multipartPartSize) {
+      this.multipartThreshold = multipartThreshold;
+      this.multipartPartSize = multipartPartSize;
+      this.files = new TreeMap<>();
+    }
+  }
+}
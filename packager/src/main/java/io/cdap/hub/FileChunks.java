@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads files through a FileChannel in fixed size chunks, using a buffer that is reused by each thread.
+ *
+ * The buffers are heap buffers rather than direct buffers, since the signature generator, deflater,
+ * and message digests all end up working on byte arrays. Reading straight into the backing array means
+ * each chunk is copied once, from the channel, and is then passed to every consumer without any more copies.
+ */
+final class FileChunks {
+  static final int CHUNK_SIZE = 1024 * 1024;
+  private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+    @Override
+    protected ByteBuffer initialValue() {
+      return ByteBuffer.allocate(CHUNK_SIZE);
+    }
+  };
+
+  private FileChunks() {
+  }
+
+  /**
+   * Consumes a chunk of a file.
+   */
+  interface Consumer {
+
+    /**
+     * Called with each chunk of the file, in order. The chunk is backed by an array and holds the bytes between
+     * its position and limit. It is reused for the next chunk, so it must not be kept after this returns.
+     */
+    void accept(ByteBuffer chunk) throws IOException;
+  }
+
+  /**
+   * Reads the entire file, passing each chunk to the consumer. Every chunk except the last is full.
+   * Must not be called again by the same thread from within the consumer.
+   */
+  static void read(File file, Consumer consumer) throws IOException {
+    ByteBuffer buffer = BUFFERS.get();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      boolean eof = false;
+      while (!eof) {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            eof = true;
+            break;
+          }
+        }
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+          consumer.accept(buffer);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Digests of a file, along with the size and modified time the file had when the digests were computed.
+ */
+public class FileDigest {
+  private final long size;
+  private final long modified;
+  private final String md5;
+  private final String sha256;
+  // only set for files that are large enough to be uploaded to s3 in multiple parts
+  @Nullable
+  private final String multipartETag;
+
+  public FileDigest(long size, long modified, String md5, String sha256, @Nullable String multipartETag) {
+    this.size = size;
+    this.modified = modified;
+    this.md5 = md5;
+    this.sha256 = sha256;
+    this.multipartETag = multipartETag;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public long getModified() {
+    return modified;
+  }
+
+  /**
+   * Returns the hex encoded md5 of the file.
+   */
+  public String getMd5() {
+    return md5;
+  }
+
+  /**
+   * Returns the hex encoded SHA-256 of the file.
+   */
+  public String getSha256() {
+    return sha256;
+  }
+
+  /**
+   * Returns the ETag s3 gives the file if it is uploaded in multiple parts, or null if it is uploaded in one part.
+   */
+  @Nullable
+  public String getMultipartETag() {
+    return multipartETag;
+  }
+
+  /**
+   * Returns all ETags an s3 object with the same content as the file could have.
+   */
+  public Set<String> getETags() {
+    Set<String> eTags = new HashSet<>();
+    eTags.add(md5);
+    if (multipartETag != null) {
+      eTags.add(multipartETag);
+    }
+    return eTags;
+  }
+
+  /**
+   * Returns whether the digests still apply to the file, based on its current size and modified time.
+   */
+  public boolean isCurrent(File file) {
+    return file.length() == size && file.lastModified() == modified;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    FileDigest that = (FileDigest) o;
+    return size == that.size && modified == that.modified &&
+      Objects.equals(md5, that.md5) &&
+      Objects.equals(sha256, that.sha256) &&
+      Objects.equals(multipartETag, that.multipartETag);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(size, modified, md5, sha256, multipartETag);
+  }
+
+  @Override
+  public String toString() {
+    return "FileDigest{" +
+      "size=" + size +
+      ", modified=" + modified +
+      ", md5='" + md5 + '\'' +
+      ", sha256='" + sha256 + '\'' +
+      ", multipartETag='" + multipartETag + '\'' +
+      '}';
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.ByteSource;
+import io.cdap.hub.spec.CategoryMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Publishes the hub to a directory on the local filesystem, so that it can be served by any web server.
+ * The directory has the same layout as the hub in S3.
+ *
+ * Files are either copied or hard linked into the directory. A copy keeps the modified time of the original,
+ * so a file whose size and modified time are the same as the original is not copied again. If only the modified
+ * time is different, the contents are compared before copying the file again. A hard link is
+ * not created again if it already points to the original. Every file is written under a temporary name
+ * and then renamed, so the web server never sees a partially written file. Linked files are never partially
+ * written either, since the build replaces every file it creates instead of changing it in place, which leaves the
+ * linked file as it was until the hub is published again. Anything in the directory that is not part of the hub is
+ * deleted after everything else is published.
+ */
+public class FileSystemPublisher implements Publisher {
+  private static final Logger LOG = LoggerFactory.getLogger(FileSystemPublisher.class);
+  private static final String TMP_SUFFIX = ".tmp";
+  private final File targetDir;
+  private final boolean link;
+  private final boolean forcePush;
+  private final boolean dryrun;
+  // paths of everything that is part of the hub, relative to the target directory
+  private final Set<String> publishedPaths;
+  private boolean linkSupported;
+  private int updated;
+  private int unchanged;
+
+  private FileSystemPublisher(File targetDir, boolean link, boolean forcePush, boolean dryrun) {
+    this.targetDir = targetDir;
+    this.link = link;
+    this.forcePush = forcePush;
+    this.dryrun = dryrun;
+    this.publishedPaths = new HashSet<>();
+  }
+
+  @Override
+  public void publish(Hub hub) throws Exception {
+    long start = System.currentTimeMillis();
+    publishedPaths.clear();
+    linkSupported = link;
+    updated = 0;
+    unchanged = 0;
+    if (!dryrun && !targetDir.isDirectory() && !targetDir.mkdirs()) {
+      throw new IOException("Unable to create directory " + targetDir);
+    }
+
+    for (Package pkg : hub.getPackages()) {
+      publishPackage(pkg);
+    }
+    for (CategoryMeta categoryMeta : hub.getCategories()) {
+      publishFile(String.format("categories/%s/", categoryMeta.getName()), categoryMeta.getIcon());
+    }
+    // the catalogs are published after everything they point to
+    LOG.info("Publishing package and category catalogs");
+    for (File catalog : new File[] { hub.getPackageCatalog(), hub.getCategoryCatalog() }) {
+      publishFile("", catalog);
+      publishFile("", Gzip.getVariant(catalog));
+    }
+    LOG.info("Publishing catalog shards");
+    publishCatalogFiles(hub.getCatalogShards(), CatalogShards.INDEX_NAME);
+    LOG.info("Publishing catalog deltas");
+    publishCatalogFiles(hub.getCatalogDeltas(), CatalogDeltas.DELTAS_DIR + "/" + CatalogDeltas.HEAD_NAME);
+    int deleted = deleteUnpublished();
+
+    LOG.info("Published hub to {} in {} ms. {} files {}, {} unchanged, {} deleted.",
+             targetDir, System.currentTimeMillis() - start, updated, linkSupported ? "linked" : "copied",
+             unchanged, deleted);
+  }
+
+  @Override
+  public boolean fetch(String path, File file) throws IOException {
+    Path published = targetDir.toPath().resolve(path);
+    if (!Files.isRegularFile(published)) {
+      return false;
+    }
+    Files.copy(published, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    return true;
+  }
+
+  private void publishPackage(Package pkg) throws IOException {
+    LOG.debug("Publishing package {}-{}", pkg.getName(), pkg.getVersion());
+    String dir = String.format("packages/%s/%s/", pkg.getName(), pkg.getVersion());
+    publishFile(dir, pkg.getIcon());
+    publishFile(dir, pkg.getLicense());
+    publishSignedFile(dir, pkg.getSpec());
+    publishFile(dir, pkg.getSpecGzip());
+    publishSignedFile(dir, pkg.getArchive());
+    for (SignedFile file : pkg.getFiles()) {
+      publishSignedFile(dir, file);
+    }
+  }
+
+  // publishes catalog files, keyed by their path relative to the hub directory. Files whose path starts with the
+  // pointer path are published after all other files, since they point to them.
+  private void publishCatalogFiles(Map<String, File> files, String pointerPath) throws IOException {
+    for (Map.Entry<String, File> entry : files.entrySet()) {
+      if (!entry.getKey().startsWith(pointerPath)) {
+        publishFile(getDir(entry.getKey()), entry.getValue());
+      }
+    }
+    for (Map.Entry<String, File> entry : files.entrySet()) {
+      if (entry.getKey().startsWith(pointerPath)) {
+        publishFile(getDir(entry.getKey()), entry.getValue());
+      }
+    }
+  }
+
+  // returns the directory of a path relative to the hub directory, ending with '/' unless it is the top level
+  private static String getDir(String path) {
+    int index = path.lastIndexOf('/');
+    return index < 0 ? "" : path.substring(0, index + 1);
+  }
+
+  private void publishSignedFile(String dir, @Nullable SignedFile signedFile) throws IOException {
+    if (signedFile != null) {
+      publishFile(dir, signedFile.getFile());
+      publishFile(dir, signedFile.getSignature());
+    }
+  }
+
+  private void publishFile(String dir, @Nullable File file) throws IOException {
+    if (file == null) {
+      return;
+    }
+    String path = dir + file.getName();
+    publishedPaths.add(path);
+    Path source = file.toPath();
+    Path target = new File(targetDir, path).toPath();
+    if (!forcePush && isUnchanged(source, target)) {
+      unchanged++;
+      return;
+    }
+    updated++;
+    if (dryrun) {
+      LOG.info("dryrun - would have {} {} to {}", linkSupported ? "linked" : "copied", file, target);
+      return;
+    }
+
+    LOG.debug("{} {} to {}", linkSupported ? "Linking" : "Copying", file, target);
+    Files.createDirectories(target.getParent());
+    Path tmp = target.resolveSibling(target.getFileName() + TMP_SUFFIX);
+    Files.deleteIfExists(tmp);
+    if (linkSupported) {
+      try {
+        Files.createLink(tmp, source);
+      } catch (UnsupportedOperationException | FileSystemException e) {
+        // usually because the target directory is on a different filesystem
+        LOG.warn("Unable to create hard link {}. Copying files instead of linking them.", tmp, e);
+        linkSupported = false;
+      }
+    }
+    if (!linkSupported) {
+      Files.copy(source, tmp, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private boolean isUnchanged(Path source, Path target) throws IOException {
+    if (!Files.isRegularFile(target)) {
+      return false;
+    }
+    if (linkSupported) {
+      return Files.isSameFile(source, target);
+    }
+    if (Files.size(source) != Files.size(target)) {
+      return false;
+    }
+    FileTime modified = Files.getLastModifiedTime(source);
+    if (modified.equals(Files.getLastModifiedTime(target))) {
+      return true;
+    }
+    // files that are written again by every build, like gzip variants, usually have the same contents
+    if (!asByteSource(source).contentEquals(asByteSource(target))) {
+      return false;
+    }
+    if (!dryrun) {
+      Files.setLastModifiedTime(target, modified);
+    }
+    return true;
+  }
+
+  private static ByteSource asByteSource(final Path path) {
+    return new ByteSource() {
+      @Override
+      public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+      }
+    };
+  }
+
+  // deletes every file in the target directory that was not published, and any directories left empty
+  private int deleteUnpublished() throws IOException {
+    if (!targetDir.isDirectory()) {
+      return 0;
+    }
+    final Path root = targetDir.toPath();
+    final int[] deleted = { 0 };
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        String path = root.relativize(file).toString().replace(File.separatorChar, '/');
+        if (!publishedPaths.contains(path)) {
+          deleted[0]++;
+          if (dryrun) {
+            LOG.info("dryrun - would have deleted {} since it is not part of the hub anymore.", file);
+          } else {
+            LOG.info("Deleting {} since it is not part of the hub anymore.", file);
+            Files.delete(file);
+          }
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+        if (e != null) {
+          throw e;
+        }
+        String[] children = dir.toFile().list();
+        if (!dryrun && !dir.equals(root) && children != null && children.length == 0) {
+          Files.delete(dir);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return deleted[0];
+  }
+
+  public static Builder builder(File targetDir) {
+    return new Builder(targetDir);
+  }
+
+  /**
+   * Builder to create the FileSystemPublisher.
+   */
+  public static class Builder {
+    private final File targetDir;
+    private boolean link;
+    private boolean forcePush;
+    private boolean dryrun;
+
+    public Builder(File targetDir) {
+      this.targetDir = targetDir;
+      link = false;
+      forcePush = false;
+      dryrun = false;
+    }
+
+    /**
+     * Set whether to hard link files into the target directory instead of copying them. Files are copied if the
+     * target directory is on a filesystem that does not support hard links to the hub directory.
+     */
+    public Builder setLink(boolean link) {
+      this.link = link;
+      return this;
+    }
+
+    public Builder setForcePush(boolean forcePush) {
+      this.forcePush = forcePush;
+      return this;
+    }
+
+    public Builder setDryRun(boolean dryrun) {
+      this.dryrun = dryrun;
+      return this;
+    }
+
+    public FileSystemPublisher build() {
+      return new FileSystemPublisher(targetDir, link, forcePush, dryrun);
+    }
+  }
+}
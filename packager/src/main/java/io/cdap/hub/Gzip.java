@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Creates precompressed gzip variants of files, so they can be served to clients that accept gzip encoding.
+ * Variants are written next to the original file, with '.gz' appended to its name. Only files that the packager
+ * compressed are variants. Other files that end in '.gz', like a compressed data file in a package, are ordinary
+ * files, even if a file with the same name without '.gz' exists.
+ * The gzip header written by java has no file name and a modified time of 0, so the same file
+ * always compresses to the same bytes.
+ */
+final class Gzip {
+  static final String EXTENSION = ".gz";
+  static final String ENCODING = "gzip";
+
+  private Gzip() {
+  }
+
+  /**
+   * Writes the gzip variant of the file, replacing any existing variant, and returns it.
+   */
+  static File compress(File file) throws IOException {
+    File compressed = getVariantFile(file);
+    File tempFile = AtomicFiles.getTempFile(compressed);
+    try {
+      try (final OutputStream os = new BestCompressionOutputStream(new FileOutputStream(tempFile))) {
+        FileChunks.read(file, new FileChunks.Consumer() {
+          @Override
+          public void accept(ByteBuffer chunk) throws IOException {
+            os.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+          }
+        });
+      }
+      AtomicFiles.replace(tempFile, compressed);
+    } finally {
+      AtomicFiles.deleteTempFile(compressed);
+    }
+    return compressed;
+  }
+
+  /**
+   * Returns the gzip variant of the file, or null if it does not exist.
+   */
+  @Nullable
+  static File getVariant(File file) {
+    File compressed = getVariantFile(file);
+    return compressed.isFile() ? compressed : null;
+  }
+
+  /**
+   * Deletes the gzip variant of the file if it exists.
+   */
+  static void deleteVariant(File file) throws IOException {
+    File compressed = getVariantFile(file);
+    if (compressed.exists() && !compressed.delete()) {
+      throw new IOException("Could not delete compressed file " + compressed);
+    }
+  }
+
+  /**
+   * Returns the name of the original file for a gzip variant.
+   */
+  static String getOriginalName(File variant) {
+    String name = variant.getName();
+    return name.substring(0, name.length() - EXTENSION.length());
+  }
+
+  private static File getVariantFile(File file) {
+    return new File(file.getParentFile(), file.getName() + EXTENSION);
+  }
+
+  /**
+   * GZIPOutputStream that uses the best compression level, since variants are compressed once and served many times.
+   */
+  private static class BestCompressionOutputStream extends GZIPOutputStream {
+
+    BestCompressionOutputStream(OutputStream out) throws IOException {
+      super(out, FileChunks.CHUNK_SIZE);
+      def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+}
@@ -19,7 +19,9 @@ package io.cdap.hub;
 import io.cdap.hub.spec.CategoryMeta;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Packages, categories, and catalogs for the Hub.
@@ -29,12 +31,22 @@ public class Hub {
   private final List<CategoryMeta> categories;
   private final File packageCatalog;
   private final File categoryCatalog;
+  private final Map<String, File> catalogShards;
+  private final Map<String, File> catalogDeltas;
 
   public Hub(List<Package> packages, File packageCatalog, List<CategoryMeta> categories, File categoryCatalog) {
+    this(packages, packageCatalog, categories, categoryCatalog, Collections.<String, File>emptyMap(),
+         Collections.<String, File>emptyMap());
+  }
+
+  public Hub(List<Package> packages, File packageCatalog, List<CategoryMeta> categories, File categoryCatalog,
+             Map<String, File> catalogShards, Map<String, File> catalogDeltas) {
     this.packages = packages;
     this.packageCatalog = packageCatalog;
     this.categories = categories;
     this.categoryCatalog = categoryCatalog;
+    this.catalogShards = catalogShards;
+    this.catalogDeltas = catalogDeltas;
   }
 
   public List<Package> getPackages() {
@@ -52,4 +64,21 @@ public class Hub {
   public File getCategoryCatalog() {
     return categoryCatalog;
   }
+
+  /**
+   * Returns the CDAP compatibility index and its slices, the latest versions of each package, and the category
+   * shards and pages of the package catalog, followed by the catalog index, keyed by their path relative to the
+   * hub directory.
+   */
+  public Map<String, File> getCatalogShards() {
+    return catalogShards;
+  }
+
+  /**
+   * Returns the package catalog deltas that are still available, followed by the head that points to the latest one,
+   * keyed by their path relative to the hub directory.
+   */
+  public Map<String, File> getCatalogDeltas() {
+    return catalogDeltas;
+  }
 }
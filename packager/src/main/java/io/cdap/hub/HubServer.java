@@ -0,0 +1,909 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.cdap.hub.spec.PackageMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * HTTP server that serves a built hub directory, so that the hub can be used without an external web server.
+ *
+ * Files are sent straight from the file to the socket with {@link FileChannel#transferTo}. Responses include an
+ * ETag, so clients can revalidate with If-None-Match, and single byte ranges can be requested with a Range header.
+ * If the client accepts gzip encoding and a file has a gzip variant, the variant is served instead. The catalogs
+ * are requested by every client, so they are kept in memory until they change on disk.
+ *
+ * Only GET and HEAD requests are supported. Only the files of the hub are served: the top level catalogs, and
+ * everything under the 'packages', 'categories', 'catalog', and 'catalog-deltas' directories, except hidden files.
+ * Anything else in the directory, like the sources of the packager when it is run from the repository, is not served.
+ * The server only listens on the loopback interface, unless another address is given.
+ *
+ * Connections wait for their next request on a single selector thread, and are only handed to one of the request
+ * threads once a request arrives, so idle keep-alive connections don't hold on to a thread. Connections that are idle
+ * for 30 seconds are closed. If too many requests are waiting for a thread, further connections are closed.
+ *
+ * Packages can also be searched with '/search', which returns the packages in the catalog that match all the
+ * 'category', 'org', 'author', 'q' (words in the label or description), and 'cdapVersion' query parameters.
+ * The search uses a {@link CatalogIndex} of the package catalog, which is built again whenever the catalog changes.
+ */
+public class HubServer implements Closeable {
+  static final String DEFAULT_HOST = "127.0.0.1";
+  static final int DEFAULT_PORT = 8080;
+  static final int DEFAULT_THREADS = 16;
+  private static final Logger LOG = LoggerFactory.getLogger(HubServer.class);
+  private static final Set<String> CACHED_PATHS = ImmutableSet.of(
+    Packager.PACKAGE_CATALOG_NAME, Packager.PACKAGE_CATALOG_NAME + Gzip.EXTENSION,
+    Packager.CATEGORY_CATALOG_NAME, Packager.CATEGORY_CATALOG_NAME + Gzip.EXTENSION);
+  // top level files that the packager writes gzip variants for, and the pattern of the paths of all others
+  private static final Set<String> GZIP_PATHS = ImmutableSet.of(
+    Packager.PACKAGE_CATALOG_NAME, Packager.CATEGORY_CATALOG_NAME, CatalogShards.INDEX_NAME,
+    LatestVersions.LATEST_NAME);
+  private static final Pattern GZIP_PATH_PATTERN = Pattern.compile(
+    Pattern.quote(CatalogShards.CATALOG_DIR) + "/.+\\.json|" +
+      "packages/[^/]+/[^/]+/" + Pattern.quote(Packager.SPEC_NAME));
+  // the top level files and directories of the hub, which are the only ones served
+  private static final Set<String> SERVED_FILES = ImmutableSet.of(
+    Packager.PACKAGE_CATALOG_NAME, Packager.PACKAGE_CATALOG_NAME + Gzip.EXTENSION,
+    Packager.CATEGORY_CATALOG_NAME, Packager.CATEGORY_CATALOG_NAME + Gzip.EXTENSION,
+    CatalogShards.INDEX_NAME, CatalogShards.INDEX_NAME + Gzip.EXTENSION,
+    LatestVersions.LATEST_NAME, LatestVersions.LATEST_NAME + Gzip.EXTENSION);
+  private static final Set<String> SERVED_DIRS = ImmutableSet.of(
+    "packages", "categories", CatalogShards.CATALOG_DIR, CatalogDeltas.DELTAS_DIR);
+  private static final String SEARCH_PATH = "/search";
+  private static final Gson GSON = new Gson();
+  private static final Type CATALOG_TYPE = new TypeToken<List<PackageMeta>>() { }.getType();
+  private static final int MAX_HEADER_SIZE = 16 * 1024;
+  // how long a connection can be idle between requests, and how long a client can take to send a request
+  private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+  private static final int REQUEST_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(10);
+  private static final long IDLE_CHECK_MS = TimeUnit.SECONDS.toMillis(1);
+  // connections with a request that can wait for a thread, before further ones are closed
+  private static final int MAX_QUEUED_CONNECTIONS = 256;
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+  private final File rootDir;
+  private final String host;
+  private final int port;
+  private final int threads;
+  private final DigestCache digestCache;
+  private final ConcurrentMap<File, CachedFile> cachedFiles;
+  private volatile SearchIndex searchIndex;
+  // connections that were handled, and wait for their next request
+  private final Queue<SocketChannel> idleChannels;
+  private Selector selector;
+  private ServerSocketChannel serverChannel;
+  private ExecutorService executor;
+  private Thread selectorThread;
+
+  private HubServer(File rootDir, String host, int port, int threads) {
+    this.rootDir = rootDir;
+    this.host = host;
+    this.port = port;
+    this.threads = threads;
+    this.digestCache = DigestCache.inMemory();
+    this.cachedFiles = new ConcurrentHashMap<>();
+    this.idleChannels = new ConcurrentLinkedQueue<>();
+  }
+
+  /**
+   * Starts accepting connections on a new thread. The server keeps running until it is closed.
+   */
+  public void start() throws IOException {
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(host, port));
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    executor = ParallelTasks.newPool("hub-server", threads, MAX_QUEUED_CONNECTIONS);
+    selectorThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        select();
+      }
+    }, "hub-server-selector");
+    selectorThread.start();
+    LOG.info("Serving hub directory {} on {}:{}", rootDir, host, getPort());
+  }
+
+  /**
+   * Returns the port the server is listening on.
+   */
+  public int getPort() throws IOException {
+    return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (serverChannel != null) {
+      serverChannel.close();
+      selector.wakeup();
+      try {
+        selectorThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for the server to stop", e);
+      }
+    }
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  // accepts connections, and waits for requests on connections that are not being handled by a thread
+  private void select() {
+    List<SocketChannel> readable = new ArrayList<>();
+    long nextIdleCheck = System.nanoTime();
+    try {
+      while (serverChannel.isOpen()) {
+        selector.select(IDLE_CHECK_MS);
+        SocketChannel idle;
+        while ((idle = idleChannels.poll()) != null) {
+          register(idle);
+        }
+        while (!selector.selectedKeys().isEmpty()) {
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (key.isValid() && key.isAcceptable()) {
+              acceptConnections();
+            } else if (key.isValid() && key.isReadable()) {
+              key.cancel();
+              readable.add((SocketChannel) key.channel());
+            }
+          }
+          if (readable.isEmpty()) {
+            break;
+          }
+          // cancelled keys are only removed by the next selection, and their channels can't block until then
+          selector.selectNow();
+          for (SocketChannel channel : readable) {
+            dispatch(channel);
+          }
+          readable.clear();
+        }
+        if (System.nanoTime() - nextIdleCheck >= 0) {
+          closeIdleConnections();
+          nextIdleCheck = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(IDLE_CHECK_MS);
+        }
+      }
+    } catch (IOException e) {
+      LOG.error("Error waiting for connections. The server is not accepting connections anymore.", e);
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        closeQuietly(key.channel());
+      }
+      closeQuietly(selector);
+    }
+  }
+
+  private void acceptConnections() {
+    while (true) {
+      SocketChannel channel;
+      try {
+        channel = serverChannel.accept();
+      } catch (IOException e) {
+        LOG.warn("Error accepting connection", e);
+        return;
+      }
+      if (channel == null) {
+        return;
+      }
+      try {
+        channel.socket().setTcpNoDelay(true);
+        channel.configureBlocking(false);
+        register(channel);
+      } catch (IOException e) {
+        LOG.debug("Error accepting connection", e);
+        closeQuietly(channel);
+      }
+    }
+  }
+
+  // waits for the next request on the connection, which is closed if there is none within the idle timeout
+  private void register(SocketChannel channel) {
+    try {
+      channel.register(selector, SelectionKey.OP_READ, System.nanoTime() + IDLE_TIMEOUT_NANOS);
+    } catch (ClosedChannelException e) {
+      // closed by the client while it was being handled
+    }
+  }
+
+  private void closeIdleConnections() {
+    long now = System.nanoTime();
+    for (SelectionKey key : selector.keys()) {
+      Object deadline = key.attachment();
+      if (deadline != null && now - (Long) deadline >= 0) {
+        key.cancel();
+        closeQuietly(key.channel());
+      }
+    }
+  }
+
+  // hands a connection that has a request to a thread, or closes it if too many connections are waiting for one
+  private void dispatch(final SocketChannel channel) {
+    try {
+      channel.configureBlocking(true);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          handle(channel);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Too many connections are waiting for a thread, closing {}", channel);
+      closeQuietly(channel);
+    } catch (IOException e) {
+      LOG.debug("Error handling connection", e);
+      closeQuietly(channel);
+    }
+  }
+
+  // handles the requests that were sent on a connection. If the client keeps the connection open, it is handed back
+  // to the selector once every request it sent has been answered, so idle connections don't hold on to a thread.
+  private void handle(SocketChannel channel) {
+    boolean keepOpen = false;
+    try {
+      Socket socket = channel.socket();
+      // the socket's stream honors the read timeout, unlike the channel
+      socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+      InputStream in = new BufferedInputStream(socket.getInputStream());
+      do {
+        Request request = Request.read(in);
+        keepOpen = request != null && respond(channel, request);
+        // pipelined requests are read before the connection is handed back, since they may already be buffered
+      } while (keepOpen && in.available() > 0);
+      if (keepOpen) {
+        channel.configureBlocking(false);
+        idleChannels.add(channel);
+        selector.wakeup();
+      }
+    } catch (SocketTimeoutException | EOFException e) {
+      // slow or closed connection
+      keepOpen = false;
+    } catch (IOException e) {
+      LOG.debug("Error handling connection", e);
+      keepOpen = false;
+    } finally {
+      if (!keepOpen) {
+        closeQuietly(channel);
+      }
+    }
+  }
+
+  // returns whether the connection can be used for another request
+  private boolean respond(SocketChannel channel, Request request) throws IOException {
+    if (request.method == null) {
+      sendError(channel, request, 400, "Bad Request", false);
+      return false;
+    }
+    boolean keepAlive = request.isKeepAlive();
+    boolean head = "HEAD".equals(request.method);
+    if (!head && !"GET".equals(request.method)) {
+      sendError(channel, request, 405, "Method Not Allowed", false);
+      return false;
+    }
+    if (request.headers.containsKey("Content-Length") || request.headers.containsKey("Transfer-Encoding")) {
+      // the request body is not read, so the connection can't be used again
+      keepAlive = false;
+    }
+
+    if (SEARCH_PATH.equals(request.getRawPath())) {
+      return search(channel, request, keepAlive);
+    }
+
+    String path = resolve(request);
+    File file = path == null ? null : new File(rootDir, path);
+    if (file == null || !file.isFile()) {
+      sendError(channel, request, 404, "Not Found", keepAlive);
+      return keepAlive;
+    }
+
+    String range = request.headers.get("Range");
+    String ifRange = request.headers.get("If-Range");
+    File variant = hasGzipVariant(path) ? Gzip.getVariant(file) : null;
+    // byte ranges always refer to the original file
+    boolean gzip = variant != null && range == null && request.acceptsGzip();
+    Entity entity = getEntity(gzip ? path + Gzip.EXTENSION : path, gzip ? variant : file);
+
+    Response response = new Response(200, "OK")
+      .header("Content-Type", S3Publisher.getContentType(file.getName()))
+      .header("ETag", entity.eTag)
+      .header("Last-Modified", DATE_FORMAT.format(Instant.ofEpochMilli(entity.modified)))
+      .header("Accept-Ranges", "bytes");
+    if (variant != null) {
+      response.header("Vary", "Accept-Encoding");
+    }
+    if (gzip) {
+      response.header("Content-Encoding", Gzip.ENCODING);
+    }
+    if (entity.matches(request.headers.get("If-None-Match"))) {
+      LOG.debug("{} {} 304", request.method, request.path);
+      response.status(304, "Not Modified").write(channel, keepAlive);
+      return keepAlive;
+    }
+
+    long start = 0;
+    long length = entity.size;
+    if (range != null && (ifRange == null || ifRange.equals(entity.eTag))) {
+      long[] bounds = parseRange(range, entity.size);
+      if (bounds != null && bounds.length == 0) {
+        response.status(416, "Range Not Satisfiable").header("Content-Range", "bytes */" + entity.size)
+          .header("Content-Length", "0").write(channel, keepAlive);
+        return keepAlive;
+      }
+      if (bounds != null) {
+        start = bounds[0];
+        length = bounds[1] - bounds[0] + 1;
+        response.status(206, "Partial Content")
+          .header("Content-Range", String.format("bytes %d-%d/%d", bounds[0], bounds[1], entity.size));
+      }
+    }
+    LOG.debug("{} {} {} {} bytes", request.method, request.path, response.status, length);
+    response.header("Content-Length", String.valueOf(length)).write(channel, keepAlive);
+    if (!head) {
+      entity.transferTo(channel, start, length);
+    }
+    return keepAlive;
+  }
+
+  // returns whether the packager writes a gzip variant of the file at the given path. Other files can have a sibling
+  // whose name ends in '.gz', like a package with both 'data.csv' and 'data.csv.gz', without it being a variant.
+  private static boolean hasGzipVariant(String path) {
+    return GZIP_PATHS.contains(path) || GZIP_PATH_PATTERN.matcher(path).matches();
+  }
+
+  // returns the path relative to the root directory that a request path refers to, or null if it is not allowed
+  @Nullable
+  private static String resolve(Request request) {
+    String rawPath = request.getRawPath();
+    if (!rawPath.startsWith("/")) {
+      return null;
+    }
+    String path = decode(rawPath.replace("+", "%2B"));
+    if (path == null) {
+      return null;
+    }
+    List<String> segments = new ArrayList<>();
+    for (String segment : Splitter.on('/').omitEmptyStrings().split(path)) {
+      // rejects parent directories and hidden files
+      if (segment.startsWith(".") || segment.indexOf('\\') >= 0 || segment.indexOf('\0') >= 0) {
+        return null;
+      }
+      segments.add(segment);
+    }
+    if (segments.isEmpty() ||
+      !(segments.size() == 1 ? SERVED_FILES.contains(segments.get(0)) : SERVED_DIRS.contains(segments.get(0)))) {
+      return null;
+    }
+    return Joiner.on('/').join(segments);
+  }
+
+  // decodes a url encoded string, or returns null if it is not valid
+  @Nullable
+  private static String decode(String encoded) {
+    try {
+      return URLDecoder.decode(encoded, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  // returns the first and last byte of a single byte range, an empty array if the range can't be satisfied,
+  // or null if the header is not a single byte range and should be ignored
+  @Nullable
+  private static long[] parseRange(String range, long size) {
+    if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+      return null;
+    }
+    String spec = range.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    try {
+      long first;
+      long last;
+      if (dash == 0) {
+        // the last n bytes
+        long suffix = Long.parseLong(spec.substring(1));
+        if (suffix == 0) {
+          return new long[0];
+        }
+        first = Math.max(0, size - suffix);
+        last = size - 1;
+      } else {
+        first = Long.parseLong(spec.substring(0, dash));
+        last = dash == spec.length() - 1 ? size - 1 : Math.min(size - 1, Long.parseLong(spec.substring(dash + 1)));
+        if (last < first && first < size) {
+          return null;
+        }
+      }
+      return first >= size ? new long[0] : new long[] { first, last };
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private Entity getEntity(String path, File file) throws IOException {
+    if (!CACHED_PATHS.contains(path)) {
+      return new Entity(file, null, file.length(), file.lastModified(), digestCache.get(file).getMd5());
+    }
+    CachedFile cached = getCachedFile(file);
+    return new Entity(file, cached.contents, cached.size, cached.modified, cached.md5);
+  }
+
+  // returns the contents of the file from memory, reading it again if it changed since it was last read
+  private CachedFile getCachedFile(File file) throws IOException {
+    CachedFile cached = cachedFiles.get(file);
+    if (cached == null || cached.size != file.length() || cached.modified != file.lastModified()) {
+      long modified = file.lastModified();
+      byte[] contents = Files.readAllBytes(file.toPath());
+      cached = new CachedFile(contents.length, modified, ByteBuffer.wrap(contents).asReadOnlyBuffer(),
+                              Hashing.md5().hashBytes(contents).toString());
+      cachedFiles.put(file, cached);
+      LOG.debug("Loaded {} into memory", file);
+    }
+    return cached;
+  }
+
+  // returns an index of the package catalog, building it again if the catalog changed since it was last built
+  @Nullable
+  private CatalogIndex getCatalogIndex() throws IOException {
+    File catalogFile = new File(rootDir, Packager.PACKAGE_CATALOG_NAME);
+    if (!catalogFile.isFile()) {
+      return null;
+    }
+    CachedFile cached = getCachedFile(catalogFile);
+    SearchIndex current = searchIndex;
+    if (current == null || current.source != cached) {
+      List<PackageMeta> catalog;
+      try (Reader reader = new InputStreamReader(new ByteBufferInputStream(cached.contents.duplicate()),
+                                                 StandardCharsets.UTF_8)) {
+        catalog = GSON.fromJson(reader, CATALOG_TYPE);
+      }
+      current = new SearchIndex(cached, CatalogIndex.build(catalog));
+      searchIndex = current;
+      LOG.debug("Indexed {} packages in {}", catalog.size(), catalogFile);
+    }
+    return current.index;
+  }
+
+  // responds to a search with the packages that match every query parameter, in catalog order
+  private boolean search(SocketChannel channel, Request request, boolean keepAlive) throws IOException {
+    Map<String, String> params = request.getQueryParameters();
+    CatalogIndex.Query query = CatalogIndex.query()
+      .setCategory(params.get("category"))
+      .setOrg(params.get("org"))
+      .setAuthor(params.get("author"))
+      .setText(params.get("q"));
+    if (params.containsKey("cdapVersion")) {
+      try {
+        query.setCdapVersion(Version.parse(params.get("cdapVersion")));
+      } catch (IllegalArgumentException e) {
+        sendError(channel, request, 400, "Bad Request", keepAlive);
+        return keepAlive;
+      }
+    }
+    CatalogIndex index = getCatalogIndex();
+    if (index == null) {
+      sendError(channel, request, 404, "Not Found", keepAlive);
+      return keepAlive;
+    }
+    byte[] body = GSON.toJson(index.search(query), CATALOG_TYPE).getBytes(StandardCharsets.UTF_8);
+    LOG.debug("{} {} 200 {} bytes", request.method, request.path, body.length);
+    new Response(200, "OK")
+      .header("Content-Type", S3Publisher.getContentType(Packager.PACKAGE_CATALOG_NAME))
+      .header("Content-Length", String.valueOf(body.length))
+      .write(channel, keepAlive);
+    if (!"HEAD".equals(request.method)) {
+      writeFully(channel, ByteBuffer.wrap(body));
+    }
+    return keepAlive;
+  }
+
+  private static void sendError(SocketChannel channel, Request request, int status, String reason,
+                                boolean keepAlive) throws IOException {
+    LOG.debug("{} {} {}", request.method, request.path, status);
+    byte[] body = (reason + "\n").getBytes(StandardCharsets.UTF_8);
+    new Response(status, reason)
+      .header("Content-Type", "text/plain")
+      .header("Content-Length", String.valueOf(body.length))
+      .write(channel, keepAlive);
+    if (!"HEAD".equals(request.method)) {
+      writeFully(channel, ByteBuffer.wrap(body));
+    }
+  }
+
+  private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      LOG.debug("Error closing {}", closeable, e);
+    }
+  }
+
+  public static Builder builder(File rootDir) {
+    return new Builder(rootDir);
+  }
+
+  /**
+   * Builder to create the HubServer.
+   */
+  public static class Builder {
+    private final File rootDir;
+    private String host;
+    private int port;
+    private int threads;
+
+    public Builder(File rootDir) {
+      this.rootDir = rootDir;
+      host = DEFAULT_HOST;
+      port = DEFAULT_PORT;
+      threads = DEFAULT_THREADS;
+    }
+
+    /**
+     * Set the host name or address to listen on. Defaults to the loopback address, so that the hub can only be
+     * reached from the same machine. Use '0.0.0.0' to listen on every interface.
+     */
+    public Builder setHost(String host) {
+      this.host = host;
+      return this;
+    }
+
+    /**
+     * Set the port to listen on. If it is 0, any free port is used.
+     */
+    public Builder setPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of connections to handle at the same time.
+     */
+    public Builder setThreads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    public HubServer build() {
+      return new HubServer(rootDir, host, port, threads);
+    }
+  }
+
+  /**
+   * A file that is served from memory.
+   */
+  private static class CachedFile {
+    private final long size;
+    private final long modified;
+    private final ByteBuffer contents;
+    private final String md5;
+
+    private CachedFile(long size, long modified, ByteBuffer contents, String md5) {
+      this.size = size;
+      this.modified = modified;
+      this.contents = contents;
+      this.md5 = md5;
+    }
+  }
+
+  /**
+   * Index of a cached package catalog.
+   */
+  private static class SearchIndex {
+    private final CachedFile source;
+    private final CatalogIndex index;
+
+    private SearchIndex(CachedFile source, CatalogIndex index) {
+      this.source = source;
+      this.index = index;
+    }
+  }
+
+  /**
+   * Reads the remaining bytes of a buffer.
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+  }
+
+  /**
+   * What is sent in the body of a response, either from a file or from memory.
+   */
+  private static class Entity {
+    private final File file;
+    @Nullable
+    private final ByteBuffer contents;
+    private final long size;
+    private final long modified;
+    private final String eTag;
+
+    private Entity(File file, @Nullable ByteBuffer contents, long size, long modified, String md5) {
+      this.file = file;
+      this.contents = contents;
+      this.size = size;
+      this.modified = modified;
+      this.eTag = "\"" + md5 + "\"";
+    }
+
+    private boolean matches(@Nullable String ifNoneMatch) {
+      if (ifNoneMatch == null) {
+        return false;
+      }
+      for (String tag : Splitter.on(',').trimResults().split(ifNoneMatch)) {
+        // weak comparison, as required for If-None-Match
+        if (tag.equals("*") || tag.equals(eTag) || tag.equals("W/" + eTag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void transferTo(SocketChannel channel, long start, long length) throws IOException {
+      if (contents != null) {
+        ByteBuffer buffer = contents.duplicate();
+        buffer.position((int) start).limit((int) (start + length));
+        writeFully(channel, buffer);
+        return;
+      }
+      try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        long position = start;
+        long end = start + length;
+        while (position < end) {
+          long transferred = fileChannel.transferTo(position, end - position, channel);
+          if (transferred <= 0 && position >= fileChannel.size()) {
+            throw new EOFException("File " + file + " was truncated while it was being sent");
+          }
+          position += transferred;
+        }
+      }
+    }
+  }
+
+  /**
+   * Status line and headers of a response.
+   */
+  private static class Response {
+    private final Map<String, String> headers;
+    private int status;
+    private String reason;
+
+    private Response(int status, String reason) {
+      this.headers = new TreeMap<>();
+      this.status = status;
+      this.reason = reason;
+    }
+
+    private Response status(int status, String reason) {
+      this.status = status;
+      this.reason = reason;
+      return this;
+    }
+
+    private Response header(String name, String value) {
+      headers.put(name, value);
+      return this;
+    }
+
+    private void write(SocketChannel channel, boolean keepAlive) throws IOException {
+      StringBuilder builder = new StringBuilder()
+        .append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n")
+        .append("Date: ").append(DATE_FORMAT.format(Instant.now())).append("\r\n")
+        .append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        builder.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+      }
+      builder.append("\r\n");
+      writeFully(channel, ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.ISO_8859_1)));
+    }
+  }
+
+  /**
+   * Request line and headers of a request.
+   */
+  private static class Request {
+    // null if the request line could not be parsed
+    @Nullable
+    private final String method;
+    private final String path;
+    private final String version;
+    private final Map<String, String> headers;
+
+    private Request(@Nullable String method, String path, String version, Map<String, String> headers) {
+      this.method = method;
+      this.path = path;
+      this.version = version;
+      this.headers = headers;
+    }
+
+    // reads the next request, or returns null if the connection was closed before another request was sent
+    @Nullable
+    private static Request read(InputStream in) throws IOException {
+      int[] remaining = { MAX_HEADER_SIZE };
+      String requestLine = readLine(in, remaining);
+      if (requestLine == null) {
+        return null;
+      }
+      Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      String line;
+      while ((line = readLine(in, remaining)) != null && !line.isEmpty()) {
+        int colon = line.indexOf(':');
+        if (colon > 0) {
+          headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+        }
+      }
+      if (line == null) {
+        throw new EOFException("Connection closed while reading request headers");
+      }
+      String[] parts = requestLine.split(" ");
+      if (parts.length != 3 || !parts[2].startsWith("HTTP/")) {
+        return new Request(null, requestLine, "HTTP/1.0", headers);
+      }
+      return new Request(parts[0], parts[1], parts[2], headers);
+    }
+
+    // reads a line ending with CRLF or LF, or returns null if the stream ended before anything was read
+    @Nullable
+    private static String readLine(InputStream in, int[] remaining) throws IOException {
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      int b;
+      while ((b = in.read()) != '\n') {
+        if (b < 0) {
+          if (line.size() == 0) {
+            return null;
+          }
+          throw new EOFException("Connection closed while reading request");
+        }
+        if (--remaining[0] < 0) {
+          throw new IOException("Request headers are larger than " + MAX_HEADER_SIZE + " bytes");
+        }
+        if (b != '\r') {
+          line.write(b);
+        }
+      }
+      return new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    // returns the path without the query string
+    private String getRawPath() {
+      int queryIndex = path.indexOf('?');
+      return queryIndex < 0 ? path : path.substring(0, queryIndex);
+    }
+
+    // returns the decoded query parameters. If a parameter is given more than once, the last value is used.
+    private Map<String, String> getQueryParameters() {
+      Map<String, String> params = new HashMap<>();
+      int queryIndex = path.indexOf('?');
+      if (queryIndex < 0) {
+        return params;
+      }
+      for (String param : Splitter.on('&').omitEmptyStrings().split(path.substring(queryIndex + 1))) {
+        int equals = param.indexOf('=');
+        String name = decode(equals < 0 ? param : param.substring(0, equals));
+        String value = decode(equals < 0 ? "" : param.substring(equals + 1));
+        if (name != null && value != null) {
+          params.put(name, value);
+        }
+      }
+      return params;
+    }
+
+    private boolean isKeepAlive() {
+      String connection = headers.get("Connection");
+      if ("HTTP/1.1".equals(version)) {
+        return !"close".equalsIgnoreCase(connection);
+      }
+      return "keep-alive".equalsIgnoreCase(connection);
+    }
+
+    private boolean acceptsGzip() {
+      String acceptEncoding = headers.get("Accept-Encoding");
+      if (acceptEncoding == null) {
+        return false;
+      }
+      for (String coding : Splitter.on(',').trimResults().split(acceptEncoding)) {
+        String[] parts = coding.split(";");
+        String name = parts[0].trim();
+        if (!name.equalsIgnoreCase(Gzip.ENCODING) && !name.equals("*")) {
+          continue;
+        }
+        // a coding with a quality of 0 is not acceptable
+        return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+      }
+      return false;
+    }
+  }
+}
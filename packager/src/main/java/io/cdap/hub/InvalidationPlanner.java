@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Plans CloudFront invalidations for a set of updated object paths.
+ *
+ * CloudFront charges for each invalidated path, where a wildcard path counts as a single path, and limits how many
+ * paths and wildcard paths can be in progress at once. Paths are grouped by package, or by directory for anything
+ * that is not in a package. The groups with the most paths are replaced by a wildcard, as long as the wildcards fit
+ * in the first batch, and the paths of all other groups are invalidated as they are. Paths directly under the root
+ * are never collapsed, since a wildcard there would invalidate the entire hub. The first batch has every wildcard,
+ * and the remaining paths are split into as few batches as the limit on paths allows, to be run one after the other.
+ */
+final class InvalidationPlanner {
+  // limits on what can be in progress at the same time for a distribution
+  static final int DEFAULT_MAX_PATHS = 3000;
+  static final int DEFAULT_MAX_WILDCARDS = 15;
+  private static final String PACKAGES_DIR = "packages/";
+  private final String root;
+  private final int maxPaths;
+  private final int maxWildcards;
+
+  /**
+   * @param root the path that all hub objects are under, starting and ending with '/'
+   * @param maxPaths maximum number of paths in a batch, including wildcards
+   * @param maxWildcards maximum number of wildcard paths in a batch
+   */
+  InvalidationPlanner(String root, int maxPaths, int maxWildcards) {
+    this.root = root;
+    this.maxPaths = maxPaths;
+    this.maxWildcards = maxWildcards;
+  }
+
+  /**
+   * Returns batches of paths that together invalidate every given path, in a deterministic order.
+   */
+  List<List<String>> plan(Collection<String> paths) {
+    Map<String, Set<String>> groups = new TreeMap<>();
+    Set<String> literals = new TreeSet<>();
+    for (String path : paths) {
+      String wildcard = getWildcard(path);
+      if (wildcard == null) {
+        literals.add(path);
+        continue;
+      }
+      Set<String> group = groups.get(wildcard);
+      if (group == null) {
+        group = new TreeSet<>();
+        groups.put(wildcard, group);
+      }
+      group.add(path);
+    }
+
+    // collapse the groups that save the most paths, ordered by wildcard when they save the same number
+    List<Map.Entry<String, Set<String>>> largestFirst = new ArrayList<>(groups.entrySet());
+    largestFirst.sort(new Comparator<Map.Entry<String, Set<String>>>() {
+      @Override
+      public int compare(Map.Entry<String, Set<String>> e1, Map.Entry<String, Set<String>> e2) {
+        return Integer.compare(e2.getValue().size(), e1.getValue().size());
+      }
+    });
+    Set<String> wildcards = new TreeSet<>();
+    for (Map.Entry<String, Set<String>> entry : largestFirst) {
+      if (entry.getValue().size() > 1 && wildcards.size() < Math.min(maxWildcards, maxPaths)) {
+        wildcards.add(entry.getKey());
+      } else {
+        literals.addAll(entry.getValue());
+      }
+    }
+
+    List<List<String>> batches = new ArrayList<>();
+    List<String> batch = new ArrayList<>(wildcards);
+    for (String literal : literals) {
+      if (batch.size() == maxPaths) {
+        batches.add(batch);
+        batch = new ArrayList<>();
+      }
+      batch.add(literal);
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+  /**
+   * Returns the number of paths CloudFront will charge for in the given batches.
+   */
+  static int countPaths(List<List<String>> batches) {
+    int count = 0;
+    for (List<String> batch : batches) {
+      count += batch.size();
+    }
+    return count;
+  }
+
+  // returns the wildcard that covers the path along with the rest of its group, or null if it can't be collapsed
+  private String getWildcard(String path) {
+    if (!path.startsWith(root)) {
+      return null;
+    }
+    String relative = path.substring(root.length());
+    if (relative.startsWith(PACKAGES_DIR)) {
+      // everything in all versions of a package is covered by one wildcard
+      int nameEnd = relative.indexOf('/', PACKAGES_DIR.length());
+      return nameEnd < 0 ? null : root + relative.substring(0, nameEnd + 1) + "*";
+    }
+    int parentEnd = relative.lastIndexOf('/');
+    return parentEnd < 0 ? null : root + relative.substring(0, parentEnd + 1) + "*";
+  }
+}
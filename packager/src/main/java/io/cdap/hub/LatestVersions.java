@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Writes the latest versions of each package, so that clients don't have to find them in the full package catalog.
+ *
+ *   latest.json
+ *
+ * For each package name, this contains the latest stable version, the latest beta version, and the latest version
+ * that is compatible with each CDAP minor version. Versions are compared semantically, so '1.10.0' is later than
+ * '1.9.0'. A version is a beta if its spec says so, or if it has a suffix like '-SNAPSHOT'. The latest version for
+ * a CDAP minor version is the latest stable version compatible with it, or the latest beta if no stable version is.
+ * The CDAP minor versions are the same as those in the {@link CompatibilityIndex}.
+ * Anything that does not exist is left out, like the latest beta of a package that never had one.
+ */
+final class LatestVersions {
+  static final String LATEST_NAME = "latest.json";
+  private static final Logger LOG = LoggerFactory.getLogger(LatestVersions.class);
+
+  private LatestVersions() {
+  }
+
+  /**
+   * Writes the latest versions of the given packages, replacing the file written by a previous build.
+   *
+   * @param baseDir the directory containing the package catalog
+   * @param packages all packages in the catalog
+   * @param latestCdapVersion the latest CDAP version, which the compatibility index lists minor versions up to
+   * @param compact whether to write the file without any whitespace
+   * @return the file and its gzip variant, keyed by their path relative to the base directory
+   */
+  static Map<String, File> write(File baseDir, List<Package> packages, Version latestCdapVersion,
+                                 boolean compact) throws IOException {
+    Map<String, List<Package>> versions = new TreeMap<>();
+    for (Package pkg : packages) {
+      List<Package> packageVersions = versions.get(pkg.getName());
+      if (packageVersions == null) {
+        packageVersions = new ArrayList<>();
+        versions.put(pkg.getName(), packageVersions);
+      }
+      packageVersions.add(pkg);
+    }
+
+    Map<String, VersionRange> minorVersions = CompatibilityIndex.getMinorVersions(packages, latestCdapVersion);
+    Map<String, Latest> latest = new LinkedHashMap<>();
+    for (Map.Entry<String, List<Package>> entry : versions.entrySet()) {
+      Latest packageLatest = new Latest();
+      for (Package pkg : entry.getValue()) {
+        if (isBeta(pkg)) {
+          packageLatest.beta = later(packageLatest.beta, pkg.getVersion());
+        } else {
+          packageLatest.stable = later(packageLatest.stable, pkg.getVersion());
+        }
+      }
+      for (Map.Entry<String, VersionRange> minorVersion : minorVersions.entrySet()) {
+        String stable = null;
+        String beta = null;
+        for (Package pkg : entry.getValue()) {
+          if (!CompatibilityIndex.isCompatible(pkg, minorVersion.getValue())) {
+            continue;
+          }
+          if (isBeta(pkg)) {
+            beta = later(beta, pkg.getVersion());
+          } else {
+            stable = later(stable, pkg.getVersion());
+          }
+        }
+        if (stable != null || beta != null) {
+          packageLatest.cdapVersions.put(minorVersion.getKey(), stable == null ? beta : stable);
+        }
+      }
+      latest.put(entry.getKey(), packageLatest);
+    }
+
+    File file = new File(baseDir, LATEST_NAME);
+    Gson gson = compact ? new Gson() : new GsonBuilder().setPrettyPrinting().create();
+    File tempFile = AtomicFiles.getTempFile(file);
+    try {
+      try (Writer writer = Files.newWriter(tempFile, StandardCharsets.UTF_8)) {
+        gson.toJson(latest, writer);
+        writer.write("\n");
+      }
+      AtomicFiles.replace(tempFile, file);
+    } finally {
+      AtomicFiles.deleteTempFile(file);
+    }
+    Map<String, File> files = new LinkedHashMap<>();
+    files.put(LATEST_NAME, file);
+    files.put(LATEST_NAME + Gzip.EXTENSION, Gzip.compress(file));
+    LOG.info("Created latest versions of {} packages in {}", latest.size(), file);
+    return files;
+  }
+
+  /**
+   * Deletes the latest versions file.
+   */
+  static void delete(File baseDir) throws IOException {
+    File file = new File(baseDir, LATEST_NAME);
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Could not delete latest versions file " + file);
+    }
+    Gzip.deleteVariant(file);
+  }
+
+  private static boolean isBeta(Package pkg) {
+    if (Boolean.TRUE.equals(pkg.getMeta().getBeta())) {
+      return true;
+    }
+    try {
+      return !Version.parse(pkg.getVersion()).isRelease();
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private static String later(@Nullable String version1, String version2) {
+    return version1 == null || CompatibilityIndex.compareVersions(version2, version1) > 0 ? version2 : version1;
+  }
+
+  /**
+   * What is serialized for each package name.
+   */
+  private static class Latest {
+    private String stable;
+    private String beta;
+    private final Map<String, String> cdapVersions = new LinkedHashMap<>();
+  }
+}
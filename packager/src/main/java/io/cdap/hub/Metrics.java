@@ -0,0 +1,268 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects how long each build and publish operation takes and how many bytes it handles, along with counts of
+ * events like s3 requests, so that a release can be broken down into time spent signing, archiving, hashing,
+ * and uploading.
+ *
+ * Every duration of an operation is kept, so that the reported percentiles are exact. An operation takes at least
+ * a few microseconds of I/O, so even a hub with a hundred thousand package versions only needs a few megabytes.
+ * Metrics can be recorded from any thread.
+ */
+public final class Metrics {
+  private static final Logger LOG = LoggerFactory.getLogger(Metrics.class);
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private final ConcurrentMap<String, Operation> operations;
+  private final ConcurrentMap<String, AtomicLong> counters;
+
+  public Metrics() {
+    this.operations = new ConcurrentSkipListMap<>();
+    this.counters = new ConcurrentSkipListMap<>();
+  }
+
+  /**
+   * Starts timing an operation. The operation is only recorded once the returned timer is stopped.
+   */
+  public Timer start(String operation) {
+    return new Timer(operation, System.nanoTime());
+  }
+
+  /**
+   * Records an operation that took the given time and handled the given number of bytes.
+   */
+  public void record(String operation, long nanos, long bytes) {
+    Operation existing = operations.get(operation);
+    if (existing == null) {
+      Operation created = new Operation();
+      existing = operations.putIfAbsent(operation, created);
+      if (existing == null) {
+        existing = created;
+      }
+    }
+    existing.add(nanos, bytes);
+  }
+
+  /**
+   * Adds to the count of an event.
+   */
+  public void increment(String counter, long delta) {
+    AtomicLong existing = counters.get(counter);
+    if (existing == null) {
+      AtomicLong created = new AtomicLong();
+      existing = counters.putIfAbsent(counter, created);
+      if (existing == null) {
+        existing = created;
+      }
+    }
+    existing.addAndGet(delta);
+  }
+
+  /**
+   * Logs a line for each operation and counter.
+   */
+  public void log() {
+    for (Map.Entry<String, OperationReport> entry : getOperationReports().entrySet()) {
+      OperationReport report = entry.getValue();
+      LOG.info("{}: {} in {} ms, p50 {} ms, p99 {} ms, max {} ms, {} bytes", entry.getKey(), report.count,
+               report.totalMs, report.p50Ms, report.p99Ms, report.maxMs, report.bytes);
+    }
+    for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+      LOG.info("{}: {}", entry.getKey(), entry.getValue().get());
+    }
+  }
+
+  /**
+   * Writes all operations and counters as JSON. For each operation, this has the count, the total, median, 99th
+   * percentile, and maximum time in milliseconds, the total bytes, and the bytes per second of all operations.
+   */
+  public void writeJson(File file) throws IOException {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("operations", getOperationReports());
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().get());
+    }
+    report.put("counters", counts);
+    try (Writer writer = Files.newWriter(file, StandardCharsets.UTF_8)) {
+      GSON.toJson(report, writer);
+      writer.write("\n");
+    }
+    LOG.info("Wrote metrics to {}", file);
+  }
+
+  /**
+   * Writes all operations and counters in the Prometheus text format, with operation times as summaries in seconds.
+   */
+  public void writePrometheus(File file) throws IOException {
+    StringBuilder text = new StringBuilder();
+    text.append("# HELP hub_operation_seconds Time taken by build and publish operations.\n");
+    text.append("# TYPE hub_operation_seconds summary\n");
+    for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+      long[] durations = entry.getValue().getSortedDurations();
+      String label = "operation=\"" + entry.getKey() + "\"";
+      appendSample(text, "hub_operation_seconds", label + ",quantile=\"0.5\"", seconds(percentile(durations, 50)));
+      appendSample(text, "hub_operation_seconds", label + ",quantile=\"0.99\"", seconds(percentile(durations, 99)));
+      appendSample(text, "hub_operation_seconds_sum", label, seconds(entry.getValue().getTotalNanos()));
+      appendSample(text, "hub_operation_seconds_count", label, Long.toString(durations.length));
+    }
+    text.append("# HELP hub_operation_bytes_total Bytes handled by build and publish operations.\n");
+    text.append("# TYPE hub_operation_bytes_total counter\n");
+    for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+      appendSample(text, "hub_operation_bytes_total", "operation=\"" + entry.getKey() + "\"",
+                   Long.toString(entry.getValue().getBytes()));
+    }
+    text.append("# HELP hub_events_total Number of times each event happened, like s3 requests.\n");
+    text.append("# TYPE hub_events_total counter\n");
+    for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+      appendSample(text, "hub_events_total", "event=\"" + entry.getKey() + "\"",
+                   Long.toString(entry.getValue().get()));
+    }
+    Files.write(text, file, StandardCharsets.UTF_8);
+    LOG.info("Wrote metrics in Prometheus format to {}", file);
+  }
+
+  private Map<String, OperationReport> getOperationReports() {
+    Map<String, OperationReport> reports = new LinkedHashMap<>();
+    for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+      reports.put(entry.getKey(), new OperationReport(entry.getValue()));
+    }
+    return reports;
+  }
+
+  private static void appendSample(StringBuilder text, String name, String labels, String value) {
+    text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+  }
+
+  // nearest rank percentile of sorted durations
+  private static long percentile(long[] sorted, int percentile) {
+    if (sorted.length == 0) {
+      return 0L;
+    }
+    int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+
+  private static String seconds(long nanos) {
+    return String.format(Locale.ENGLISH, "%.6f", nanos / 1e9);
+  }
+
+  private static double millis(long nanos) {
+    return Math.round(nanos / 1e3) / 1e3;
+  }
+
+  /**
+   * Times a single operation.
+   */
+  public final class Timer {
+    private final String operation;
+    private final long start;
+
+    private Timer(String operation, long start) {
+      this.operation = operation;
+      this.start = start;
+    }
+
+    public void stop() {
+      stop(0L);
+    }
+
+    /**
+     * Records the operation, which handled the given number of bytes.
+     */
+    public void stop(long bytes) {
+      record(operation, System.nanoTime() - start, bytes);
+    }
+  }
+
+  /**
+   * All durations and the total bytes of an operation.
+   */
+  private static class Operation {
+    private long[] durations = new long[16];
+    private int count;
+    private long totalNanos;
+    private long bytes;
+
+    private synchronized void add(long nanos, long bytes) {
+      if (count == durations.length) {
+        durations = Arrays.copyOf(durations, count * 2);
+      }
+      durations[count++] = nanos;
+      this.totalNanos += nanos;
+      this.bytes += bytes;
+    }
+
+    private synchronized long[] getSortedDurations() {
+      long[] sorted = Arrays.copyOf(durations, count);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+
+    private synchronized long getTotalNanos() {
+      return totalNanos;
+    }
+
+    private synchronized long getBytes() {
+      return bytes;
+    }
+  }
+
+  /**
+   * What is serialized for each operation.
+   */
+  private static class OperationReport {
+    private final int count;
+    private final double totalMs;
+    private final double p50Ms;
+    private final double p99Ms;
+    private final double maxMs;
+    private final long bytes;
+    private final long bytesPerSecond;
+
+    private OperationReport(Operation operation) {
+      long[] durations = operation.getSortedDurations();
+      long totalNanos = operation.getTotalNanos();
+      this.count = durations.length;
+      this.totalMs = millis(totalNanos);
+      this.p50Ms = millis(percentile(durations, 50));
+      this.p99Ms = millis(percentile(durations, 99));
+      this.maxMs = durations.length == 0 ? 0 : millis(durations[durations.length - 1]);
+      this.bytes = operation.getBytes();
+      this.bytesPerSecond = totalNanos == 0 ? 0L : (long) (bytes / (totalNanos / 1e9));
+    }
+  }
+}
@@ -19,6 +19,8 @@ package io.cdap.hub;
 import com.google.gson.Gson;
 import io.cdap.hub.spec.PackageMeta;
 import io.cdap.hub.spec.PackageSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileReader;
@@ -34,6 +36,7 @@ import javax.annotation.Nullable;
  * Contains all files in a package.
  */
 public class Package {
+  private static final Logger LOG = LoggerFactory.getLogger(Package.class);
   private final String name;
   private final String version;
   private final PackageMeta meta;
@@ -42,22 +45,41 @@ public class Package {
   @Nullable
   private final File icon;
   private final SignedFile spec;
+  // gzip variant of the spec
+  @Nullable
+  private final File specGzip;
   @Nullable
   private final SignedFile archive;
   // all the files that are in the package, plus their signatures.
   private final List<SignedFile> files;
   private final Set<String> fileNames;
+  @Nullable
+  private final VersionRange cdapVersionRange;
 
   public Package(String name, String version, PackageMeta meta, File license, File icon,
                  SignedFile archive, SignedFile spec, List<SignedFile> files) {
+    this(name, version, meta, license, icon, archive, spec, null, files);
+  }
+
+  public Package(String name, String version, PackageMeta meta, File license, File icon,
+                 SignedFile archive, SignedFile spec, @Nullable File specGzip, List<SignedFile> files) {
+    this(name, version, meta, license, icon, archive, spec, specGzip, files,
+         meta.getCdapVersion() == null ? null : VersionRange.parse(meta.getCdapVersion()));
+  }
+
+  public Package(String name, String version, PackageMeta meta, File license, File icon,
+                 SignedFile archive, SignedFile spec, @Nullable File specGzip, List<SignedFile> files,
+                 @Nullable VersionRange cdapVersionRange) {
     this.name = name;
     this.version = version;
     this.meta = meta;
     this.archive = archive;
     this.spec = spec;
+    this.specGzip = specGzip;
     this.license = license;
     this.icon = icon;
     this.files = Collections.unmodifiableList(files);
+    this.cdapVersionRange = cdapVersionRange;
     this.fileNames = new HashSet<>();
     if (license != null) {
       fileNames.add(license.getName());
@@ -65,6 +87,9 @@ public class Package {
     if (icon != null) {
       fileNames.add(icon.getName());
     }
+    if (specGzip != null) {
+      fileNames.add(specGzip.getName());
+    }
     addSignedFile(spec);
     addSignedFile(archive);
     for (SignedFile signedFile : files) {
@@ -84,6 +109,14 @@ public class Package {
     return meta;
   }
 
+  /**
+   * Returns the range of CDAP versions the package can be used with, or null if the spec does not have one.
+   */
+  @Nullable
+  public VersionRange getCdapVersionRange() {
+    return cdapVersionRange;
+  }
+
   @Nullable
   public SignedFile getArchive() {
     return archive;
@@ -93,6 +126,11 @@ public class Package {
     return spec;
   }
 
+  @Nullable
+  public File getSpecGzip() {
+    return specGzip;
+  }
+
   @Nullable
   public File getLicense() {
     return license;
@@ -133,10 +171,12 @@ public class Package {
     private final String name;
     private final String version;
     private PackageMeta meta;
+    private VersionRange cdapVersionRange;
     private File license;
     private File icon;
     private SignedFile archive;
     private SignedFile spec;
+    private File specGzip;
     private List<SignedFile> files;
 
     public Builder(String name, String version) {
@@ -156,12 +196,18 @@ public class Package {
         PackageSpec specObj = GSON.fromJson(reader, PackageSpec.class);
         specObj.validate();
         meta = PackageMeta.fromSpec(name, version, specObj);
+        cdapVersionRange = specObj.getCdapVersion() == null ? null : VersionRange.parse(specObj.getCdapVersion());
       } catch (Exception e) {
         throw new IllegalArgumentException("Unable to parse spec file " + spec, e);
       }
       return this;
     }
 
+    public Builder setSpecGzip(File specGzip) {
+      this.specGzip = specGzip;
+      return this;
+    }
+
     public Builder setLicense(File license) {
       this.license = license;
       return this;
@@ -182,7 +228,11 @@ public class Package {
     }
 
     public Package build() {
-      return new Package(name, version, meta, license, icon, archive, spec, files);
+      if (cdapVersionRange != null && cdapVersionRange.isEmpty()) {
+        LOG.warn("Package {}-{} has CDAP version range {}, which does not contain any version.",
+                 name, version, cdapVersionRange);
+      }
+      return new Package(name, version, meta, license, icon, archive, spec, specGzip, files, cdapVersionRange);
     }
   }
 }
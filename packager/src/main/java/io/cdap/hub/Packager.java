@@ -16,34 +16,31 @@
 
 package io.cdap.hub;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import io.cdap.hub.spec.CategoryMeta;
 import io.cdap.hub.spec.PackageMeta;
 import org.bouncycastle.openpgp.PGPException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SignatureException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeSet;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import javax.annotation.Nullable;
 
 /**
@@ -61,16 +58,30 @@ import javax.annotation.Nullable;
  */
 public class Packager {
   private static final Logger LOG = LoggerFactory.getLogger(Packager.class);
-  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  static final String PACKAGE_CATALOG_NAME = "packages.json";
+  static final String CATEGORY_CATALOG_NAME = "categories.json";
   private static final String ARCHIVE_NAME = "archive.zip";
-  private static final Comparator<File> FILE_COMPARATOR = new FileComparator();
+  static final String SPEC_NAME = "spec.json";
+  private static final String SPEC_GZIP_NAME = SPEC_NAME + Gzip.EXTENSION;
+  private static final String MANIFEST_NAME = ".build-manifest.json";
+  static final Comparator<File> FILE_COMPARATOR = new FileComparator();
+  private final File baseDir;
   private final File packagesDir;
   private final File categoriesDir;
   private final File packageCatalogFile;
   private final File categoryCatalogFile;
+  private final File manifestFile;
   private final Signer signer;
   private final boolean createZip;
   private final Set<String> whitelist;
+  private final int parallelism;
+  private final boolean incremental;
+  private final DigestCache digestCache;
+  private final ArchiveWriter archiveWriter;
+  private final boolean compactCatalogs;
+  private final int catalogPageSize;
+  private final Version latestCdapVersion;
+  private final Metrics metrics;
 
   static {
     // zip stores the modified date in its header, which uses the default timezone.
@@ -79,26 +90,59 @@ public class Packager {
   }
 
   public Packager(File baseDir, @Nullable Signer signer, boolean createZip, Set<String> whitelist) {
+    this(baseDir, signer, createZip, whitelist, 1);
+  }
+
+  /**
+   * Creates a Packager that builds up to the given number of package versions at the same time.
+   * A parallelism of 1 builds each package version on the calling thread. Use {@link #builder(File)} to set
+   * anything else.
+   */
+  public Packager(File baseDir, @Nullable Signer signer, boolean createZip, Set<String> whitelist, int parallelism) {
+    this(baseDir, signer, createZip, whitelist, checkParallelism(parallelism), false, DigestCache.inMemory(),
+         new ArchiveWriter(parallelism, false), false, CatalogShards.DEFAULT_PAGE_SIZE,
+         CompatibilityIndex.DEFAULT_LATEST_CDAP_VERSION, new Metrics());
+  }
+
+  private Packager(File baseDir, @Nullable Signer signer, boolean createZip, Set<String> whitelist,
+                   int parallelism, boolean incremental, DigestCache digestCache, ArchiveWriter archiveWriter,
+                   boolean compactCatalogs, int catalogPageSize, Version latestCdapVersion, Metrics metrics) {
+    this.baseDir = baseDir;
     this.packagesDir = new File(baseDir, "packages");
     this.categoriesDir = new File(baseDir, "categories");
-    this.packageCatalogFile = new File(baseDir, "packages.json");
-    this.categoryCatalogFile = new File(baseDir, "categories.json");
+    this.packageCatalogFile = new File(baseDir, PACKAGE_CATALOG_NAME);
+    this.categoryCatalogFile = new File(baseDir, CATEGORY_CATALOG_NAME);
+    this.manifestFile = new File(baseDir, MANIFEST_NAME);
     this.signer = signer;
     this.createZip = createZip;
     this.whitelist = whitelist;
+    this.parallelism = parallelism;
+    this.incremental = incremental;
+    this.digestCache = digestCache;
+    this.archiveWriter = archiveWriter;
+    this.compactCatalogs = compactCatalogs;
+    this.catalogPageSize = catalogPageSize;
+    this.latestCdapVersion = latestCdapVersion;
+    this.metrics = metrics;
   }
 
   /**
-   * Deletes package archive.zip files and the package catalog file.
+   * Deletes package archive.zip files, signatures, the build manifest, and the package catalog file.
    * @throws IOException
    */
   public void clean() throws IOException {
+    BuildManifest.delete(manifestFile);
+    CatalogShards.delete(baseDir);
+    CompatibilityIndex.delete(baseDir);
+    LatestVersions.delete(baseDir);
     if (packageCatalogFile.exists()) {
       LOG.info("Deleting catalog file " + packageCatalogFile);
       if (!packageCatalogFile.delete()) {
         throw new IOException("Could not delete catalog file " + packageCatalogFile);
       }
     }
+    Gzip.deleteVariant(packageCatalogFile);
+    Gzip.deleteVariant(categoryCatalogFile);
 
     for (File packageDir : sortedListFiles(packagesDir)) {
       if (!packageDir.isDirectory()) {
@@ -117,6 +161,7 @@ public class Packager {
             throw new IOException("Could not delete archive file " + archiveFile);
           }
         }
+        Gzip.deleteVariant(new File(versionDir, SPEC_NAME));
 
         for (File packagefile : sortedListFiles(versionDir)) {
           if (packagefile.getName().endsWith(".asc")) {
@@ -136,65 +181,115 @@ public class Packager {
    */
   public Hub build() throws IOException, SignatureException, NoSuchAlgorithmException,
     NoSuchProviderException, PGPException {
+    Metrics.Timer buildTimer = metrics.start("build");
     List<Package> packages = new ArrayList<>();
     List<PackageMeta> packageCatalog = new ArrayList<>();
 
+    String signingKey = signer == null ? null : Long.toHexString(signer.getKeyId()).toUpperCase();
+    BuildManifest manifest = incremental ? BuildManifest.load(manifestFile, signingKey, createZip, digestCache) :
+      BuildManifest.create(manifestFile, signingKey, createZip, digestCache);
+
+    // packages are always processed in sorted directory order, even if they were built in parallel,
+    // so that the catalogs are the same regardless of how many threads were used.
     Set<String> packageCategories = new TreeSet<>();
+    for (Package pkg : buildPackages(listVersionDirs(), manifest)) {
+      packageCategories.addAll(pkg.getMeta().getCategories());
+
+      if (!whitelist.isEmpty()) {
+        boolean shouldPublish = false;
+        for (String category : pkg.getMeta().getCategories()) {
+          if (whitelist.contains(category)) {
+            shouldPublish = true;
+            break;
+          }
+        }
+        if (!shouldPublish) {
+          LOG.info("Skipping package {}-{} since it's categories are not in the whitelist",
+                   pkg.getName(), pkg.getVersion());
+          continue;
+        }
+      }
+      packageCatalog.add(pkg.getMeta());
+      packages.add(pkg);
+      LOG.info("Created package {}-{}", pkg.getName(), pkg.getVersion());
+    }
+    LOG.info("Created {} packages", packageCatalog.size());
+    manifest.save();
+
+    Metrics.Timer catalogsTimer = metrics.start("build.catalogs");
+    // sort catalog by package display name
+    packageCatalog.sort(Comparator.comparing(p -> p.getLabel().toLowerCase()));
+
+    CatalogWriter.write(packageCatalogFile, packageCatalog, PackageMeta.class, compactCatalogs);
+    Gzip.compress(packageCatalogFile);
+    LOG.info("Created package catalog file {}", packageCatalogFile);
+    Map<String, File> catalogShards = new LinkedHashMap<>(
+      CompatibilityIndex.write(baseDir, packages, latestCdapVersion, compactCatalogs));
+    catalogShards.putAll(LatestVersions.write(baseDir, packages, latestCdapVersion, compactCatalogs));
+    catalogShards.putAll(
+      CatalogShards.write(baseDir, packageCatalogFile, packageCatalog, catalogPageSize, compactCatalogs));
+    Map<String, File> catalogDeltas = CatalogDeltas.write(baseDir, packageCatalogFile, packageCatalog,
+                                                          CatalogDeltas.DEFAULT_MAX_DELTAS);
+
+    List<CategoryMeta> categories = createCategoryCatalog(packageCategories);
+    CatalogWriter.write(categoryCatalogFile, categories, CategoryMeta.class, compactCatalogs);
+    Gzip.compress(categoryCatalogFile);
+    LOG.info("Created category catalog file {}", categoryCatalogFile);
+    catalogsTimer.stop();
+    buildTimer.stop();
+
+    return new Hub(packages, packageCatalogFile, categories, categoryCatalogFile, catalogShards, catalogDeltas);
+  }
+
+  // returns all package version directories, in sorted order
+  private List<File> listVersionDirs() throws IOException {
+    List<File> versionDirs = new ArrayList<>();
     for (File packageDir : sortedListFiles(packagesDir)) {
       if (!packageDir.isDirectory()) {
         LOG.warn("Skipping {} since it is not a directory", packageDir);
         continue;
       }
 
-      String packageName = packageDir.getName();
       for (File versionDir : sortedListFiles(packageDir)) {
         if (!versionDir.isDirectory()) {
           LOG.warn("Skipping {} since it is not a directory", versionDir);
           continue;
         }
-
-        String packageVersion = versionDir.getName();
-        Package pkg = buildPackage(packageName, packageVersion, versionDir);
-        packageCategories.addAll(pkg.getMeta().getCategories());
-
-        if (!whitelist.isEmpty()) {
-          boolean shouldPublish = false;
-          for (String category : pkg.getMeta().getCategories()) {
-            if (whitelist.contains(category)) {
-              shouldPublish = true;
-              break;
-            }
-          }
-          if (!shouldPublish) {
-            LOG.info("Skipping package {}-{} since it's categories are not in the whitelist",
-                     pkg.getName(), pkg.getVersion());
-            continue;
-          }
-        }
-        packageCatalog.add(pkg.getMeta());
-        packages.add(pkg);
-        LOG.info("Created package {}-{}", packageName, packageVersion);
+        versionDirs.add(versionDir);
       }
     }
-    LOG.info("Created {} packages", packageCatalog.size());
+    return versionDirs;
+  }
 
-    // sort catalog by package display name
-    packageCatalog.sort(Comparator.comparing(p -> p.getLabel().toLowerCase()));
+  // builds each version directory as its own task. Packages are returned in the same order as the directories.
+  private List<Package> buildPackages(List<File> versionDirs, final BuildManifest manifest)
+    throws IOException, SignatureException, NoSuchAlgorithmException, NoSuchProviderException, PGPException {
 
-    try (PrintWriter printWriter = new PrintWriter(new FileOutputStream(packageCatalogFile))) {
-      printWriter.print(GSON.toJson(packageCatalog));
-      printWriter.append("\n");
+    List<Package> packages = new ArrayList<>(versionDirs.size());
+    if (parallelism == 1) {
+      for (File versionDir : versionDirs) {
+        packages.add(buildPackage(versionDir.getParentFile().getName(), versionDir.getName(), versionDir, manifest));
+      }
+      return packages;
     }
-    LOG.info("Created package catalog file {}", packageCatalogFile);
 
-    List<CategoryMeta> categories = createCategoryCatalog(packageCategories);
-    try (PrintWriter printWriter = new PrintWriter(new FileOutputStream(categoryCatalogFile))) {
-      printWriter.print(GSON.toJson(categories));
-      printWriter.append("\n");
+    LOG.info("Building {} package versions using {} threads", versionDirs.size(), parallelism);
+    List<Callable<Package>> tasks = new ArrayList<>(versionDirs.size());
+    for (final File versionDir : versionDirs) {
+      tasks.add(new Callable<Package>() {
+        @Override
+        public Package call() throws Exception {
+          return buildPackage(versionDir.getParentFile().getName(), versionDir.getName(), versionDir, manifest);
+        }
+      });
+    }
+    ExecutorService executor = ParallelTasks.newPool("package-builder", parallelism);
+    try {
+      // signing only fails with IOExceptions and PGPExceptions, since the JCA errors are wrapped by bouncy castle
+      return ParallelTasks.invokeAll(executor, tasks, PGPException.class);
+    } finally {
+      executor.shutdownNow();
     }
-    LOG.info("Created category catalog file {}", categoryCatalogFile);
-
-    return new Hub(packages, packageCatalogFile, categories, categoryCatalogFile);
   }
 
   private List<CategoryMeta> createCategoryCatalog(Set<String> packageCategories) {
@@ -239,17 +334,27 @@ public class Packager {
     return icons;
   }
 
-  private Package buildPackage(String name, String version, File packageDir)
+  private Package buildPackage(String name, String version, File packageDir, BuildManifest manifest)
     throws IOException, NoSuchAlgorithmException, SignatureException, NoSuchProviderException, PGPException {
 
+    Metrics.Timer packageTimer = metrics.start("build.package");
+    // every file that is not created by the build
+    List<File> inputs = new ArrayList<>();
     List<File> archiveFiles = new ArrayList<>();
-    boolean containsSpec = false;
+    File specFile = null;
 
     Package.Builder builder = Package.builder(name, version);
 
     for (File packageFile : sortedListFiles(packageDir)) {
       String fileName = packageFile.getName();
 
+      // signatures, the archive, and the compressed spec are created by the build
+      if (fileName.endsWith(".asc") || fileName.equals(ARCHIVE_NAME) || fileName.equals(SPEC_GZIP_NAME) ||
+        AtomicFiles.isTempFile(fileName)) {
+        continue;
+      }
+      inputs.add(packageFile);
+
       if (fileName.equals("icon.png")) {
         builder.setIcon(packageFile);
         continue;
@@ -260,71 +365,86 @@ public class Packager {
         continue;
       }
 
-      if (fileName.equals("spec.json")) {
-        containsSpec = true;
-        builder.setSpec(new SignedFile(packageFile, signer == null ? null : signer.signFile(packageFile)));
+      if (fileName.equals(SPEC_NAME)) {
+        specFile = packageFile;
         continue;
       }
 
-      if (fileName.equals(ARCHIVE_NAME)) {
-        if (!packageFile.delete()) {
-          throw new IOException("Unable to delete existing archive " + packageFile);
-        }
-        continue;
-      }
-
-      builder.addFile(new SignedFile(packageFile, signer == null ? null : signer.signFile(packageFile)));
       archiveFiles.add(packageFile);
     }
 
-    if (!containsSpec) {
+    if (specFile == null) {
       throw new IllegalArgumentException(String.format("No spec found for package %s-%s.", name, version));
     }
+    // this is cheap enough to always do, and guarantees that the variant matches the spec
+    builder.setSpecGzip(Gzip.compress(specFile));
+
+    // the spec and all other files of the package are signed
+    List<File> filesToSign = new ArrayList<>(archiveFiles.size() + 1);
+    if (signer != null) {
+      filesToSign.add(specFile);
+      filesToSign.addAll(archiveFiles);
+    }
+    File archiveFile = createZip && !archiveFiles.isEmpty() ? new File(packageDir, ARCHIVE_NAME) : null;
+
+    if (manifest.isUpToDate(name, version, inputs, filesToSign, archiveFile)) {
+      LOG.info("Package {}-{} has not changed, skipping signing and archiving", name, version);
+      manifest.carryOver(name, version);
+      builder.setSpec(new SignedFile(specFile, getSignatureFile(specFile)));
+      for (File file : archiveFiles) {
+        builder.addFile(new SignedFile(file, getSignatureFile(file)));
+      }
+      if (archiveFile != null) {
+        builder.setArchive(new SignedFile(archiveFile, getSignatureFile(archiveFile)));
+      }
+      metrics.increment("build.package.upToDate", 1);
+      packageTimer.stop();
+      return builder.build();
+    }
+
+    deleteOutputs(packageDir);
+
+    // sign the spec and all other files of the package at once
+    Map<File, File> signatures = signer == null ? Collections.<File, File>emptyMap() : signer.signFiles(filesToSign);
+
+    builder.setSpec(new SignedFile(specFile, signatures.get(specFile)));
+    for (File file : archiveFiles) {
+      builder.addFile(new SignedFile(file, signatures.get(file)));
+    }
 
     // build the zip from everything but icon, license, and spec
-    if (createZip && !archiveFiles.isEmpty()) {
-      File archiveFile = new File(packageDir, ARCHIVE_NAME);
+    if (archiveFile != null) {
       LOG.info("Creating archive for package {}-{} from files {}", name, version, archiveFiles);
-      try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archiveFile)))) {
-        for (File file : archiveFiles) {
-          addFileToArchive(zos, file, "", builder.getMeta().getCreated() * 1000);
-        }
-        zos.finish();
-      }
+      Metrics.Timer archiveTimer = metrics.start("build.archive");
+      archiveWriter.write(archiveFile, archiveFiles, builder.getMeta().getCreated() * 1000);
+      archiveTimer.stop(archiveFile.length());
 
       builder.setArchive(new SignedFile(archiveFile, signer == null ? null : signer.signFile(archiveFile)));
     }
 
-    return builder.build();
+    Package pkg = builder.build();
+    manifest.record(name, version, inputs, signatures, pkg.getArchive());
+    packageTimer.stop();
+    return pkg;
   }
 
-  private void addFileToArchive(ZipOutputStream zos, File file, String parent, long time) throws IOException {
-    if (file.isDirectory()) {
-      String path = parent + file.getName() + "/";
-      ZipEntry zipEntry = new ZipEntry(path);
-      // set time to ensure bytes (and md5) are same for the zip
-      zipEntry.setTime(time);
-      zos.putNextEntry(zipEntry);
-      for (File child : sortedListFiles(file)) {
-        addFileToArchive(zos, child, path, time);
-      }
-      zos.closeEntry();
-    } else {
-      ZipEntry zipEntry = new ZipEntry(parent + file.getName());
-      // set time to ensure bytes (and md5) are same for the zip
-      zipEntry.setTime(time);
-      zos.putNextEntry(zipEntry);
-      byte[] buffer = new byte[1024 * 1024];
-      try (FileInputStream inputStream = new FileInputStream(file)) {
-        int length;
-        while ((length = inputStream.read(buffer)) > 0) {
-          zos.write(buffer, 0, length);
+  // deletes the archive and any signatures left over from a previous build of the package version
+  private void deleteOutputs(File packageDir) throws IOException {
+    for (File packageFile : sortedListFiles(packageDir)) {
+      String fileName = packageFile.getName();
+      if (fileName.equals(ARCHIVE_NAME) || fileName.endsWith(".asc")) {
+        if (!packageFile.delete()) {
+          throw new IOException("Unable to delete existing file " + packageFile);
         }
       }
-      zos.closeEntry();
     }
   }
 
+  @Nullable
+  private File getSignatureFile(File file) {
+    return signer == null ? null : new File(file.getParentFile(), file.getName() + ".asc");
+  }
+
   // returns files in sorted order. We do this to ensure that zips created are always the same bytes.
   private File[] sortedListFiles(File dir) throws IOException {
     File[] files = dir.listFiles();
@@ -335,6 +455,144 @@ public class Packager {
     return files;
   }
 
+  private static int checkParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1, but is " + parallelism);
+    }
+    return parallelism;
+  }
+
+  public static Builder builder(File baseDir) {
+    return new Builder(baseDir);
+  }
+
+  /**
+   * Builder to create a Packager.
+   */
+  public static class Builder {
+    private final File baseDir;
+    private Signer signer;
+    private boolean createZip;
+    private Set<String> whitelist;
+    private int parallelism;
+    private boolean incremental;
+    private DigestCache digestCache;
+    private boolean storeCompressedFiles;
+    private boolean compactCatalogs;
+    private int catalogPageSize;
+    private Version latestCdapVersion;
+    private Metrics metrics;
+
+    public Builder(File baseDir) {
+      this.baseDir = baseDir;
+      this.createZip = false;
+      this.whitelist = new HashSet<>();
+      this.parallelism = 1;
+      this.incremental = false;
+      this.storeCompressedFiles = false;
+      this.compactCatalogs = false;
+      this.catalogPageSize = CatalogShards.DEFAULT_PAGE_SIZE;
+      this.latestCdapVersion = CompatibilityIndex.DEFAULT_LATEST_CDAP_VERSION;
+    }
+
+    public Builder setSigner(@Nullable Signer signer) {
+      this.signer = signer;
+      return this;
+    }
+
+    public Builder setCreateZip(boolean createZip) {
+      this.createZip = createZip;
+      return this;
+    }
+
+    public Builder setWhitelist(Set<String> whitelist) {
+      this.whitelist = whitelist;
+      return this;
+    }
+
+    /**
+     * Sets the number of package versions to build at the same time. Defaults to 1, which builds each package version
+     * on the calling thread.
+     */
+    public Builder setParallelism(int parallelism) {
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Sets whether to only sign and archive package versions that have changed since the last build.
+     */
+    public Builder setIncremental(boolean incremental) {
+      this.incremental = incremental;
+      return this;
+    }
+
+    /**
+     * Sets the cache used to look up file digests. This should be the same cache given to the Signer,
+     * so that digests are computed while signing. Defaults to an in-memory cache.
+     */
+    public Builder setDigestCache(DigestCache digestCache) {
+      this.digestCache = digestCache;
+      return this;
+    }
+
+    /**
+     * Sets whether files that are already compressed, such as jars and images, are stored in package archives
+     * as is instead of being compressed again. Defaults to false, since this changes the bytes of existing archives.
+     * This only has an effect if archives are created, see {@link #setCreateZip(boolean)}.
+     */
+    public Builder setStoreCompressedFiles(boolean storeCompressedFiles) {
+      this.storeCompressedFiles = storeCompressedFiles;
+      return this;
+    }
+
+    /**
+     * Sets whether catalog files are written without any whitespace. Defaults to false, which pretty prints them.
+     */
+    public Builder setCompactCatalogs(boolean compactCatalogs) {
+      this.compactCatalogs = compactCatalogs;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of packages in each page of the paginated catalog. Defaults to 100.
+     */
+    public Builder setCatalogPageSize(int catalogPageSize) {
+      this.catalogPageSize = catalogPageSize;
+      return this;
+    }
+
+    /**
+     * Sets the latest CDAP version. Package version ranges that end at the next major version, like
+     * '[6.0.0,7.0.0-SNAPSHOT)', are listed as compatible with every minor version up to it. Defaults to 6.10.0.
+     */
+    public Builder setLatestCdapVersion(Version latestCdapVersion) {
+      this.latestCdapVersion = latestCdapVersion;
+      return this;
+    }
+
+    /**
+     * Sets where the time spent building and archiving each package version is recorded. This should be the same
+     * metrics given to the Signer, so that a single report covers the whole build. Defaults to metrics that are
+     * never reported.
+     */
+    public Builder setMetrics(Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    public Packager build() {
+      checkParallelism(parallelism);
+      if (catalogPageSize < 1) {
+        throw new IllegalArgumentException("Catalog page size must be at least 1, but is " + catalogPageSize);
+      }
+      return new Packager(baseDir, signer, createZip, whitelist, parallelism, incremental,
+                          digestCache == null ? DigestCache.inMemory() : digestCache,
+                          new ArchiveWriter(parallelism, storeCompressedFiles), compactCatalogs,
+                          catalogPageSize, latestCdapVersion, metrics == null ? new Metrics() : metrics);
+    }
+  }
+
   private static class FileComparator implements Comparator<File> {
 
     @Override
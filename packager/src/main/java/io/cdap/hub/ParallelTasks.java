@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utilities to run build tasks on a thread pool while keeping the results in a deterministic order.
+ */
+final class ParallelTasks {
+
+  private ParallelTasks() {
+  }
+
+  /**
+   * Creates a fixed size pool of daemon threads, named using the given prefix.
+   */
+  static ExecutorService newPool(String name, int size) {
+    return Executors.newFixedThreadPool(
+      size, new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Creates a fixed size pool of daemon threads, named using the given prefix, that rejects tasks once the given
+   * number of tasks are waiting for a thread.
+   */
+  static ExecutorService newPool(String name, int size, int maxQueued) {
+    return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(maxQueued),
+                                  new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Runs all tasks on the given executor and returns their results in the same order as the tasks.
+   * If any task fails, the remaining tasks are cancelled and the failure is rethrown. IOExceptions, runtime
+   * exceptions, and errors are rethrown as is, and any other exception is wrapped in a RuntimeException.
+   */
+  static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks) throws IOException {
+    return invokeAll(executor, tasks, IOException.class);
+  }
+
+  /**
+   * Runs all tasks on the given executor and returns their results in the same order as the tasks.
+   * If any task fails, the remaining tasks are cancelled and the failure is rethrown. IOExceptions, exceptions of
+   * the given type, runtime exceptions, and errors are rethrown as is, and any other exception is wrapped in a
+   * RuntimeException.
+   */
+  static <T, X extends Exception> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks,
+                                                    Class<X> exceptionType) throws IOException, X {
+
+    List<Future<T>> futures = new ArrayList<>(tasks.size());
+    try {
+      for (Callable<T> task : tasks) {
+        futures.add(executor.submit(task));
+      }
+      List<T> results = new ArrayList<>(tasks.size());
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for tasks to complete", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfInstanceOf(cause, IOException.class);
+      Throwables.propagateIfInstanceOf(cause, exceptionType);
+      throw Throwables.propagate(cause);
+    } finally {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Records the progress of a publish in an append-only file, so that a publish that dies halfway can be resumed.
+ *
+ * Every put, copy, and delete is appended once s3 has confirmed it, along with every CloudFront invalidation once
+ * it has completed. The first line names the bucket and prefix being published to. Each line after it is a single
+ * JSON entry, like:
+ *
+ *   {"op":"put","key":"v2/packages/name/1.0.0/spec.json","sha256":"...","size":1234}
+ *   {"op":"delete","key":"v2/packages/name/1.0.0/old.jar"}
+ *   {"op":"invalidate","paths":["/v2/packages/name/1.0.0/*"]}
+ *
+ * When the next publish to the same bucket and prefix opens the journal, files that were put with the same content
+ * are skipped, and so are objects that were already deleted. Every key that was changed but not yet invalidated
+ * is still invalidated, even though it looks unchanged to the publish that resumes. Each entry is flushed as soon as
+ * it is written, so only a crash of the machine can lose entries, which only means that the work is done again.
+ * A partially written last line is ignored. The journal is deleted once a publish completes.
+ */
+public class PublishJournal {
+  private static final Logger LOG = LoggerFactory.getLogger(PublishJournal.class);
+  private static final Gson GSON = new Gson();
+  private static final String PUT = "put";
+  private static final String DELETE = "delete";
+  private static final String INVALIDATE = "invalidate";
+  private final File journalFile;
+  // content of every object that was put or copied, keyed by its key
+  private final Map<String, Entry> puts;
+  private final Set<String> deletes;
+  // keys that were changed but not invalidated yet
+  private final Set<String> pendingInvalidations;
+  private Writer writer;
+
+  private PublishJournal(File journalFile) {
+    this.journalFile = journalFile;
+    this.puts = new HashMap<>();
+    this.deletes = new HashSet<>();
+    this.pendingInvalidations = new LinkedHashSet<>();
+  }
+
+  /**
+   * Opens the journal in the given file, replaying the entries of an earlier publish to the same target. If the file
+   * does not exist, cannot be read, or is for a different target, a new journal is started in its place.
+   *
+   * @param journalFile the file the journal is stored in
+   * @param target the bucket and prefix being published to, like 's3://bucket/v2'
+   */
+  public static PublishJournal open(File journalFile, String target) throws IOException {
+    PublishJournal journal = new PublishJournal(journalFile);
+    boolean resume = journalFile.isFile() && journal.replay(target);
+    if (!resume) {
+      journal.puts.clear();
+      journal.deletes.clear();
+      journal.pendingInvalidations.clear();
+    }
+    journal.writer = new OutputStreamWriter(new FileOutputStream(journalFile, resume), StandardCharsets.UTF_8);
+    if (resume && !endsWithNewline(journalFile)) {
+      // entries must not be appended to a line that was cut off
+      journal.writer.write("\n");
+    }
+    if (resume) {
+      LOG.info("Resuming publish to {} from journal {}, with {} objects already put and {} already deleted",
+               target, journalFile, journal.puts.size(), journal.deletes.size());
+    } else {
+      Entry header = new Entry();
+      header.target = target;
+      journal.append(header);
+    }
+    return journal;
+  }
+
+  // reads all entries, returning whether the journal is for the given target
+  private boolean replay(String target) {
+    try (BufferedReader reader = Files.newReader(journalFile, StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      Entry header = line == null ? null : parse(line);
+      if (header == null || !target.equals(header.target)) {
+        LOG.info("Journal {} is not for a publish to {}, starting a new one.", journalFile, target);
+        return false;
+      }
+      while ((line = reader.readLine()) != null) {
+        Entry entry = parse(line);
+        if (entry != null) {
+          apply(entry);
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Unable to read publish journal {}. Starting a new one.", journalFile, e);
+      return false;
+    }
+  }
+
+  private static boolean endsWithNewline(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      if (raf.length() == 0) {
+        return true;
+      }
+      raf.seek(raf.length() - 1);
+      return raf.read() == '\n';
+    }
+  }
+
+  @Nullable
+  private Entry parse(String line) {
+    try {
+      return GSON.fromJson(line, Entry.class);
+    } catch (JsonParseException e) {
+      // the last line may have been cut off by a crash
+      LOG.warn("Ignoring unreadable line in publish journal {}: {}", journalFile, line);
+      return null;
+    }
+  }
+
+  private void apply(Entry entry) {
+    if (PUT.equals(entry.op) && entry.key != null) {
+      puts.put(entry.key, entry);
+      deletes.remove(entry.key);
+      pendingInvalidations.add(entry.key);
+    } else if (DELETE.equals(entry.op) && entry.key != null) {
+      puts.remove(entry.key);
+      deletes.add(entry.key);
+      pendingInvalidations.add(entry.key);
+    } else if (INVALIDATE.equals(entry.op) && entry.paths != null) {
+      Iterator<String> keys = pendingInvalidations.iterator();
+      while (keys.hasNext()) {
+        if (isInvalidated("/" + keys.next(), entry.paths)) {
+          keys.remove();
+        }
+      }
+    }
+  }
+
+  // returns whether any of the CloudFront paths, which may end in a wildcard, matches the given path
+  private static boolean isInvalidated(String path, Collection<String> invalidationPaths) {
+    for (String invalidationPath : invalidationPaths) {
+      if (invalidationPath.endsWith("*") ?
+        path.startsWith(invalidationPath.substring(0, invalidationPath.length() - 1)) : path.equals(invalidationPath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether an object with the given content was put at the given key by an earlier publish.
+   */
+  public synchronized boolean isPut(String key, FileDigest digest) {
+    Entry entry = puts.get(key);
+    return entry != null && digest.getSha256().equals(entry.sha256) && entry.size != null &&
+      entry.size == digest.getSize();
+  }
+
+  /**
+   * Returns whether the object at the given key was deleted by an earlier publish.
+   */
+  public synchronized boolean isDeleted(String key) {
+    return deletes.contains(key);
+  }
+
+  /**
+   * Returns the keys of all objects that were changed by an earlier publish, but not invalidated yet.
+   */
+  public synchronized Set<String> getPendingInvalidations() {
+    return new LinkedHashSet<>(pendingInvalidations);
+  }
+
+  /**
+   * Records that an object with the given content was put or copied to the given key.
+   */
+  public void recordPut(String key, FileDigest digest) throws IOException {
+    Entry entry = new Entry();
+    entry.op = PUT;
+    entry.key = key;
+    entry.sha256 = digest.getSha256();
+    entry.size = digest.getSize();
+    record(entry);
+  }
+
+  /**
+   * Records that the object at the given key was deleted.
+   */
+  public void recordDelete(String key) throws IOException {
+    Entry entry = new Entry();
+    entry.op = DELETE;
+    entry.key = key;
+    record(entry);
+  }
+
+  /**
+   * Records that an invalidation of the given CloudFront paths has completed.
+   */
+  public void recordInvalidation(List<String> paths) throws IOException {
+    Entry entry = new Entry();
+    entry.op = INVALIDATE;
+    entry.paths = paths;
+    record(entry);
+  }
+
+  private synchronized void record(Entry entry) throws IOException {
+    apply(entry);
+    append(entry);
+  }
+
+  private synchronized void append(Entry entry) throws IOException {
+    writer.write(GSON.toJson(entry));
+    writer.write("\n");
+    writer.flush();
+  }
+
+  /**
+   * Deletes the journal, once everything it records is part of a completed publish.
+   */
+  public synchronized void complete() throws IOException {
+    writer.close();
+    if (!journalFile.delete()) {
+      throw new IOException("Could not delete publish journal " + journalFile);
+    }
+    LOG.info("Publish completed, deleted journal {}", journalFile);
+  }
+
+  /**
+   * A single line of the journal.
+   */
+  private static class Entry {
+    private String target;
+    private String op;
+    private String key;
+    private String sha256;
+    private Long size;
+    private List<String> paths;
+  }
+}
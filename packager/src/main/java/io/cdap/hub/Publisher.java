@@ -16,6 +16,9 @@
 
 package io.cdap.hub;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
  * Publishes the Hub.
  */
@@ -28,4 +31,15 @@ public interface Publisher {
    * @throws Exception if there was an error publishing
    */
   void publish(Hub hub) throws Exception;
+
+  /**
+   * Copies a file of the published hub, like the head of the catalog delta feed, so that a build can continue from
+   * what was published before.
+   *
+   * @param path path of the file relative to the hub, like 'catalog-deltas/head.json'
+   * @param file the file to copy it to
+   * @return whether the file was published. If it was not, the given file is not changed.
+   * @throws IOException if there was an error reading the published file
+   */
+  boolean fetch(String path, File file) throws IOException;
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs requests in the background with a bounded number of them in flight, so that the caller can keep preparing
+ * requests while earlier ones are still waiting on the network.
+ *
+ * Submitting a request blocks while the maximum number of requests are in flight, so a caller that is faster than
+ * the network never queues up more than that many requests, and every request starts as soon as it is submitted.
+ * If any request fails, every later call to submit rethrows the failure instead of starting another request, until
+ * await rethrows it once the requests that were already in flight complete.
+ */
+final class RequestPipeline {
+  private static final Logger LOG = LoggerFactory.getLogger(RequestPipeline.class);
+  private final ExecutorService executor;
+  private final int concurrency;
+  private final Semaphore permits;
+  private final AtomicReference<Throwable> failure;
+
+  RequestPipeline(String name, int concurrency) {
+    this.executor = ParallelTasks.newPool(name, concurrency);
+    this.concurrency = concurrency;
+    this.permits = new Semaphore(concurrency);
+    this.failure = new AtomicReference<>();
+  }
+
+  /**
+   * Starts a request once fewer than the maximum number of requests are in flight.
+   *
+   * @param description what the request does, which is logged if it fails
+   * @param request the request to run
+   * @throws IOException if interrupted while waiting, or if an earlier request failed with an IOException since the
+   *   last call to await
+   */
+  void submit(final String description, final Request request) throws IOException {
+    acquire(1);
+    try {
+      throwIfFailed();
+    } catch (IOException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (failure.get() == null) {
+            request.run();
+          }
+        } catch (Throwable t) {
+          LOG.error("Failed to {}", description, t);
+          failure.compareAndSet(null, t);
+        } finally {
+          permits.release();
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits for every request that has been submitted to complete. Any failure is forgotten once it is rethrown,
+   * so that the pipeline can be used again.
+   *
+   * @throws IOException if interrupted while waiting, or if any request failed with an IOException
+   */
+  void await() throws IOException {
+    acquire(concurrency);
+    permits.release(concurrency);
+    Throwable t = failure.getAndSet(null);
+    if (t != null) {
+      Throwables.propagateIfInstanceOf(t, IOException.class);
+      throw Throwables.propagate(t);
+    }
+  }
+
+  /**
+   * Returns whether every request that has been submitted has completed.
+   */
+  boolean isIdle() {
+    return permits.availablePermits() == concurrency;
+  }
+
+  private void acquire(int count) throws IOException {
+    try {
+      permits.acquire(count);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for requests to complete", e);
+    }
+  }
+
+  // rethrows the first failure, which is kept until await rethrows it
+  private void throwIfFailed() throws IOException {
+    Throwable t = failure.get();
+    if (t != null) {
+      Throwables.propagateIfInstanceOf(t, IOException.class);
+      throw Throwables.propagate(t);
+    }
+  }
+
+  /**
+   * A request that is run in the background.
+   */
+  interface Request {
+    void run() throws Exception;
+  }
+}
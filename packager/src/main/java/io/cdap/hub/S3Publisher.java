@@ -19,17 +19,28 @@ package io.cdap.hub;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.Protocol;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.event.SyncProgressListener;
+import com.amazonaws.retry.PredefinedRetryPolicies;
 import com.amazonaws.services.cloudfront.AmazonCloudFrontClient;
 import com.amazonaws.services.cloudfront.model.CreateInvalidationRequest;
+import com.amazonaws.services.cloudfront.model.GetInvalidationRequest;
 import com.amazonaws.services.cloudfront.model.InvalidationBatch;
 import com.amazonaws.services.cloudfront.model.Paths;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.S3ClientOptions;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
-import com.google.common.hash.Hashing;
-import com.google.common.io.BaseEncoding;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerConfiguration;
 import com.google.common.io.Files;
 import com.google.common.net.MediaType;
 import io.cdap.hub.spec.CategoryMeta;
@@ -38,20 +49,58 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import javax.activation.FileTypeMap;
 import javax.activation.MimetypesFileTypeMap;
 import javax.annotation.Nullable;
 
 /**
  * Publish packages to S3.
+ *
+ * Content is only uploaded once per publish. Many package versions contain the same files, so the sha256 of every
+ * file that is uploaded or already in s3 is remembered, and any later file with the same content is copied from
+ * that object by s3 instead of being uploaded again. Each package version still has its own copy of every file,
+ * so that existing URLs keep working.
+ *
+ * Objects under other prefixes, like those of a previous hub version, can also be used as the source of a copy.
+ * Any file that has the same size and ETag as an object under the prefix or under one of the copy source prefixes
+ * is copied from that object, so publishing a new hub version does not upload everything again.
+ *
+ * Requests are pipelined: puts, copies, deletes, and the listings of each prefix are started in the background with
+ * a bounded number of them in flight, while the next files are checked for changes. Anything that has to happen in
+ * order, like publishing catalogs only after everything they point to is in s3, waits for all requests in flight.
+ *
+ * If a journal file is given, every confirmed put, copy, delete, and invalidation is recorded in a
+ * {@link PublishJournal}. A publish that dies halfway can then be run again, which skips the files that were already
+ * put, and still invalidates the objects that were changed before it died. Catalogs are always published last,
+ * including when a publish is resumed.
  */
 public class S3Publisher implements Publisher {
   private static final Logger LOG = LoggerFactory.getLogger(S3Publisher.class);
   private static final FileTypeMap fileTypeMap = MimetypesFileTypeMap.getDefaultFileTypeMap();
+  // S3 will not accept multipart uploads with parts smaller than this, except for the last part
+  static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+  // S3 will not copy larger objects in a single request
+  private static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+  static final long DEFAULT_MULTIPART_THRESHOLD = 16 * 1024 * 1024;
+  static final long DEFAULT_MULTIPART_PART_SIZE = 8 * 1024 * 1024;
+  private static final String INVALIDATION_COMPLETED = "Completed";
+  private static final long INVALIDATION_POLL_MS = TimeUnit.SECONDS.toMillis(10);
+  private static final long INVALIDATION_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30);
+  // deferred copies are started whenever no requests are in flight, or all requests are waited on once this many wait
+  private static final int MAX_DEFERRED_COPIES = 1000;
   private final AmazonS3Client s3Client;
+  private final TransferManager transferManager;
+  private final DigestCache digestCache;
   @Nullable
   private final AmazonCloudFrontClient cfClient;
   private final String bucket;
@@ -61,12 +110,36 @@ public class S3Publisher implements Publisher {
   private final boolean forcePush;
   private final boolean dryrun;
   private final Set<String> whitelist;
+  private final Set<String> copySourcePrefixes;
   private final Set<String> updatedKeys;
+  private final RequestPipeline requests;
+  // keys of objects that requests in flight are copying from, which can't be replaced or deleted until they complete
+  private final Set<String> pendingCopySources;
+  // key of the object that has the content with each sha256, for content that is in s3 or being uploaded to it
+  private final Map<String, String> blobs;
+  // copies of content that is being uploaded, which can only start once the upload completes, and the copied content
+  private final Map<CopyObjectRequest, FileDigest> copies;
+  // index of all objects under the prefix, from a single listing at the start of the publish
+  private final TreeMap<String, RemoteObject> remoteObjects;
+  // key of the first object with each ETag and size, under the prefix or any of the copy source prefixes
+  private final Map<String, String> remoteContents;
+  // gzip variants created by the packager. Other files that end in '.gz' are published like any other file.
+  private final Set<File> gzipVariants;
+  private final Metrics metrics;
+  @Nullable
+  private final File journalFile;
+  // journal of the current publish, if there is a journal file and this is not a dry run
+  @Nullable
+  private PublishJournal journal;
 
-  private S3Publisher(AmazonS3Client s3Client, @Nullable AmazonCloudFrontClient cfClient,
+  private S3Publisher(AmazonS3Client s3Client, TransferManager transferManager, RequestPipeline requests,
+                      DigestCache digestCache, @Nullable AmazonCloudFrontClient cfClient,
                       String bucket, String prefix, @Nullable String cfDistribution,
-                      boolean forcePush, boolean dryrun, Set<String> whitelist) {
+                      boolean forcePush, boolean dryrun, Set<String> whitelist, Set<String> copySourcePrefixes,
+                      Metrics metrics, @Nullable File journalFile) {
     this.s3Client = s3Client;
+    this.transferManager = transferManager;
+    this.digestCache = digestCache;
     this.cfClient = cfClient;
     this.bucket = bucket;
     this.prefix = prefix;
@@ -74,12 +147,33 @@ public class S3Publisher implements Publisher {
     this.forcePush = forcePush;
     this.dryrun = dryrun;
     this.whitelist = whitelist;
+    this.copySourcePrefixes = copySourcePrefixes;
     this.updatedKeys = new HashSet<>();
+    this.requests = requests;
+    this.pendingCopySources = new HashSet<>();
+    this.blobs = new HashMap<>();
+    this.copies = new LinkedHashMap<>();
+    this.remoteObjects = new TreeMap<>();
+    this.remoteContents = new HashMap<>();
+    this.gzipVariants = new HashSet<>();
+    this.metrics = metrics;
+    this.journalFile = journalFile;
   }
 
   @Override
   public void publish(Hub hub) throws Exception {
+    Metrics.Timer publishTimer = metrics.start("publish");
     updatedKeys.clear();
+    blobs.clear();
+    collectGzipVariants(hub);
+    journal = journalFile == null || dryrun ? null : PublishJournal.open(journalFile, "s3://" + bucket + "/" + prefix);
+    if (journal != null) {
+      // objects changed by an earlier publish that died before invalidating them
+      for (String key : journal.getPendingInvalidations()) {
+        updatedKeys.add("/" + key);
+      }
+    }
+    listRemoteObjects();
     List<Package> packages = hub.getPackages();
     for (Package pkg : packages) {
       publishPackage(pkg);
@@ -87,25 +181,102 @@ public class S3Publisher implements Publisher {
     for (CategoryMeta categoryMeta : hub.getCategories()) {
       publishCategory(categoryMeta);
     }
+    // make sure everything the catalogs point to is in s3 before publishing them
+    waitForRequests();
     LOG.info("Publishing package catalog");
     putFilesIfChanged(prefix + "/", hub.getPackageCatalog());
+    putFilesIfChanged(prefix + "/", Gzip.getVariant(hub.getPackageCatalog()));
     LOG.info("Publishing category catalog");
     putFilesIfChanged(prefix + "/", hub.getCategoryCatalog());
+    putFilesIfChanged(prefix + "/", Gzip.getVariant(hub.getCategoryCatalog()));
+    waitForRequests();
+    LOG.info("Publishing catalog shards");
+    publishCatalogFiles(hub.getCatalogShards(), CatalogShards.INDEX_NAME, CatalogShards.CATALOG_DIR);
+    LOG.info("Publishing catalog deltas");
+    publishCatalogFiles(hub.getCatalogDeltas(), CatalogDeltas.DELTAS_DIR + "/" + CatalogDeltas.HEAD_NAME,
+                        CatalogDeltas.DELTAS_DIR);
+    waitForRequests();
 
     if (cfClient != null && !updatedKeys.isEmpty()) {
+      invalidate(cfClient);
+    }
+    if (journal != null) {
+      journal.complete();
+      journal = null;
+    }
+    publishTimer.stop();
+  }
+
+  // invalidates all updated keys, one batch at a time, waiting for each batch to complete before starting the next
+  private void invalidate(AmazonCloudFrontClient cfClient) throws IOException {
+    InvalidationPlanner planner = new InvalidationPlanner("/" + prefix + "/", InvalidationPlanner.DEFAULT_MAX_PATHS,
+                                                          InvalidationPlanner.DEFAULT_MAX_WILDCARDS);
+    List<List<String>> batches = planner.plan(updatedKeys);
+    LOG.info("Invalidating {} updated objects using {} paths in {} batches",
+             updatedKeys.size(), InvalidationPlanner.countPaths(batches), batches.size());
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < batches.size(); i++) {
+      List<String> batch = batches.get(i);
+      if (dryrun) {
+        LOG.info("dryrun - would have invalidated cloudfront paths {}", batch);
+        continue;
+      }
+      LOG.info("Invalidating cloudfront paths {}", batch);
+      long batchStart = System.currentTimeMillis();
+      Metrics.Timer invalidationTimer = metrics.start("cloudfront.invalidate");
       CreateInvalidationRequest invalidationRequest = new CreateInvalidationRequest()
         .withDistributionId(cfDistribution)
         .withInvalidationBatch(
           new InvalidationBatch()
-            .withPaths(new Paths().withItems(updatedKeys).withQuantity(updatedKeys.size()))
-            .withCallerReference(String.valueOf(System.currentTimeMillis())));
-      if (!dryrun) {
-        LOG.info("Invalidating cloudfront objects {}", updatedKeys);
-        cfClient.createInvalidation(invalidationRequest);
-      } else {
-        LOG.info("dryrun - would have invalidated cloudfront objects {}", updatedKeys);
+            .withPaths(new Paths().withItems(batch).withQuantity(batch.size()))
+            .withCallerReference(String.format("%d-%d", start, i)));
+      metrics.increment("cloudfront.requests", 1);
+      String invalidationId = cfClient.createInvalidation(invalidationRequest).getInvalidation().getId();
+      waitForInvalidation(cfClient, invalidationId);
+      invalidationTimer.stop();
+      if (journal != null) {
+        journal.recordInvalidation(batch);
+      }
+      LOG.info("Invalidation {} ({} of {}) completed in {} seconds", invalidationId, i + 1, batches.size(),
+               (System.currentTimeMillis() - batchStart) / 1000);
+    }
+    if (!dryrun) {
+      LOG.info("All invalidations completed in {} seconds", (System.currentTimeMillis() - start) / 1000);
+    }
+  }
+
+  private void waitForInvalidation(AmazonCloudFrontClient cfClient, String invalidationId) throws IOException {
+    long deadline = System.currentTimeMillis() + INVALIDATION_TIMEOUT_MS;
+    GetInvalidationRequest request = new GetInvalidationRequest(cfDistribution, invalidationId);
+    metrics.increment("cloudfront.requests", 1);
+    while (!INVALIDATION_COMPLETED.equals(cfClient.getInvalidation(request).getInvalidation().getStatus())) {
+      metrics.increment("cloudfront.requests", 1);
+      if (System.currentTimeMillis() > deadline) {
+        throw new IOException(String.format("Timed out waiting for invalidation %s to complete.", invalidationId));
+      }
+      try {
+        TimeUnit.MILLISECONDS.sleep(INVALIDATION_POLL_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for invalidation " + invalidationId, e);
+      }
+    }
+  }
+
+  @Override
+  public boolean fetch(String path, File file) throws IOException {
+    String key = prefix + "/" + path;
+    Metrics.Timer timer = metrics.start("s3.get");
+    try {
+      s3Client.getObject(new GetObjectRequest(bucket, key), file);
+    } catch (AmazonS3Exception e) {
+      if (e.getStatusCode() == 404) {
+        return false;
       }
+      throw new IOException("Unable to get " + key + " from s3", e);
     }
+    timer.stop(file.length());
+    return true;
   }
 
   private void publishPackage(Package pkg) throws Exception {
@@ -115,26 +286,70 @@ public class S3Publisher implements Publisher {
     putFilesIfChanged(keyPrefix, pkg.getIcon());
     putFilesIfChanged(keyPrefix, pkg.getLicense());
     putFilesIfChanged(keyPrefix, pkg.getSpec().getFile(), pkg.getSpec().getSignature());
+    // checked on its own, so that it is uploaded even if the spec was published before variants existed
+    putFilesIfChanged(keyPrefix, pkg.getSpecGzip());
     if (pkg.getArchive() != null) {
       putFilesIfChanged(keyPrefix, pkg.getArchive().getFile(), pkg.getArchive().getSignature());
     }
     for (SignedFile file : pkg.getFiles()) {
       putFilesIfChanged(keyPrefix, file.getFile(), file.getSignature());
     }
-    for (S3ObjectSummary objectSummary : s3Client.listObjects(bucket, keyPrefix).getObjectSummaries()) {
-      String objectKey = objectSummary.getKey();
+    for (String objectKey : getRemoteKeys(keyPrefix)) {
       String name = objectKey.substring(keyPrefix.length());
       if (!pkg.getFileNames().contains(name)) {
         if (!dryrun) {
           LOG.info("Deleting object {} from s3 since it does not exist in the package anymore.", objectKey);
-          s3Client.deleteObject(bucket, objectKey);
+          deleteObject(objectKey);
         } else {
           LOG.info("dryrun - would have deleted {} from s3 since it does not exist in the package anymore.", objectKey);
         }
+        updatedKeys.add("/" + objectKey);
+      }
+    }
+  }
+
+  // publishes catalog files, keyed by their path relative to the hub directory. Files whose path starts with the
+  // pointer path are published after all other files are in s3, since they point to them. Afterwards, any objects
+  // in the given directory that are not one of the files are deleted.
+  private void publishCatalogFiles(Map<String, File> files, String pointerPath, String dir) throws IOException {
+    if (files.isEmpty()) {
+      return;
+    }
+    Set<String> fileKeys = new HashSet<>();
+    for (Map.Entry<String, File> entry : files.entrySet()) {
+      fileKeys.add(prefix + "/" + entry.getKey());
+      if (!entry.getKey().startsWith(pointerPath)) {
+        putFilesIfChanged(getKeyPrefix(entry.getKey()), entry.getValue());
+      }
+    }
+    waitForRequests();
+
+    for (Map.Entry<String, File> entry : files.entrySet()) {
+      if (entry.getKey().startsWith(pointerPath)) {
+        putFilesIfChanged(getKeyPrefix(entry.getKey()), entry.getValue());
+      }
+    }
+    waitForRequests();
+
+    for (String objectKey : getRemoteKeys(prefix + "/" + dir + "/")) {
+      if (!fileKeys.contains(objectKey)) {
+        if (!dryrun) {
+          LOG.info("Deleting object {} from s3 since it is not part of the catalog anymore.", objectKey);
+          deleteObject(objectKey);
+        } else {
+          LOG.info("dryrun - would have deleted {} from s3 since it is not part of the catalog anymore.", objectKey);
+        }
+        updatedKeys.add("/" + objectKey);
       }
     }
   }
 
+  // returns the key prefix for a file at the given path relative to the hub directory
+  private String getKeyPrefix(String path) {
+    int index = path.lastIndexOf('/');
+    return index < 0 ? prefix + "/" : prefix + "/" + path.substring(0, index + 1);
+  }
+
   private void publishCategory(CategoryMeta categoryMeta) throws Exception {
     String keyPrefix = String.format("%s/categories/%s/", prefix, categoryMeta.getName());
     putFilesIfChanged(keyPrefix, categoryMeta.getIcon());
@@ -142,6 +357,15 @@ public class S3Publisher implements Publisher {
 
   // if the specified file has changed, put it plus all extra files on s3.
   private void putFilesIfChanged(String keyPrefix, @Nullable File file, File... extraFiles) throws IOException {
+    if (file != null && isJournaled(keyPrefix, file)) {
+      // the earlier publish may have died before the extra files were put
+      for (File extraFile : extraFiles) {
+        if (extraFile != null && !isJournaled(keyPrefix, extraFile)) {
+          putFile(keyPrefix, extraFile);
+        }
+      }
+      return;
+    }
     if (file != null && shouldPush(keyPrefix, file)) {
       putFile(keyPrefix, file);
       for (File extraFile : extraFiles) {
@@ -152,60 +376,355 @@ public class S3Publisher implements Publisher {
     }
   }
 
+  // check if the journal has the file as put by an earlier publish, and the object is still in s3 with the same length.
+  private boolean isJournaled(String keyPrefix, File file) throws IOException {
+    if (journal == null) {
+      return false;
+    }
+    String key = keyPrefix + file.getName();
+    RemoteObject existing = remoteObjects.get(key);
+    FileDigest digest = digestCache.get(file);
+    if (existing != null && existing.size == file.length() && journal.isPut(key, digest)) {
+      LOG.info("{} was already put by an earlier publish, skipping upload to S3.", file);
+      addBlob(digest.getSha256(), key);
+      metrics.increment("s3.journaled", 1);
+      return true;
+    }
+    return false;
+  }
+
   // check if the file on s3 has a different md5 or the file length.
   private boolean shouldPush(String keyPrefix, File file) throws IOException {
     if (forcePush) {
       return true;
     }
+    // includes computing the digests of the file, unless they are already cached
+    Metrics.Timer timer = metrics.start("s3.shouldPush");
     String key = keyPrefix + file.getName();
-    if (s3Client.doesObjectExist(bucket, key)) {
-      ObjectMetadata existingMeta = s3Client.getObjectMetadata(bucket, key);
-      long fileLength = file.length();
-      String md5Hex = BaseEncoding.base16().encode(Files.hash(file, Hashing.md5()).asBytes());
-      if (existingMeta != null &&
-        existingMeta.getContentLength() == fileLength &&
-        existingMeta.getETag() != null && existingMeta.getETag().equalsIgnoreCase(md5Hex)) {
-        LOG.info("{} has not changed, skipping upload to S3.", file);
-        return false;
-      }
+    RemoteObject existing = remoteObjects.get(key);
+    if (existing != null &&
+      existing.size == file.length() &&
+      existing.eTag != null && digestCache.get(file).getETags().contains(existing.eTag.toLowerCase())) {
+      LOG.info("{} has not changed, skipping upload to S3.", file);
+      addBlob(digestCache.get(file).getSha256(), key);
+      timer.stop(existing.size);
+      metrics.increment("s3.unchanged", 1);
+      return false;
     }
+    timer.stop(file.length());
     return true;
   }
 
-  private void putFile(String keyPrefix, File file) throws IOException {
-    String ext = Files.getFileExtension(file.getName());
-    String contentType;
-    switch (ext) {
-      case "json":
-        contentType = MediaType.JSON_UTF_8.withoutParameters().toString();
-        break;
-      case "txt":
-        contentType = MediaType.PLAIN_TEXT_UTF_8.withoutParameters().toString();
-        break;
-      case "png":
-        contentType = MediaType.PNG.withoutParameters().toString();
-        break;
-      case "asc":
-        contentType = MediaType.PLAIN_TEXT_UTF_8.withoutParameters().toString();
-        break;
-      default:
-        contentType = fileTypeMap.getContentType(file);
+  // lists every object under the prefix and the copy source prefixes. Pages of each prefix are listed one after the
+  // other, but all prefixes are listed at the same time.
+  private void listRemoteObjects() throws IOException {
+    remoteObjects.clear();
+    remoteContents.clear();
+    requests.submit("list objects in s3 under " + prefix + "/", new RequestPipeline.Request() {
+      @Override
+      public void run() {
+        listRemoteObjects(prefix + "/", remoteObjects);
+      }
+    });
+    Map<String, Map<String, RemoteObject>> sourceObjects = new LinkedHashMap<>();
+    for (final String copySourcePrefix : copySourcePrefixes) {
+      final Map<String, RemoteObject> objects = new TreeMap<>();
+      sourceObjects.put(copySourcePrefix, objects);
+      requests.submit("list objects in s3 under " + copySourcePrefix + "/", new RequestPipeline.Request() {
+        @Override
+        public void run() {
+          listRemoteObjects(copySourcePrefix + "/", objects);
+        }
+      });
+    }
+    requests.await();
+
+    // contents are added in the same order as before, so the same object is copied from regardless of timing
+    LOG.info("Found {} existing objects in s3 under {}/", remoteObjects.size(), prefix);
+    addRemoteContents(remoteObjects);
+    for (Map.Entry<String, Map<String, RemoteObject>> entry : sourceObjects.entrySet()) {
+      LOG.info("Found {} objects in s3 under {}/ to copy from", entry.getValue().size(), entry.getKey());
+      addRemoteContents(entry.getValue());
+    }
+  }
+
+  // lists every object under the given key prefix, a page of up to 1000 objects per request
+  private void listRemoteObjects(String keyPrefix, Map<String, RemoteObject> objects) {
+    ListObjectsV2Request request = new ListObjectsV2Request()
+      .withBucketName(bucket)
+      .withPrefix(keyPrefix);
+    ListObjectsV2Result result;
+    do {
+      Metrics.Timer timer = metrics.start("s3.list");
+      result = s3Client.listObjectsV2(request);
+      timer.stop();
+      for (S3ObjectSummary objectSummary : result.getObjectSummaries()) {
+        objects.put(objectSummary.getKey(), new RemoteObject(objectSummary.getSize(), objectSummary.getETag()));
+      }
+      request.setContinuationToken(result.getNextContinuationToken());
+    } while (result.isTruncated());
+  }
+
+  private void addRemoteContents(Map<String, RemoteObject> objects) {
+    for (Map.Entry<String, RemoteObject> entry : objects.entrySet()) {
+      RemoteObject object = entry.getValue();
+      String contentKey = object.eTag == null ? null : getContentKey(object.eTag.toLowerCase(), object.size);
+      if (contentKey != null && !remoteContents.containsKey(contentKey)) {
+        remoteContents.put(contentKey, entry.getKey());
+      }
+    }
+  }
+
+  private static String getContentKey(String eTag, long size) {
+    return eTag + "/" + size;
+  }
+
+  // returns the key of an object that was in s3 before the publish with the same ETag and size, or null if none was.
+  // Objects that were replaced or deleted by this publish may not have that content anymore, so they are skipped.
+  @Nullable
+  private String getRemoteContent(FileDigest digest) {
+    for (String eTag : digest.getETags()) {
+      String sourceKey = remoteContents.get(getContentKey(eTag, digest.getSize()));
+      if (sourceKey != null && !updatedKeys.contains("/" + sourceKey)) {
+        return sourceKey;
+      }
+    }
+    return null;
+  }
+
+  // returns the keys of all existing objects that start with the given prefix
+  private Set<String> getRemoteKeys(String keyPrefix) {
+    return remoteObjects.subMap(keyPrefix, keyPrefix + Character.MAX_VALUE).keySet();
+  }
+
+  // collects the gzip variants created by the packager, which are the only files that are served with gzip encoding
+  private void collectGzipVariants(Hub hub) {
+    gzipVariants.clear();
+    for (File catalog : Arrays.asList(hub.getPackageCatalog(), hub.getCategoryCatalog())) {
+      File variant = Gzip.getVariant(catalog);
+      if (variant != null) {
+        gzipVariants.add(variant);
+      }
+    }
+    for (Package pkg : hub.getPackages()) {
+      if (pkg.getSpecGzip() != null) {
+        gzipVariants.add(pkg.getSpecGzip());
+      }
+    }
+    for (Map.Entry<String, File> entry : hub.getCatalogShards().entrySet()) {
+      if (entry.getKey().endsWith(Gzip.EXTENSION)) {
+        gzipVariants.add(entry.getValue());
+      }
     }
+  }
+
+  private void putFile(String keyPrefix, File file) throws IOException {
+    // gzip variants have the content type of the original file, and are served with gzip content encoding
+    boolean gzipVariant = gzipVariants.contains(file);
+    String fileName = gzipVariant ? Gzip.getOriginalName(file) : file.getName();
     ObjectMetadata newMeta = new ObjectMetadata();
-    newMeta.setContentType(contentType);
-    String key = keyPrefix + file.getName();
-    PutObjectRequest request = new PutObjectRequest(bucket, key, file)
+    newMeta.setContentType(getContentType(fileName));
+    if (gzipVariant) {
+      newMeta.setContentEncoding(Gzip.ENCODING);
+    }
+    final String key = keyPrefix + file.getName();
+    startDeferredCopies();
+    final FileDigest digest = digestCache.get(file);
+    if (file.length() <= MAX_COPY_SIZE) {
+      // content published earlier may still be uploading, so it is copied once all uploads complete. Content that
+      // was already in s3 is copied right away, before its object can be replaced or deleted by this publish.
+      String sourceKey = blobs.get(digest.getSha256());
+      boolean deferred = sourceKey != null;
+      if (sourceKey == null) {
+        sourceKey = getRemoteContent(digest);
+      }
+      if (sourceKey != null) {
+        copyObject(sourceKey, key, newMeta, digest, deferred);
+        return;
+      }
+    }
+
+    final PutObjectRequest request = new PutObjectRequest(bucket, key, file)
       .withCannedAcl(CannedAccessControlList.PublicRead)
-      .withMetadata(newMeta);
+      .withMetadata(newMeta)
+      .withGeneralProgressListener(new UploadTimer(file.length()));
+    addBlob(digest.getSha256(), key);
     if (!dryrun) {
       LOG.info("put file {} into s3 with key {}", file, key);
-      s3Client.putObject(request);
+      awaitIfCopySource(key);
+      // large files are split into parts by the transfer manager and uploaded in parallel
+      requests.submit(String.format("put file %s into s3 with key %s", file, key), new RequestPipeline.Request() {
+        @Override
+        public void run() throws Exception {
+          transferManager.upload(request).waitForCompletion();
+          if (journal != null) {
+            journal.recordPut(key, digest);
+          }
+        }
+      });
     } else {
       LOG.info("dryrun - would have put file {} into s3 with key {}", file, key);
     }
     updatedKeys.add("/" + key);
   }
 
+  private void copyObject(String sourceKey, String key, ObjectMetadata newMeta, FileDigest digest,
+                          boolean deferred) throws IOException {
+    CopyObjectRequest request = new CopyObjectRequest(bucket, sourceKey, bucket, key)
+      .withCannedAccessControlList(CannedAccessControlList.PublicRead)
+      .withNewObjectMetadata(newMeta);
+    if (dryrun) {
+      LOG.info("dryrun - would have copied identical object {} in s3 to key {}", sourceKey, key);
+    } else if (deferred) {
+      LOG.info("copy identical object {} in s3 to key {} once it is uploaded", sourceKey, key);
+      copies.put(request, digest);
+    } else {
+      LOG.info("copy identical object {} in s3 to key {}", sourceKey, key);
+      awaitIfCopySource(key);
+      pendingCopySources.add(sourceKey);
+      // objects are copied in a single request, so the copy has the md5 as its ETag, like any small upload
+      submitCopy(request, digest);
+    }
+    updatedKeys.add("/" + key);
+  }
+
+  private void submitCopy(final CopyObjectRequest request, final FileDigest digest) throws IOException {
+    String description = String.format("copy object %s in s3 to key %s",
+                                       request.getSourceKey(), request.getDestinationKey());
+    requests.submit(description, new RequestPipeline.Request() {
+      @Override
+      public void run() throws IOException {
+        Metrics.Timer timer = metrics.start("s3.copy");
+        s3Client.copyObject(request);
+        timer.stop();
+        if (journal != null) {
+          journal.recordPut(request.getDestinationKey(), digest);
+        }
+      }
+    });
+  }
+
+  private void deleteObject(final String key) throws IOException {
+    if (journal != null && journal.isDeleted(key)) {
+      LOG.info("Object {} was already deleted by an earlier publish.", key);
+      return;
+    }
+    awaitIfCopySource(key);
+    requests.submit("delete object " + key + " from s3", new RequestPipeline.Request() {
+      @Override
+      public void run() throws IOException {
+        Metrics.Timer timer = metrics.start("s3.delete");
+        s3Client.deleteObject(bucket, key);
+        timer.stop();
+        if (journal != null) {
+          journal.recordDelete(key);
+        }
+      }
+    });
+  }
+
+  // waits for all requests in flight if any of them is copying from the given key, before it is replaced or deleted
+  private void awaitIfCopySource(String key) throws IOException {
+    if (pendingCopySources.contains(key)) {
+      waitForRequests();
+    }
+  }
+
+  // remembers the first object with the given content
+  private void addBlob(String sha256, String key) {
+    if (!blobs.containsKey(sha256)) {
+      blobs.put(sha256, key);
+    }
+  }
+
+  /**
+   * Returns the content type that a file with the given name is served with.
+   */
+  static String getContentType(String fileName) {
+    switch (Files.getFileExtension(fileName)) {
+      case "json":
+        return MediaType.JSON_UTF_8.withoutParameters().toString();
+      case "txt":
+        return MediaType.PLAIN_TEXT_UTF_8.withoutParameters().toString();
+      case "png":
+        return MediaType.PNG.withoutParameters().toString();
+      case "asc":
+        return MediaType.PLAIN_TEXT_UTF_8.withoutParameters().toString();
+      default:
+        return fileTypeMap.getContentType(fileName);
+    }
+  }
+
+  // starts the deferred copies once every upload has completed, so that they don't pile up until the next time all
+  // requests are waited on. If uploads never stop long enough, all requests are waited on once too many are deferred.
+  private void startDeferredCopies() throws IOException {
+    if (copies.size() >= MAX_DEFERRED_COPIES) {
+      waitForRequests();
+    } else if (!copies.isEmpty() && requests.isIdle()) {
+      try {
+        for (Map.Entry<CopyObjectRequest, FileDigest> copy : copies.entrySet()) {
+          pendingCopySources.add(copy.getKey().getSourceKey());
+          submitCopy(copy.getKey(), copy.getValue());
+        }
+      } finally {
+        copies.clear();
+      }
+    }
+  }
+
+  // waits for all requests in flight to complete, then copies the content of uploads to any identical files
+  private void waitForRequests() throws IOException {
+    try {
+      requests.await();
+      for (Map.Entry<CopyObjectRequest, FileDigest> copy : copies.entrySet()) {
+        submitCopy(copy.getKey(), copy.getValue());
+      }
+      requests.await();
+    } finally {
+      copies.clear();
+      pendingCopySources.clear();
+    }
+  }
+
+  /**
+   * Records the time an upload takes from when the transfer manager starts it until it completes, including all its
+   * parts. Events are delivered on the thread that uploads the file, so the upload is recorded before it completes.
+   */
+  private class UploadTimer extends SyncProgressListener {
+    private final long size;
+    private volatile long start;
+
+    private UploadTimer(long size) {
+      this.size = size;
+      this.start = System.nanoTime();
+    }
+
+    @Override
+    public void progressChanged(ProgressEvent progressEvent) {
+      ProgressEventType eventType = progressEvent.getEventType();
+      if (eventType == ProgressEventType.TRANSFER_STARTED_EVENT) {
+        start = System.nanoTime();
+      } else if (eventType == ProgressEventType.TRANSFER_COMPLETED_EVENT) {
+        metrics.record("s3.put", System.nanoTime() - start, size);
+      } else if (eventType == ProgressEventType.TRANSFER_FAILED_EVENT) {
+        metrics.increment("s3.put.failed", 1);
+      }
+    }
+  }
+
+  /**
+   * Size and ETag of an object in s3.
+   */
+  private static class RemoteObject {
+    private final long size;
+    private final String eTag;
+
+    private RemoteObject(long size, String eTag) {
+      this.size = size;
+      this.eTag = eTag;
+    }
+  }
+
   public static Builder builder(String s3Bucket, String s3AccessKey, String s3SecretKey) {
     return new Builder(s3Bucket, s3AccessKey, s3SecretKey);
   }
@@ -218,13 +737,23 @@ public class S3Publisher implements Publisher {
     private final String s3AccessKey;
     private final String s3SecretKey;
     private String prefix;
+    private String endpoint;
     private String cfDistribution;
     private String cfAccessKey;
     private String cfSecretKey;
     private boolean forcePush;
     private boolean dryrun;
     private int timeout;
+    private int uploadThreads;
+    private int concurrency;
+    private long multipartThreshold;
+    private long multipartPartSize;
+    private int maxRetries;
     private Set<String> whitelist;
+    private Set<String> copySourcePrefixes;
+    private DigestCache digestCache;
+    private Metrics metrics;
+    private File journalFile;
 
     public Builder(String s3Bucket, String s3AccessKey, String s3SecretKey) {
       this.s3Bucket = s3Bucket;
@@ -233,8 +762,14 @@ public class S3Publisher implements Publisher {
       forcePush = false;
       dryrun = false;
       timeout = 30;
+      uploadThreads = 8;
+      concurrency = 16;
+      multipartThreshold = DEFAULT_MULTIPART_THRESHOLD;
+      multipartPartSize = DEFAULT_MULTIPART_PART_SIZE;
+      maxRetries = PredefinedRetryPolicies.DEFAULT_MAX_ERROR_RETRY;
       prefix = "";
       whitelist = new HashSet<>();
+      copySourcePrefixes = new LinkedHashSet<>();
     }
 
     public Builder setCloudfrontDistribution(String distribution) {
@@ -257,6 +792,15 @@ public class S3Publisher implements Publisher {
       return this;
     }
 
+    /**
+     * Sets the endpoint of an S3 compatible service to publish to instead of AWS, like 'http://localhost:9000'.
+     * Buckets are addressed in the path instead of the host name, since such services often only support that.
+     */
+    public Builder setEndpoint(String endpoint) {
+      this.endpoint = endpoint;
+      return this;
+    }
+
     public Builder setForcePush(boolean forcePush) {
       this.forcePush = forcePush;
       return this;
@@ -272,17 +816,123 @@ public class S3Publisher implements Publisher {
       return this;
     }
 
+    /**
+     * Sets the maximum number of files, or parts of files, that are uploaded at the same time.
+     */
+    public Builder setUploadThreads(int uploadThreads) {
+      this.uploadThreads = uploadThreads;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests, like puts, copies, and deletes, that are in flight at the same time.
+     * Once that many are in flight, publishing waits for one of them to complete before starting the next one.
+     * A put of a file in multiple parts counts as a single request, whose parts are limited by the upload threads.
+     * Defaults to 16.
+     */
+    public Builder setConcurrency(int concurrency) {
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Sets the size in bytes above which files are uploaded in multiple parts.
+     */
+    public Builder setMultipartThreshold(long multipartThreshold) {
+      this.multipartThreshold = multipartThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the size in bytes of each part of a multipart upload. Must be at least 5mb.
+     */
+    public Builder setMultipartPartSize(long multipartPartSize) {
+      this.multipartPartSize = multipartPartSize;
+      return this;
+    }
+
+    /**
+     * Sets how many times each request, including each part of a multipart upload, is retried with
+     * exponential backoff before failing.
+     */
+    public Builder setMaxRetries(int maxRetries) {
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
     public Builder setWhitelist(Set<String> whitelist) {
       this.whitelist = whitelist;
       return this;
     }
 
+    /**
+     * Sets other prefixes in the bucket, like that of a previous hub version, whose objects are copied within s3
+     * instead of uploading files with the same size and ETag again.
+     */
+    public Builder setCopySourcePrefixes(Set<String> copySourcePrefixes) {
+      this.copySourcePrefixes = copySourcePrefixes;
+      return this;
+    }
+
+    /**
+     * Sets the cache used to look up the ETags of local files. It must have been created with the same multipart
+     * threshold and part size as this publisher. Defaults to an in-memory cache.
+     */
+    public Builder setDigestCache(DigestCache digestCache) {
+      this.digestCache = digestCache;
+      return this;
+    }
+
+    /**
+     * Sets where the time and bytes of every s3 request and cloudfront invalidation are recorded. Defaults to metrics
+     * that are never reported.
+     */
+    public Builder setMetrics(Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Sets the file that the progress of each publish is recorded in, so that a publish that dies halfway can be
+     * resumed by publishing again. The file is deleted once a publish completes. Defaults to no journal.
+     */
+    public Builder setJournalFile(File journalFile) {
+      this.journalFile = journalFile;
+      return this;
+    }
+
     public S3Publisher build() {
+      if (uploadThreads < 1) {
+        throw new IllegalArgumentException("Upload threads must be at least 1, but is " + uploadThreads);
+      }
+      if (concurrency < 1) {
+        throw new IllegalArgumentException("Concurrency must be at least 1, but is " + concurrency);
+      }
+      if (multipartPartSize < MIN_PART_SIZE) {
+        throw new IllegalArgumentException(
+          String.format("Multipart part size must be at least %d bytes, but is %d", MIN_PART_SIZE, multipartPartSize));
+      }
+      if (multipartThreshold < multipartPartSize) {
+        throw new IllegalArgumentException("Multipart threshold must be at least as large as the part size.");
+      }
+
       ClientConfiguration clientConf = new ClientConfiguration()
         .withProtocol(Protocol.HTTPS)
-        .withSocketTimeout(timeout * 1000);
+        .withSocketTimeout(timeout * 1000)
+        .withMaxConnections(Math.max(uploadThreads + concurrency, ClientConfiguration.DEFAULT_MAX_CONNECTIONS))
+        .withRetryPolicy(PredefinedRetryPolicies.getDefaultRetryPolicyWithCustomMaxRetries(maxRetries));
 
       AmazonS3Client s3Client = new AmazonS3Client(new BasicAWSCredentials(s3AccessKey, s3SecretKey), clientConf);
+      if (endpoint != null) {
+        s3Client.setEndpoint(endpoint);
+        s3Client.setS3ClientOptions(S3ClientOptions.builder().setPathStyleAccess(true).build());
+      }
+      TransferManager transferManager =
+        new TransferManager(s3Client, ParallelTasks.newPool("s3-upload", uploadThreads));
+      TransferManagerConfiguration transferConf = new TransferManagerConfiguration();
+      transferConf.setMultipartUploadThreshold(multipartThreshold);
+      transferConf.setMinimumUploadPartSize(multipartPartSize);
+      transferManager.setConfiguration(transferConf);
 
       AmazonCloudFrontClient cfClient = null;
       if (cfDistribution != null) {
@@ -293,7 +943,14 @@ public class S3Publisher implements Publisher {
         cfClient = new AmazonCloudFrontClient(new BasicAWSCredentials(cfAccessKey, cfSecretKey), clientConf);
       }
 
-      return new S3Publisher(s3Client, cfClient, s3Bucket, prefix, cfDistribution, forcePush, dryrun, whitelist);
+      if (digestCache == null) {
+        digestCache = DigestCache.inMemory(multipartThreshold, multipartPartSize);
+      }
+
+      return new S3Publisher(s3Client, transferManager, new RequestPipeline("s3-request", concurrency), digestCache,
+                             cfClient, s3Bucket, prefix, cfDistribution,
+                             forcePush, dryrun, whitelist, copySourcePrefixes,
+                             metrics == null ? new Metrics() : metrics, journalFile);
     }
   }
 }
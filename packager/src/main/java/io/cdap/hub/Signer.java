@@ -16,6 +16,7 @@
 
 package io.cdap.hub;
 
+import com.google.common.io.Files;
 import org.bouncycastle.bcpg.ArmoredOutputStream;
 import org.bouncycastle.bcpg.BCPGOutputStream;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -30,42 +31,91 @@ import org.bouncycastle.openpgp.operator.PBESecretKeyDecryptor;
 import org.bouncycastle.openpgp.operator.jcajce.JcaKeyFingerprintCalculator;
 import org.bouncycastle.openpgp.operator.jcajce.JcaPGPContentSignerBuilder;
 import org.bouncycastle.openpgp.operator.jcajce.JcePBESecretKeyDecryptorBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.Security;
 import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
 
 /**
- * Creates detached signatures.
+ * Creates detached signatures. Keeps a pool of signature generators so that multiple files can be signed at once.
+ *
+ * If the Signer has a digest cache, files with the same content are only signed once. A detached signature only
+ * depends on the content it signs, so the signature of the first file is written for every identical file after it.
+ * Many package versions contain the same icon, license, and jars, so this saves a signature for each of them.
  */
-public class Signer {
-
+public class Signer implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(Signer.class);
   private static final String PROVIDER_NAME = "BC";
 
-  private final PGPSignatureGenerator signer;
+  private final PGPPrivateKey privateKey;
+  private final int algorithm;
+  private final BlockingQueue<PGPSignatureGenerator> generators;
+  @Nullable
+  private final ExecutorService executor;
+  @Nullable
+  private final DigestCache digestCache;
+  // armored signature of all content signed so far, keyed by the sha256 of the content
+  private final ConcurrentMap<String, byte[]> signatures;
+  // sizes of all content signed so far, to only compute the digest of a file up front if it could be a duplicate
+  private final Set<Long> signedSizes;
+  private final Metrics metrics;
 
   static {
     Security.addProvider(new BouncyCastleProvider());
   }
 
   public static Signer fromKeyFile(File keyFile, long id, String keyPassword) throws IOException, PGPException {
+    return fromKeyFile(keyFile, id, keyPassword, 1, null);
+  }
 
+  /**
+   * Creates a Signer that can sign up to poolSize files at the same time. If a digest cache is given,
+   * the digests of each signed file are computed from the same bytes that are read to sign it.
+   */
+  public static Signer fromKeyFile(File keyFile, long id, String keyPassword, int poolSize,
+                                   @Nullable DigestCache digestCache) throws IOException, PGPException {
+    return fromKeyFile(keyFile, id, keyPassword, poolSize, digestCache, new Metrics());
+  }
+
+  /**
+   * Creates a Signer that records the time spent signing each file, and the number of bytes signed, in the given
+   * metrics.
+   */
+  public static Signer fromKeyFile(File keyFile, long id, String keyPassword, int poolSize,
+                                   @Nullable DigestCache digestCache,
+                                   Metrics metrics) throws IOException, PGPException {
+    if (poolSize < 1) {
+      throw new IllegalArgumentException("Pool size must be at least 1, but is " + poolSize);
+    }
     PGPSecretKey secretKey = getSecretKey(keyFile, id);
     PGPPrivateKey privateKey = extractPrivateKey(secretKey, keyPassword);
     int algorithm = secretKey.getPublicKey().getAlgorithm();
-
-    JcaPGPContentSignerBuilder contentSignerBuilder =
-      new JcaPGPContentSignerBuilder(algorithm, PGPUtil.SHA256).setProvider(PROVIDER_NAME);
-    PGPSignatureGenerator signer = new PGPSignatureGenerator(contentSignerBuilder);
-    signer.init(PGPSignature.BINARY_DOCUMENT, privateKey);
-    return new Signer(signer);
+    return new Signer(privateKey, algorithm, poolSize, digestCache, metrics);
   }
 
   private static PGPSecretKey getSecretKey(File keyFile, long id) throws IOException, PGPException {
@@ -91,28 +141,187 @@ public class Signer {
     }
   }
 
-  private Signer(PGPSignatureGenerator signer) {
-    this.signer = signer;
+  private Signer(PGPPrivateKey privateKey, int algorithm, int poolSize,
+                 @Nullable DigestCache digestCache, Metrics metrics) throws PGPException {
+    this.privateKey = privateKey;
+    this.digestCache = digestCache;
+    this.metrics = metrics;
+    this.algorithm = algorithm;
+    this.signatures = new ConcurrentHashMap<>();
+    this.signedSizes = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    this.generators = new ArrayBlockingQueue<>(poolSize);
+    for (int i = 0; i < poolSize; i++) {
+      generators.add(createGenerator());
+    }
+    this.executor = poolSize == 1 ? null : ParallelTasks.newPool("signer", poolSize);
   }
 
+  /**
+   * Returns the id of the key used to sign files.
+   */
+  public long getKeyId() {
+    return privateKey.getKeyID();
+  }
+
+  /**
+   * Signs all the given files, using as many signature generators as are in the pool.
+   *
+   * @return mapping of each file to its signature file, in the same order as the given files
+   */
+  public Map<File, File> signFiles(Collection<File> filesToSign) throws IOException, SignatureException,
+    NoSuchAlgorithmException, NoSuchProviderException, PGPException {
+
+    Map<File, File> signatures = new LinkedHashMap<>();
+    if (executor == null || filesToSign.size() == 1) {
+      for (File fileToSign : filesToSign) {
+        signatures.put(fileToSign, signFile(fileToSign));
+      }
+      return signatures;
+    }
+
+    List<Callable<File>> tasks = new ArrayList<>(filesToSign.size());
+    for (final File fileToSign : filesToSign) {
+      tasks.add(new Callable<File>() {
+        @Override
+        public File call() throws Exception {
+          return signFile(fileToSign);
+        }
+      });
+    }
+    Iterator<File> sigFiles = ParallelTasks.invokeAll(executor, tasks, PGPException.class).iterator();
+    for (File fileToSign : filesToSign) {
+      signatures.put(fileToSign, sigFiles.next());
+    }
+    return signatures;
+  }
+
+  /**
+   * Signs a single file. Blocks until a signature generator is available, unless a file with the same content
+   * was already signed.
+   */
   public File signFile(File fileToSign) throws IOException, SignatureException, NoSuchAlgorithmException,
     NoSuchProviderException, PGPException {
 
-    File sigFile = new File(fileToSign.getParentFile(), fileToSign.getName() + ".asc");
+    Metrics.Timer reuseTimer = metrics.start("sign.reuse");
+    FileDigest digest = getDigestIfDuplicate(fileToSign);
+    byte[] signature = digest == null ? null : signatures.get(digest.getSha256());
+    if (signature != null) {
+      LOG.debug("Reusing signature of identical content for {}", fileToSign);
+      File sigFile = getSignatureFile(fileToSign);
+      AtomicFiles.write(signature, sigFile);
+      reuseTimer.stop(digest.getSize());
+      return sigFile;
+    }
 
-    // logic comes from DetachedSignatureProcessor example from bouncy castle
-    byte[] buffer = new byte[1024 * 1024];
-    try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(fileToSign))) {
-      int len;
-      while (is.available() != 0) {
-        len = is.read(buffer);
-        signer.update(buffer, 0, len);
-      }
+    PGPSignatureGenerator signer;
+    try {
+      signer = generators.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting to sign " + fileToSign, e);
+    }
+
+    // a generator that failed halfway through may still hold part of the file, so it is replaced instead of reused
+    boolean success = false;
+    try {
+      Metrics.Timer signTimer = metrics.start("sign");
+      File sigFile = signFile(signer, fileToSign);
+      signTimer.stop(fileToSign.length());
+      success = true;
+      return sigFile;
+    } finally {
+      // the pool must always get a generator back, or later calls would wait for one forever
+      generators.add(success ? signer : replaceGenerator(signer));
     }
+  }
 
-    try (BCPGOutputStream bOut = new BCPGOutputStream(new ArmoredOutputStream(new FileOutputStream(sigFile)))) {
+  // returns a new generator to use instead of one that failed. This never throws, so that it does not hide the
+  // error that the failed generator ran into.
+  private PGPSignatureGenerator replaceGenerator(PGPSignatureGenerator failed) {
+    try {
+      return createGenerator();
+    } catch (PGPException e) {
+      LOG.error("Unable to create a signature generator. Reusing the one that failed instead.", e);
+    }
+    try {
+      // initializing it again discards anything it was given before
+      failed.init(PGPSignature.BINARY_DOCUMENT, privateKey);
+    } catch (PGPException e) {
+      LOG.error("Unable to reset the signature generator that failed.", e);
+    }
+    return failed;
+  }
+
+  // returns the digest of the file if it is already known or if a file of the same size was signed before,
+  // or null if the file can't have the same content as any file signed before
+  @Nullable
+  private FileDigest getDigestIfDuplicate(File file) throws IOException {
+    if (digestCache == null) {
+      return null;
+    }
+    FileDigest digest = digestCache.getIfCurrent(file);
+    if (digest != null) {
+      return digest;
+    }
+    // computing it here means it won't be computed again while signing
+    return signedSizes.contains(file.length()) ? digestCache.get(file) : null;
+  }
+
+  private File signFile(final PGPSignatureGenerator signer, File fileToSign) throws IOException, PGPException {
+    File sigFile = getSignatureFile(fileToSign);
+
+    // only compute digests if they are not already known
+    final DigestCache.Digester digester = digestCache == null || digestCache.getIfCurrent(fileToSign) != null ?
+      null : digestCache.newDigester(fileToSign);
+
+    // logic comes from DetachedSignatureProcessor example from bouncy castle.
+    // each chunk of the file is read once, and used for both the signature and the digests.
+    FileChunks.read(fileToSign, new FileChunks.Consumer() {
+      @Override
+      public void accept(ByteBuffer chunk) {
+        signer.update(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        if (digester != null) {
+          digester.update(chunk);
+        }
+      }
+    });
+    FileDigest digest = digester == null ? null : digester.finish();
+
+    ByteArrayOutputStream signature = new ByteArrayOutputStream();
+    try (BCPGOutputStream bOut = new BCPGOutputStream(new ArmoredOutputStream(signature))) {
       signer.generate().encode(bOut);
     }
+    AtomicFiles.write(signature.toByteArray(), sigFile);
+
+    if (digestCache != null) {
+      if (digest == null) {
+        digest = digestCache.get(fileToSign);
+      }
+      signatures.putIfAbsent(digest.getSha256(), signature.toByteArray());
+      signedSizes.add(digest.getSize());
+    }
     return sigFile;
   }
+
+  /**
+   * Stops the threads used to sign multiple files at once. The Signer can still sign single files afterwards.
+   */
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private static File getSignatureFile(File file) {
+    return new File(file.getParentFile(), file.getName() + ".asc");
+  }
+
+  private PGPSignatureGenerator createGenerator() throws PGPException {
+    JcaPGPContentSignerBuilder contentSignerBuilder =
+      new JcaPGPContentSignerBuilder(algorithm, PGPUtil.SHA256).setProvider(PROVIDER_NAME);
+    PGPSignatureGenerator generator = new PGPSignatureGenerator(contentSignerBuilder);
+    generator.init(PGPSignature.BINARY_DOCUMENT, privateKey);
+    return generator;
+  }
 }
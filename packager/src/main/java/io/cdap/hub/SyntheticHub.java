@@ -0,0 +1,362 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * Generates a hub of made up packages, for measuring how the packager and publishers perform on hubs of any size.
+ *
+ * Packages take turns being one of four kinds, which together use every action type:
+ *
+ *   plugins, which deploy a jar and its config with 'one_step_deploy_plugin'
+ *   pipelines, which create a draft from a pipeline config with 'create_pipeline_draft'
+ *   solutions, which create a stream, load data into it, and deploy a pipeline with 'create_stream',
+ *     'load_datapack', and 'create_pipeline'
+ *   datapacks, which create a stream and load a data file into it
+ *
+ * Every package version has an icon, and every tenth package has a beta as its last version. Jars and data files
+ * are the configured size, with jars made of random bytes and data files made of random csv rows.
+ *
+ * The hub only depends on the seed and the settings, so generating it twice with the same ones gives exactly
+ * the same files. The contents of each package version only depend on the seed and its position, so adding
+ * packages or versions does not change the ones that were there before.
+ */
+public final class SyntheticHub {
+  private static final Logger LOG = LoggerFactory.getLogger(SyntheticHub.class);
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private static final String NAME_PREFIX = "synthetic-";
+  private static final String[] KINDS = { "plugin", "pipeline", "solution", "datapack" };
+  private static final String[] CATEGORIES = { "hydrator-plugin", "pipeline", "usecase", "datapack" };
+  private static final String[] WORDS = {
+    "data", "stream", "batch", "source", "sink", "transform", "database", "cloud", "file", "table", "record",
+    "schema", "pipeline", "connector", "storage", "analytics", "events", "json", "csv", "query"
+  };
+  private static final String[] PLUGIN_TYPES = { "batchsource", "transform", "transform", "batchsink" };
+  private static final int ICON_SIZE = 32;
+  // the first package version is created at this time, and each one after it a day later
+  private static final long CREATED_START = 1450000000L;
+  private final File baseDir;
+  private final int packages;
+  private final int versions;
+  private final int jarSize;
+  private final long seed;
+
+  private SyntheticHub(File baseDir, int packages, int versions, int jarSize, long seed) {
+    this.baseDir = baseDir;
+    this.packages = packages;
+    this.versions = versions;
+    this.jarSize = jarSize;
+    this.seed = seed;
+  }
+
+  /**
+   * Writes all package versions into the 'packages' directory of the base directory.
+   *
+   * @return the version directories that were written, in sorted order
+   * @throws IOException if the 'packages' directory contains any package that was not synthesized,
+   *   so that real packages are never mixed with or overwritten by made up ones
+   */
+  public List<File> generate() throws IOException {
+    File[] existing = new File(baseDir, "packages").listFiles();
+    if (existing != null) {
+      for (File packageDir : existing) {
+        if (!packageDir.getName().startsWith(NAME_PREFIX)) {
+          throw new IOException(String.format(
+            "Directory %s contains package '%s', which was not synthesized. Synthesize into another directory.",
+            packageDir.getParentFile(), packageDir.getName()));
+        }
+      }
+    }
+    List<File> versionDirs = new ArrayList<>(packages * versions);
+    for (int i = 0; i < packages; i++) {
+      String name = String.format(NAME_PREFIX + "%s-%06d", KINDS[i % KINDS.length], i);
+      for (int j = 0; j < versions; j++) {
+        versionDirs.add(generate(name, i, j));
+      }
+      if ((i + 1) % 1000 == 0) {
+        LOG.info("Generated {} of {} packages", i + 1, packages);
+      }
+    }
+    Collections.sort(versionDirs, Packager.FILE_COMPARATOR);
+    LOG.info("Generated {} packages with {} versions each in {}", packages, versions, baseDir);
+    return versionDirs;
+  }
+
+  private File generate(String name, int packageIndex, int versionIndex) throws IOException {
+    Random random = new Random(seed + 31L * packageIndex + versionIndex);
+    String version = String.format("1.%d.0", versionIndex);
+    File versionDir = new File(new File(new File(baseDir, "packages"), name), version);
+    if (!versionDir.isDirectory() && !versionDir.mkdirs()) {
+      throw new IOException("Unable to create directory " + versionDir);
+    }
+
+    List<Map<String, Object>> actions = new ArrayList<>();
+    String kind = KINDS[packageIndex % KINDS.length];
+    switch (kind) {
+      case "plugin":
+        String artifact = name + "-" + version;
+        writeJar(random, new File(versionDir, artifact + ".jar"));
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("parents", Collections.singletonList("system:cdap-data-pipeline[6.0.0,7.0.0-SNAPSHOT)"));
+        config.put("properties", Collections.singletonMap("widgets." + words(random, 1), "{}"));
+        writeJson(config, new File(versionDir, artifact + ".json"));
+        actions.add(action("one_step_deploy_plugin", "Deploy " + name,
+                           argument("name", name), argument("version", version), argument("scope", "user"),
+                           argument("config", artifact + ".json"), argument("jar", artifact + ".jar")));
+        break;
+      case "pipeline":
+        writeJson(pipeline(random), new File(versionDir, "pipeline.json"));
+        actions.add(pipelineAction("create_pipeline_draft", name, "pipeline.json"));
+        break;
+      case "solution":
+        writeData(random, new File(versionDir, "data.csv"));
+        writeJson(pipeline(random), new File(versionDir, "pipeline.json"));
+        actions.add(streamAction(name));
+        actions.add(datapackAction(name, "data.csv"));
+        actions.add(pipelineAction("create_pipeline", name, "pipeline.json"));
+        break;
+      default:
+        writeData(random, new File(versionDir, "data.csv"));
+        actions.add(streamAction(name));
+        actions.add(datapackAction(name, "data.csv"));
+        break;
+    }
+    writeIcon(random, new File(versionDir, "icon.png"));
+
+    Map<String, Object> spec = new LinkedHashMap<>();
+    spec.put("specVersion", "1.0");
+    spec.put("description", "Synthetic " + kind + " to " + words(random, 12));
+    spec.put("label", name + " " + words(random, 2));
+    spec.put("author", "Author " + random.nextInt(100));
+    spec.put("org", "Org " + random.nextInt(20));
+    spec.put("cdapVersion", String.format("[6.%d.0,7.0.0-SNAPSHOT)", random.nextInt(10)));
+    spec.put("created", CREATED_START + 86400L * (packageIndex * versions + versionIndex));
+    spec.put("categories", Collections.singletonList(CATEGORIES[packageIndex % CATEGORIES.length]));
+    if (packageIndex % 10 == 9 && versionIndex == versions - 1) {
+      spec.put("beta", true);
+    }
+    spec.put("actions", actions);
+    writeJson(spec, new File(versionDir, "spec.json"));
+    return versionDir;
+  }
+
+  private static Map<String, Object> pipelineAction(String type, String name, String config) {
+    Map<String, Object> artifact = new LinkedHashMap<>();
+    artifact.put("scope", "system");
+    artifact.put("name", "cdap-data-pipeline");
+    artifact.put("version", "6.0.0");
+    Map<String, Object> nameArgument = argument("name", name.replace("-", ""));
+    nameArgument.put("canModify", true);
+    return action(type, "Create " + name, argument("artifact", artifact), nameArgument, argument("config", config));
+  }
+
+  private static Map<String, Object> streamAction(String name) {
+    return action("create_stream", "Stream for " + name,
+                  argument("name", name.replace("-", "")), argument("description", "Data of " + name));
+  }
+
+  private static Map<String, Object> datapackAction(String name, String file) {
+    return action("load_datapack", "Data for " + name,
+                  argument("name", name.replace("-", "")), argument("files", Collections.singletonList(file)));
+  }
+
+  private static Map<String, Object> action(String type, String label, Map<?, ?>... arguments) {
+    Map<String, Object> action = new LinkedHashMap<>();
+    action.put("type", type);
+    action.put("label", label);
+    List<Map<?, ?>> argumentList = new ArrayList<>();
+    Collections.addAll(argumentList, arguments);
+    action.put("arguments", argumentList);
+    return action;
+  }
+
+  private static Map<String, Object> argument(String name, Object value) {
+    Map<String, Object> argument = new LinkedHashMap<>();
+    argument.put("name", name);
+    argument.put("value", value);
+    argument.put("canModify", false);
+    return argument;
+  }
+
+  // a pipeline config with a source, some transforms, and a sink, like the ones exported from the pipeline studio
+  private static Map<String, Object> pipeline(Random random) {
+    int numStages = 2 + random.nextInt(5);
+    List<Map<String, Object>> stages = new ArrayList<>(numStages);
+    List<Map<String, Object>> connections = new ArrayList<>(numStages - 1);
+    for (int i = 0; i < numStages; i++) {
+      String type = i == 0 ? PLUGIN_TYPES[0] : i == numStages - 1 ? PLUGIN_TYPES[3] : PLUGIN_TYPES[1];
+      String stageName = type + i;
+      Map<String, Object> artifact = new LinkedHashMap<>();
+      artifact.put("name", "core-plugins");
+      artifact.put("version", "2.3.0");
+      artifact.put("scope", "SYSTEM");
+      Map<String, Object> properties = new LinkedHashMap<>();
+      for (int j = random.nextInt(8); j >= 0; j--) {
+        properties.put(words(random, 1) + j, words(random, 1 + random.nextInt(6)));
+      }
+      Map<String, Object> plugin = new LinkedHashMap<>();
+      plugin.put("name", stageName);
+      plugin.put("type", type);
+      plugin.put("label", stageName);
+      plugin.put("artifact", artifact);
+      plugin.put("properties", properties);
+      Map<String, Object> stage = new LinkedHashMap<>();
+      stage.put("name", stageName);
+      stage.put("plugin", plugin);
+      stages.add(stage);
+      if (i > 0) {
+        Map<String, Object> connection = new LinkedHashMap<>();
+        connection.put("from", stages.get(i - 1).get("name"));
+        connection.put("to", stageName);
+        connections.add(connection);
+      }
+    }
+    Map<String, Object> resources = new LinkedHashMap<>();
+    resources.put("memoryMB", 1024);
+    resources.put("virtualCores", 1);
+    Map<String, Object> pipeline = new LinkedHashMap<>();
+    pipeline.put("resources", resources);
+    pipeline.put("connections", connections);
+    pipeline.put("stages", stages);
+    return pipeline;
+  }
+
+  private void writeJar(Random random, File file) throws IOException {
+    byte[] jar = new byte[jarSize];
+    random.nextBytes(jar);
+    Files.write(jar, file);
+  }
+
+  private void writeData(Random random, File file) throws IOException {
+    try (Writer writer = Files.newWriter(file, StandardCharsets.UTF_8)) {
+      long written = 0;
+      while (written < jarSize) {
+        String row = String.format("%d,%s,%d\n", written, words(random, 3), random.nextInt());
+        writer.write(row);
+        written += row.length();
+      }
+    }
+  }
+
+  private static void writeIcon(Random random, File file) throws IOException {
+    BufferedImage icon = new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_RGB);
+    int color = random.nextInt();
+    for (int x = 0; x < ICON_SIZE; x++) {
+      for (int y = 0; y < ICON_SIZE; y++) {
+        icon.setRGB(x, y, x < ICON_SIZE / 2 == y < ICON_SIZE / 2 ? color : ~color);
+      }
+    }
+    if (!ImageIO.write(icon, "png", file)) {
+      throw new IOException("Unable to write icon " + file);
+    }
+  }
+
+  private static String words(Random random, int count) {
+    StringBuilder words = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      words.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return words.toString();
+  }
+
+  private static void writeJson(Object object, File file) throws IOException {
+    try (Writer writer = Files.newWriter(file, StandardCharsets.UTF_8)) {
+      GSON.toJson(object, writer);
+      writer.write("\n");
+    }
+  }
+
+  public static Builder builder(File baseDir) {
+    return new Builder(baseDir);
+  }
+
+  /**
+   * Builder to create a SyntheticHub.
+   */
+  public static class Builder {
+    private final File baseDir;
+    private int packages;
+    private int versions;
+    private int jarSize;
+    private long seed;
+
+    public Builder(File baseDir) {
+      this.baseDir = baseDir;
+      this.packages = 100;
+      this.versions = 5;
+      this.jarSize = 64 * 1024;
+      this.seed = 0L;
+    }
+
+    /**
+     * Sets the number of packages. Defaults to 100.
+     */
+    public Builder setPackages(int packages) {
+      this.packages = packages;
+      return this;
+    }
+
+    /**
+     * Sets the number of versions of each package. Defaults to 5.
+     */
+    public Builder setVersions(int versions) {
+      this.versions = versions;
+      return this;
+    }
+
+    /**
+     * Sets the size in bytes of each jar and data file. Defaults to 64kb.
+     */
+    public Builder setJarSize(int jarSize) {
+      this.jarSize = jarSize;
+      return this;
+    }
+
+    public Builder setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public SyntheticHub build() {
+      if (packages < 1 || versions < 1) {
+        throw new IllegalArgumentException("There must be at least one package and one version of each package.");
+      }
+      if (jarSize < 0) {
+        throw new IllegalArgumentException("Jar size cannot be negative, but is " + jarSize);
+      }
+      return new SyntheticHub(baseDir, packages, versions, jarSize, seed);
+    }
+  }
+}
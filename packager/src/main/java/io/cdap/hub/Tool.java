@@ -29,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -38,6 +39,8 @@ import java.util.Set;
  */
 public class Tool {
   private static final Logger LOG = LoggerFactory.getLogger(Tool.class);
+  private static final String DIGEST_CACHE_NAME = ".digest-cache.json";
+  private static final String PUBLISH_JOURNAL_NAME = ".publish-journal";
 
   public static void main(String[] args) throws Exception {
 
@@ -53,26 +56,79 @@ public class Tool {
                             "Id (in hex) of the private key to use to sign specs and archives. " +
                               "If you are using gpg, you can get this from 'gpg --list-keys --keyid-format LONG'"))
       .addOption(new Option("d", "dir", true,
-                            "Directory containing packages. Defaults to the current working directory."))
+                            "Directory containing packages. Defaults to the current working directory, " +
+                              "except for 'synthesize', which requires it."))
       .addOption(new Option("f", "force", false,
                             "Push packages to S3 even if they have not changed. " +
                               "This may be useful if the signatures have been updated, but the files have not."))
       .addOption(new Option("y", "dryrun", false,
-                            "Perform a dryrun, which won't actually publish to s3 or invalidate cloudfront objects."))
+                            "Perform a dryrun, which won't actually publish to s3 or the output directory, " +
+                              "or invalidate cloudfront objects."))
       .addOption(new Option("w", "whitelist", true,
                             "A comma separated whitelist of categories to publish. Any package that does not have " +
                               "one of these categories will not be published."))
+      .addOption(new Option("t", "threads", true,
+                            "Number of package versions to build and files to sign in parallel. Defaults to 1."))
+      .addOption(new Option("n", "incremental", false,
+                            "Only sign and archive package versions that changed since the last build, " +
+                              "instead of cleaning and rebuilding everything."))
+      .addOption(new Option("c", "compact", false,
+                            "Write catalog files without indentation or line breaks, instead of pretty printing them."))
+      .addOption(new Option("cv", "cdapversion", true,
+                            "The latest CDAP version. Packages whose CDAP version range ends at the next major " +
+                              "version are listed as compatible with every minor version up to it. Defaults to " +
+                              CompatibilityIndex.DEFAULT_LATEST_CDAP_VERSION + "."))
+      .addOption(new Option("o", "outdir", true,
+                            "Publish packages to a directory on the local filesystem instead of to s3, so that they " +
+                              "can be served by a local web server. The hub is mirrored under the version directory."))
+      .addOption(new Option("l", "link", false,
+                            "Hard link files into the output directory instead of copying them."))
+      .addOption(new Option("host", "host", true,
+                            "Host name or address to serve the hub on. Defaults to " + HubServer.DEFAULT_HOST +
+                              ", which can only be reached from the same machine. Use 0.0.0.0 for every interface."))
+      .addOption(new Option("port", "port", true,
+                            "Port to serve the hub on. Defaults to " + HubServer.DEFAULT_PORT + "."))
       .addOption(new Option("s3b", "s3bucket", true, "The S3 bucket to publish packages to."))
       .addOption(new Option("s3p", "s3prefix", true,
                             "Optional prefix to use when publishing the s3. Defaults to empty."))
       .addOption(new Option("s3a", "s3access", true, "Access key to publish to s3."))
       .addOption(new Option("s3s", "s3secret", true, "Secret key to publish to s3."))
       .addOption(new Option("s3t", "s3timeout", true, "Timeout in seconds to use when pushing to s3. Defaults to 30."))
+      .addOption(new Option("s3c", "s3concurrency", true,
+                            "Maximum number of files or file parts to upload to s3 at the same time. Defaults to 8."))
+      .addOption(new Option("s3i", "s3inflight", true,
+                            "Maximum number of s3 requests, like puts, copies, and deletes, in flight at the same " +
+                              "time. Defaults to 16."))
+      .addOption(new Option("s3m", "s3multipart", true,
+                            "Size in megabytes above which files are uploaded to s3 in multiple parts, " +
+                              "which are uploaded in parallel. Must be at least 5. Defaults to 16."))
+      .addOption(new Option("s3r", "s3retries", true,
+                            "Number of times to retry each s3 request, with exponential backoff. Defaults to 3."))
+      .addOption(new Option("s3e", "s3endpoint", true,
+                            "Endpoint of an S3 compatible service to publish to instead of AWS, " +
+                              "like 'http://localhost:9000'."))
+      .addOption(new Option("s3v", "s3copyversions", true,
+                            "A comma separated list of other versions in the s3 bucket, like 'v1,v2'. Files that " +
+                              "are identical to an object in one of them are copied within s3 instead of uploaded."))
       .addOption(new Option("cfd", "cfdistribution", true, "Cloudfront distribution fronting the s3 bucket."))
       .addOption(new Option("cfa", "cfaccess", true, "Access key to invalidate cloudfront objects."))
       .addOption(new Option("cfs", "cfsecret", true, "Secret key to invalidate cloudfront objects."))
       .addOption(new Option("v", "version", true,
-                            "Sets the version. Defaults to 'v2'. Note that it should not include slashes."));
+                            "Sets the version. Defaults to 'v2'. Note that it should not include slashes."))
+      .addOption(new Option("m", "metrics", true,
+                            "File to write a JSON report of the time and bytes of each build and publish operation " +
+                              "to, with their median and 99th percentile times."))
+      .addOption(new Option("mp", "metricsprometheus", true,
+                            "File to write the same metrics to in the Prometheus text format."))
+      .addOption(new Option("sp", "synthpackages", true,
+                            "Number of packages to synthesize. Defaults to 100."))
+      .addOption(new Option("sv", "synthversions", true,
+                            "Number of versions of each package to synthesize. Defaults to 5."))
+      .addOption(new Option("ss", "synthsize", true,
+                            "Size in kilobytes of each jar and data file to synthesize. Defaults to 64."))
+      .addOption(new Option("seed", "seed", true,
+                            "Seed to synthesize packages from. The same seed always gives the same packages. " +
+                              "Defaults to 0."));
 
     CommandLineParser parser = new BasicParser();
     CommandLine commandLine = parser.parse(options, args);
@@ -83,7 +139,7 @@ public class Tool {
       HelpFormatter helpFormatter = new HelpFormatter();
       helpFormatter.printHelp(
         Packager.class.getName() + " command",
-        "Supported commands are 'clean', 'build', and 'publish'.\n" +
+        "Supported commands are 'clean', 'build', 'publish', 'serve', and 'synthesize'.\n" +
           "'clean' will delete any existing archives and the packages.json catalog.\n" +
           "'build' will create package archives and the package.json catalog listing all packages found. " +
           "Expects packages to conform to a specific directory structure. " +
@@ -92,8 +148,12 @@ public class Tool {
           "If the package contains a license, it must be named license.txt.\n" +
           "If the package contains an icon, it must be named icon.jpg.\n" +
           "Anything else in the package directory will be zipped up into a file named archive.zip.\n" +
-          "'publish' will push the packages.json catalog, zips, and specs to s3.\n" +
-          "'build' will always run a 'clean' first. 'publish' will always run a 'clean' and a 'build' first.",
+          "'publish' will push the packages.json catalog, zips, and specs to s3, " +
+          "or mirror them to a local directory if an output directory is given.\n" +
+          "'build' will always run a 'clean' first. 'publish' will always run a 'clean' and a 'build' first. " +
+          "With the 'incremental' option, 'clean' is skipped and only changed packages are signed again.\n" +
+          "'serve' will serve an already built hub directory over http until the process is stopped.\n" +
+          "'synthesize' will generate made up packages in the packages directory, for testing at scale.",
         options, "");
       System.exit(0);
     }
@@ -101,8 +161,11 @@ public class Tool {
     String command = commandArgs[0];
     if (!command.equalsIgnoreCase("build") &&
       !command.equalsIgnoreCase("clean") &&
-      !command.equalsIgnoreCase("publish")) {
-      LOG.error("Unrecognized command '{}'. Command must be 'clean', 'build', or 'publish'.", command);
+      !command.equalsIgnoreCase("publish") &&
+      !command.equalsIgnoreCase("serve") &&
+      !command.equalsIgnoreCase("synthesize")) {
+      LOG.error("Unrecognized command '{}'. Command must be 'clean', 'build', 'publish', 'serve', or 'synthesize'.",
+                command);
       System.exit(1);
     }
 
@@ -122,6 +185,78 @@ public class Tool {
       System.exit(1);
     }
 
+    int threads = 1;
+    if (commandLine.hasOption('t')) {
+      try {
+        threads = Integer.parseInt(commandLine.getOptionValue('t'));
+      } catch (NumberFormatException e) {
+        LOG.error("Could not parse '{}' as the number of threads.", commandLine.getOptionValue('t'));
+        System.exit(1);
+      }
+      if (threads < 1) {
+        LOG.error("The number of threads must be at least 1.");
+        System.exit(1);
+      }
+    }
+
+    if (command.equalsIgnoreCase("serve")) {
+      serve(commandLine, packageDirectory, commandLine.hasOption('t') ? threads : HubServer.DEFAULT_THREADS);
+      return;
+    }
+
+    if (command.equalsIgnoreCase("synthesize")) {
+      // never default to the working directory, which is usually the repository with the real packages
+      if (!commandLine.hasOption("d")) {
+        LOG.error("The directory to synthesize packages into must be given with '-d'.");
+        System.exit(1);
+      }
+      SyntheticHub.Builder builder = SyntheticHub.builder(packageDirectory);
+      try {
+        if (commandLine.hasOption("sp")) {
+          builder.setPackages(Integer.parseInt(commandLine.getOptionValue("sp")));
+        }
+        if (commandLine.hasOption("sv")) {
+          builder.setVersions(Integer.parseInt(commandLine.getOptionValue("sv")));
+        }
+        if (commandLine.hasOption("ss")) {
+          builder.setJarSize(Integer.parseInt(commandLine.getOptionValue("ss")) * 1024);
+        }
+        if (commandLine.hasOption("seed")) {
+          builder.setSeed(Long.parseLong(commandLine.getOptionValue("seed")));
+        }
+      } catch (NumberFormatException e) {
+        LOG.error("Could not parse a synthesize option: {}", e.getMessage());
+        System.exit(1);
+      }
+      builder.build().generate();
+      return;
+    }
+
+    long multipartThreshold = S3Publisher.DEFAULT_MULTIPART_THRESHOLD;
+    long multipartPartSize = S3Publisher.DEFAULT_MULTIPART_PART_SIZE;
+    if (commandLine.hasOption("s3m")) {
+      long thresholdMB = 0;
+      try {
+        thresholdMB = Long.parseLong(commandLine.getOptionValue("s3m"));
+      } catch (NumberFormatException e) {
+        LOG.error("Could not parse '{}' as the multipart threshold.", commandLine.getOptionValue("s3m"));
+        System.exit(1);
+      }
+      long minThresholdMB = S3Publisher.MIN_PART_SIZE / 1024 / 1024;
+      if (thresholdMB < minThresholdMB || thresholdMB > Long.MAX_VALUE / 1024 / 1024) {
+        LOG.error("The multipart threshold must be at least {} megabytes, which is the smallest part s3 allows.",
+                  minThresholdMB);
+        System.exit(1);
+      }
+      multipartThreshold = thresholdMB * 1024 * 1024;
+      // use smaller parts for small thresholds, but never less than the minimum s3 allows
+      multipartPartSize = Math.max(multipartThreshold / 2, S3Publisher.MIN_PART_SIZE);
+    }
+    // digests are computed while signing, and used to check for changes when publishing
+    DigestCache digestCache = DigestCache.load(new File(packageDirectory, DIGEST_CACHE_NAME),
+                                               multipartThreshold, multipartPartSize);
+    Metrics metrics = new Metrics();
+
     Signer signer = null;
     if (commandLine.hasOption('k')) {
       File keyFile = new File(commandLine.getOptionValue('k'));
@@ -152,34 +287,133 @@ public class Tool {
         LOG.error("Could not decode {} into a long. Please ensure it is a long in hex format.", keyIDHex, e);
         System.exit(1);
       }
-      signer = Signer.fromKeyFile(keyFile, keyID, password);
+      signer = Signer.fromKeyFile(keyFile, keyID, password, threads, digestCache, metrics);
     }
 
     Set<String> whitelist = new HashSet<>();
     if (commandLine.hasOption('w')) {
       whitelist = parseWhitelist(commandLine.getOptionValue('w'));
     }
-    Packager packager = new Packager(packageDirectory, signer, false, whitelist);
-    Publisher publisher = command.equalsIgnoreCase("publish") ? getPublisher(commandLine, whitelist) : null;
+    Version latestCdapVersion = CompatibilityIndex.DEFAULT_LATEST_CDAP_VERSION;
+    if (commandLine.hasOption("cv")) {
+      try {
+        latestCdapVersion = Version.parse(commandLine.getOptionValue("cv"));
+      } catch (IllegalArgumentException e) {
+        LOG.error("Could not parse '{}' as the latest CDAP version.", commandLine.getOptionValue("cv"));
+        System.exit(1);
+      }
+    }
+    boolean incremental = commandLine.hasOption('n');
+    Packager packager = Packager.builder(packageDirectory)
+      .setSigner(signer)
+      .setWhitelist(whitelist)
+      .setParallelism(threads)
+      .setIncremental(incremental)
+      .setCompactCatalogs(commandLine.hasOption('c'))
+      .setLatestCdapVersion(latestCdapVersion)
+      .setDigestCache(digestCache)
+      .setMetrics(metrics)
+      .build();
+    Publisher publisher = null;
+    if (command.equalsIgnoreCase("publish")) {
+      publisher = commandLine.hasOption('o') ?
+        getFileSystemPublisher(commandLine, packageDirectory) :
+        getPublisher(commandLine, whitelist, digestCache, metrics, new File(packageDirectory, PUBLISH_JOURNAL_NAME),
+                     multipartThreshold, multipartPartSize);
+    }
 
-    packager.clean();
     if (command.equalsIgnoreCase("clean")) {
+      packager.clean();
       System.exit(0);
     }
+    if (!incremental) {
+      packager.clean();
+    }
+    if (publisher != null) {
+      // builds may run where the delta feed of the last build was not kept, like on CI
+      CatalogDeltas.fetchPublished(packageDirectory, publisher);
+    }
 
     Hub hub = packager.build();
-    if (command.equalsIgnoreCase("build")) {
-      System.exit(0);
+    if (signer != null) {
+      // everything is signed by the build, publishing only pushes the signatures
+      signer.close();
     }
-
-    if (publisher == null) {
+    digestCache.save();
+    if (command.equalsIgnoreCase("build") || publisher == null) {
+      reportMetrics(commandLine, metrics);
       System.exit(0);
     }
 
     publisher.publish(hub);
+    digestCache.save();
+    reportMetrics(commandLine, metrics);
+  }
+
+  private static void reportMetrics(CommandLine commandLine, Metrics metrics) throws IOException {
+    metrics.log();
+    if (commandLine.hasOption("m")) {
+      metrics.writeJson(new File(commandLine.getOptionValue("m")));
+    }
+    if (commandLine.hasOption("mp")) {
+      metrics.writePrometheus(new File(commandLine.getOptionValue("mp")));
+    }
+  }
+
+  private static void serve(CommandLine commandLine, File packageDirectory, int threads) throws IOException {
+    int port = HubServer.DEFAULT_PORT;
+    if (commandLine.hasOption("port")) {
+      try {
+        port = Integer.parseInt(commandLine.getOptionValue("port"));
+      } catch (NumberFormatException e) {
+        LOG.error("Could not parse '{}' as the port.", commandLine.getOptionValue("port"));
+        System.exit(1);
+      }
+    }
+    if (!new File(packageDirectory, Packager.PACKAGE_CATALOG_NAME).isFile()) {
+      LOG.warn("Directory '{}' does not contain a package catalog. Run 'build' before serving it.", packageDirectory);
+    }
+
+    final HubServer server = HubServer.builder(packageDirectory)
+      .setHost(commandLine.hasOption("host") ? commandLine.getOptionValue("host") : HubServer.DEFAULT_HOST)
+      .setPort(port)
+      .setThreads(threads)
+      .build();
+    server.start();
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+        try {
+          server.close();
+        } catch (IOException e) {
+          LOG.warn("Error stopping the hub server", e);
+        }
+      }
+    });
+  }
+
+  private static FileSystemPublisher getFileSystemPublisher(CommandLine commandLine, File packageDirectory)
+    throws IOException {
+
+    // default to 'v2'
+    String version = commandLine.hasOption("v") ? commandLine.getOptionValue("v") : "v2";
+    File targetDir = new File(commandLine.getOptionValue('o'), version).getCanonicalFile();
+    // anything in the target directory that is not part of the hub is deleted, so it can't contain the packages
+    if (packageDirectory.getCanonicalFile().toPath().startsWith(targetDir.toPath())) {
+      LOG.error("Output directory '{}' must not contain the package directory '{}'.", targetDir, packageDirectory);
+      System.exit(1);
+    }
+
+    return FileSystemPublisher.builder(targetDir)
+      .setLink(commandLine.hasOption('l'))
+      .setForcePush(commandLine.hasOption('f'))
+      .setDryRun(commandLine.hasOption('y'))
+      .build();
   }
 
-  private static S3Publisher getPublisher(CommandLine commandLine, Set<String> whitelist) {
+  private static S3Publisher getPublisher(CommandLine commandLine, Set<String> whitelist, DigestCache digestCache,
+                                          Metrics metrics, File journalFile,
+                                          long multipartThreshold, long multipartPartSize) {
 
     if (!commandLine.hasOption("s3b")) {
       LOG.error("Must specify a bucket when publishing.");
@@ -202,22 +436,49 @@ public class Tool {
     S3Publisher.Builder builder = S3Publisher.builder(bucket, s3AccessKey, s3SecretKey)
       .setForcePush(commandLine.hasOption('f'))
       .setDryRun(commandLine.hasOption('y'))
-      .setWhitelist(whitelist);
+      .setWhitelist(whitelist)
+      .setMultipartThreshold(multipartThreshold)
+      .setMultipartPartSize(multipartPartSize)
+      .setDigestCache(digestCache)
+      .setMetrics(metrics)
+      .setJournalFile(journalFile);
 
     // default to 'v2'
     String version = commandLine.hasOption("v") ? commandLine.getOptionValue("v") : "v2";
 
-    if (commandLine.hasOption("s3p")) {
-      String prefix = commandLine.getOptionValue("s3p");
-      builder.setPrefix(prefix.endsWith("/") || prefix.isEmpty() ? prefix + version : prefix + "/" + version);
-    } else {
-      builder.setPrefix(version);
+    builder.setPrefix(getS3Prefix(commandLine, version));
+
+    if (commandLine.hasOption("s3e")) {
+      builder.setEndpoint(commandLine.getOptionValue("s3e"));
+    }
+
+    if (commandLine.hasOption("s3v")) {
+      Set<String> copySourcePrefixes = new LinkedHashSet<>();
+      for (String copyVersion : Splitter.on(',').trimResults().omitEmptyStrings()
+        .split(commandLine.getOptionValue("s3v"))) {
+        if (!copyVersion.equals(version)) {
+          copySourcePrefixes.add(getS3Prefix(commandLine, copyVersion));
+        }
+      }
+      builder.setCopySourcePrefixes(copySourcePrefixes);
     }
 
     if (commandLine.hasOption("s3t")) {
       builder.setTimeout(Integer.parseInt(commandLine.getOptionValue("s3t")));
     }
 
+    if (commandLine.hasOption("s3c")) {
+      builder.setUploadThreads(Integer.parseInt(commandLine.getOptionValue("s3c")));
+    }
+
+    if (commandLine.hasOption("s3i")) {
+      builder.setConcurrency(Integer.parseInt(commandLine.getOptionValue("s3i")));
+    }
+
+    if (commandLine.hasOption("s3r")) {
+      builder.setMaxRetries(Integer.parseInt(commandLine.getOptionValue("s3r")));
+    }
+
     if (commandLine.hasOption("cfa")) {
       builder.setCloudfrontAccessKey(commandLine.getOptionValue("cfa"));
     }
@@ -233,6 +494,15 @@ public class Tool {
     return builder.build();
   }
 
+  // returns the prefix of all objects of the given hub version in s3
+  private static String getS3Prefix(CommandLine commandLine, String version) {
+    if (!commandLine.hasOption("s3p")) {
+      return version;
+    }
+    String prefix = commandLine.getOptionValue("s3p");
+    return prefix.endsWith("/") || prefix.isEmpty() ? prefix + version : prefix + "/" + version;
+  }
+
   private static Set<String> parseWhitelist(String whitelistStr) {
     Set<String> whitelist = new LinkedHashSet<>();
     for (String packageStr : Splitter.on(',').trimResults().split(whitelistStr)) {
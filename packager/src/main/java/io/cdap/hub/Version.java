@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * A version made up of numeric parts separated by '.', with an optional suffix after a '-', like '6.1.0-SNAPSHOT'.
+ *
+ * Versions are ordered by their numeric parts, with missing parts treated as 0. If the numeric parts are the same,
+ * a version with a suffix comes before the version without one, so '6.1.0-SNAPSHOT' comes before '6.1.0'.
+ * Suffixes are compared as strings.
+ */
+public final class Version implements Comparable<Version> {
+  private static final Pattern PATTERN = Pattern.compile("(\\d+(?:\\.\\d+)*)(?:-(.+))?");
+  private final String version;
+  private final int[] parts;
+  @Nullable
+  private final String suffix;
+
+  private Version(String version, int[] parts, @Nullable String suffix) {
+    this.version = version;
+    this.parts = parts;
+    this.suffix = suffix;
+  }
+
+  /**
+   * Parses a version.
+   *
+   * @throws IllegalArgumentException if the string is not a valid version
+   */
+  public static Version parse(String version) {
+    String trimmed = version.trim();
+    Matcher matcher = PATTERN.matcher(trimmed);
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException(String.format("'%s' is not a valid version.", version));
+    }
+    String[] numbers = matcher.group(1).split("\\.");
+    int[] parts = new int[numbers.length];
+    for (int i = 0; i < numbers.length; i++) {
+      try {
+        parts[i] = Integer.parseInt(numbers[i]);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format("'%s' is not a valid version.", version), e);
+      }
+    }
+    return new Version(trimmed, parts, matcher.group(2));
+  }
+
+  /**
+   * Returns the numeric part at the given index, or 0 if the version does not have that many parts.
+   */
+  public int getPart(int index) {
+    return index < parts.length ? parts[index] : 0;
+  }
+
+  public int getMajor() {
+    return getPart(0);
+  }
+
+  public int getMinor() {
+    return getPart(1);
+  }
+
+  @Nullable
+  public String getSuffix() {
+    return suffix;
+  }
+
+  /**
+   * Returns whether this is a release version, without a suffix like 'SNAPSHOT'.
+   */
+  public boolean isRelease() {
+    return suffix == null;
+  }
+
+  @Override
+  public int compareTo(Version other) {
+    int numParts = Math.max(parts.length, other.parts.length);
+    for (int i = 0; i < numParts; i++) {
+      int result = Integer.compare(getPart(i), other.getPart(i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    if (suffix == null || other.suffix == null) {
+      return suffix == null ? (other.suffix == null ? 0 : 1) : -1;
+    }
+    return suffix.compareTo(other.suffix);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    Version that = (Version) o;
+    return compareTo(that) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    // trailing zeros don't change the version, so they can't change the hash code
+    int length = parts.length;
+    while (length > 0 && parts[length - 1] == 0) {
+      length--;
+    }
+    return Objects.hash(Arrays.hashCode(Arrays.copyOf(parts, length)), suffix);
+  }
+
+  @Override
+  public String toString() {
+    return version;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import java.util.Objects;
+
+/**
+ * A range of versions, like the 'cdapVersion' of a package spec. Ranges use interval notation, where '[' and ']'
+ * include the version next to them and '(' and ')' exclude it, as in '[6.1.0-SNAPSHOT,7.0.0-SNAPSHOT)'.
+ * Whitespace around the versions is ignored. A single version is the range that only contains that version.
+ */
+public final class VersionRange {
+  private final Version lower;
+  private final boolean lowerInclusive;
+  private final Version upper;
+  private final boolean upperInclusive;
+
+  public VersionRange(Version lower, boolean lowerInclusive, Version upper, boolean upperInclusive) {
+    this.lower = lower;
+    this.lowerInclusive = lowerInclusive;
+    this.upper = upper;
+    this.upperInclusive = upperInclusive;
+  }
+
+  /**
+   * Parses a version range.
+   *
+   * @throws IllegalArgumentException if the string is not a valid version range
+   */
+  public static VersionRange parse(String range) {
+    String trimmed = range.trim();
+    if (trimmed.isEmpty()) {
+      throw new IllegalArgumentException("A version range cannot be empty.");
+    }
+    char first = trimmed.charAt(0);
+    if (first != '[' && first != '(') {
+      Version version = Version.parse(trimmed);
+      return new VersionRange(version, true, version, true);
+    }
+    char last = trimmed.charAt(trimmed.length() - 1);
+    int comma = trimmed.indexOf(',');
+    if ((last != ']' && last != ')') || comma < 0 || comma != trimmed.lastIndexOf(',')) {
+      throw new IllegalArgumentException(
+        String.format("'%s' is not a valid version range. It must be like '[6.1.0,7.0.0)'.", range));
+    }
+    return new VersionRange(Version.parse(trimmed.substring(1, comma)), first == '[',
+                            Version.parse(trimmed.substring(comma + 1, trimmed.length() - 1)), last == ']');
+  }
+
+  public Version getLower() {
+    return lower;
+  }
+
+  public boolean isLowerInclusive() {
+    return lowerInclusive;
+  }
+
+  public Version getUpper() {
+    return upper;
+  }
+
+  public boolean isUpperInclusive() {
+    return upperInclusive;
+  }
+
+  /**
+   * Returns whether the version is in this range.
+   */
+  public boolean contains(Version version) {
+    return isAboveLower(version) && isBelowUpper(version);
+  }
+
+  /**
+   * Returns whether the version is above the lower end of this range, or equal to it if the lower end is inclusive.
+   */
+  public boolean isAboveLower(Version version) {
+    int result = version.compareTo(lower);
+    return lowerInclusive ? result >= 0 : result > 0;
+  }
+
+  /**
+   * Returns whether the version is below the upper end of this range, or equal to it if the upper end is inclusive.
+   */
+  public boolean isBelowUpper(Version version) {
+    int result = version.compareTo(upper);
+    return upperInclusive ? result <= 0 : result < 0;
+  }
+
+  /**
+   * Returns whether no version can be in this range, like '[6.0.0,6.0.0-SNAPSHOT)'.
+   */
+  public boolean isEmpty() {
+    int result = lower.compareTo(upper);
+    return result > 0 || (result == 0 && !(lowerInclusive && upperInclusive));
+  }
+
+  /**
+   * Returns whether any version can be in both this range and the other range.
+   */
+  public boolean intersects(VersionRange other) {
+    int lowerResult = lower.compareTo(other.lower);
+    Version maxLower = lowerResult >= 0 ? lower : other.lower;
+    boolean maxLowerInclusive = lowerResult > 0 ? lowerInclusive :
+      lowerResult < 0 ? other.lowerInclusive : lowerInclusive && other.lowerInclusive;
+    int upperResult = upper.compareTo(other.upper);
+    Version minUpper = upperResult <= 0 ? upper : other.upper;
+    boolean minUpperInclusive = upperResult < 0 ? upperInclusive :
+      upperResult > 0 ? other.upperInclusive : upperInclusive && other.upperInclusive;
+    return !new VersionRange(maxLower, maxLowerInclusive, minUpper, minUpperInclusive).isEmpty();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    VersionRange that = (VersionRange) o;
+    return lowerInclusive == that.lowerInclusive && upperInclusive == that.upperInclusive &&
+      lower.equals(that.lower) && upper.equals(that.upper);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(lower, lowerInclusive, upper, upperInclusive);
+  }
+
+  @Override
+  public String toString() {
+    return (lowerInclusive ? "[" : "(") + lower + "," + upper + (upperInclusive ? "]" : ")");
+  }
+}
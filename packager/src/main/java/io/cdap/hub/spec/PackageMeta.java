@@ -86,6 +86,10 @@ public class PackageMeta {
     return author;
   }
 
+  public String getCdapVersion() {
+    return cdapVersion;
+  }
+
   public String getLicense() {
     return license;
   }
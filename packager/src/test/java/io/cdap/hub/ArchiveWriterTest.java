@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Tests for {@link ArchiveWriter}.
+ */
+public class ArchiveWriterTest {
+  private static final long TIME = 1500000000000L;
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private List<File> files;
+  // the expected contents of each entry, in the order of the archive. Directories have no contents.
+  private Map<String, byte[]> expected;
+
+  @Before
+  public void setup() throws IOException {
+    File packageDir = tmpFolder.newFolder("package");
+    Random random = new Random(0);
+    expected = new LinkedHashMap<>();
+    File docs = new File(packageDir, "docs");
+    File images = new File(docs, "images");
+    Assert.assertTrue(images.mkdirs());
+
+    // entries below and above the size that is compressed in memory, both compressible and not
+    byte[] small = text(random, 1000);
+    byte[] large = text(random, 200 * 1024);
+    byte[] smallRandom = bytes(random, 4096);
+    byte[] largeRandom = bytes(random, 300 * 1024);
+    write(new File(packageDir, "b.json"), small);
+    write(new File(packageDir, "a.jar"), largeRandom);
+    write(new File(docs, "readme.txt"), large);
+    write(new File(images, "icon.png"), smallRandom);
+    write(new File(docs, "empty.txt"), new byte[0]);
+
+    files = ImmutableList.of(new File(packageDir, "a.jar"), new File(packageDir, "b.json"), docs);
+    expected.put("a.jar", largeRandom);
+    expected.put("b.json", small);
+    expected.put("docs/", null);
+    expected.put("docs/empty.txt", new byte[0]);
+    expected.put("docs/images/", null);
+    expected.put("docs/images/icon.png", smallRandom);
+    expected.put("docs/readme.txt", large);
+  }
+
+  @Test
+  public void testDeflate() throws IOException {
+    File serial = write(new ArchiveWriter(1, false), "serial.zip");
+    File parallel = write(new ArchiveWriter(4, false), "parallel.zip");
+    Assert.assertArrayEquals(Files.readAllBytes(serial.toPath()), Files.readAllBytes(parallel.toPath()));
+    assertEntries(parallel, false);
+  }
+
+  @Test
+  public void testStoreCompressedFiles() throws IOException {
+    File serial = write(new ArchiveWriter(1, true), "serial.zip");
+    File parallel = write(new ArchiveWriter(4, true), "parallel.zip");
+    Assert.assertArrayEquals(Files.readAllBytes(serial.toPath()), Files.readAllBytes(parallel.toPath()));
+    assertEntries(parallel, true);
+  }
+
+  @Test
+  public void testReplaceArchive() throws IOException {
+    File archive = write(new ArchiveWriter(4, false), "archive.zip");
+    Object fileKey = Files.readAttributes(archive.toPath(), "fileKey").get("fileKey");
+    write(new ArchiveWriter(4, false), "archive.zip");
+    // the archive is replaced instead of being written in place, and no temporary file is left behind
+    Assert.assertNotEquals(fileKey, Files.readAttributes(archive.toPath(), "fileKey").get("fileKey"));
+    Assert.assertFalse(AtomicFiles.getTempFile(archive).exists());
+    assertEntries(archive, false);
+  }
+
+  private File write(ArchiveWriter writer, String name) throws IOException {
+    File archive = new File(tmpFolder.getRoot(), name);
+    writer.write(archive, files, TIME);
+    return archive;
+  }
+
+  // checks the archive with both the central directory and the local headers
+  private void assertEntries(File archive, boolean storeCompressedFiles) throws IOException {
+    List<String> names = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(archive)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        names.add(entry.getName());
+        assertEntry(entry, storeCompressedFiles);
+        if (!entry.isDirectory()) {
+          try (InputStream is = zipFile.getInputStream(entry)) {
+            Assert.assertArrayEquals(entry.getName(), expected.get(entry.getName()), ByteStreams.toByteArray(is));
+          }
+        }
+      }
+    }
+    Assert.assertEquals(new ArrayList<>(expected.keySet()), names);
+
+    names.clear();
+    try (ZipInputStream zis = new ZipInputStream(new FileInputStream(archive))) {
+      for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+        names.add(entry.getName());
+        assertEntry(entry, storeCompressedFiles);
+        if (!entry.isDirectory()) {
+          Assert.assertArrayEquals(entry.getName(), expected.get(entry.getName()), ByteStreams.toByteArray(zis));
+        }
+      }
+    }
+    Assert.assertEquals(new ArrayList<>(expected.keySet()), names);
+  }
+
+  private void assertEntry(ZipEntry entry, boolean storeCompressedFiles) {
+    Assert.assertEquals(entry.getName(), TIME, entry.getTime(), 2000);
+    boolean stored = storeCompressedFiles && (entry.getName().endsWith(".jar") || entry.getName().endsWith(".png"));
+    Assert.assertEquals(entry.getName(), stored ? ZipEntry.STORED : ZipEntry.DEFLATED, entry.getMethod());
+  }
+
+  private static void write(File file, byte[] contents) throws IOException {
+    Files.write(file.toPath(), contents);
+  }
+
+  private static byte[] text(Random random, int size) {
+    StringBuilder text = new StringBuilder(size);
+    while (text.length() < size) {
+      text.append("word").append(random.nextInt(100)).append(' ');
+    }
+    return text.substring(0, size).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] bytes(Random random, int size) {
+    byte[] bytes = new byte[size];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+}
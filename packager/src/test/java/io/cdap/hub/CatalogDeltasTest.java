@@ -0,0 +1,276 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.cdap.hub.spec.PackageMeta;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link CatalogDeltas}.
+ */
+public class CatalogDeltasTest {
+  private static final Gson GSON = new Gson();
+  private static final String HEAD_PATH = CatalogDeltas.DELTAS_DIR + "/" + CatalogDeltas.HEAD_NAME;
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private File hubDir;
+  private File publishedDir;
+  private Publisher publisher;
+
+  @Before
+  public void setup() throws IOException {
+    hubDir = tmpFolder.newFolder("hub");
+    publishedDir = tmpFolder.newFolder("published");
+    publisher = new DirectoryPublisher(publishedDir);
+  }
+
+  @Test
+  public void testDeltas() throws IOException {
+    Map<String, File> files = write(hubDir, ImmutableList.of(meta("a", "1.0.0", "a"), meta("b", "1.0.0", "b")), 100);
+    Assert.assertEquals(ImmutableList.of(HEAD_PATH), new ArrayList<>(files.keySet()));
+    assertHead(hubDir, 0, 0, 2);
+
+    files = write(hubDir, ImmutableList.of(meta("a", "1.0.0", "changed"), meta("c", "2.0.0", "c")), 100);
+    Assert.assertEquals(ImmutableList.of(CatalogDeltas.DELTAS_DIR + "/1.json", HEAD_PATH),
+                        new ArrayList<>(files.keySet()));
+    assertHead(hubDir, 1, 0, 2);
+    JsonObject delta = readJson(delta(hubDir, 1));
+    Assert.assertEquals(1, delta.get("sequence").getAsLong());
+    Assert.assertEquals(0, delta.get("previousSequence").getAsLong());
+    Assert.assertEquals(ImmutableList.of("c/2.0.0"), ids(delta.getAsJsonArray("added")));
+    Assert.assertEquals(ImmutableList.of("a/1.0.0"), ids(delta.getAsJsonArray("updated")));
+    Assert.assertEquals("changed",
+                        delta.getAsJsonArray("updated").get(0).getAsJsonObject().get("description").getAsString());
+    Assert.assertEquals(ImmutableList.of("b/1.0.0"), ids(delta.getAsJsonArray("removed")));
+
+    // no delta is written if nothing changed
+    files = write(hubDir, ImmutableList.of(meta("c", "2.0.0", "c"), meta("a", "1.0.0", "changed")), 100);
+    Assert.assertEquals(ImmutableList.of(CatalogDeltas.DELTAS_DIR + "/1.json", HEAD_PATH),
+                        new ArrayList<>(files.keySet()));
+    assertHead(hubDir, 1, 0, 2);
+    Assert.assertFalse(delta(hubDir, 2).exists());
+  }
+
+  @Test
+  public void testRestartWithoutSnapshot() throws IOException {
+    write(hubDir, ImmutableList.of(meta("a", "1.0.0", "a")), 100);
+    write(hubDir, ImmutableList.of(meta("a", "1.0.0", "b")), 100);
+    write(hubDir, ImmutableList.of(meta("a", "1.0.0", "c")), 100);
+    assertHead(hubDir, 2, 0, 1);
+
+    // without the snapshot, the feed moves to the next sequence number, and clients have to download everything
+    Assert.assertTrue(new File(hubDir, CatalogDeltas.DELTAS_DIR + "/snapshot.json").delete());
+    Map<String, File> files = write(hubDir, ImmutableList.of(meta("a", "1.0.0", "d")), 100);
+    Assert.assertEquals(ImmutableList.of(HEAD_PATH), new ArrayList<>(files.keySet()));
+    assertHead(hubDir, 3, 3, 1);
+    Assert.assertFalse(delta(hubDir, 1).exists());
+    Assert.assertFalse(delta(hubDir, 2).exists());
+    Assert.assertFalse(delta(hubDir, 3).exists());
+
+    // the feed continues from the new baseline
+    write(hubDir, ImmutableList.of(meta("a", "1.0.0", "e")), 100);
+    assertHead(hubDir, 4, 3, 1);
+    Assert.assertEquals(3, readJson(delta(hubDir, 4)).get("previousSequence").getAsLong());
+  }
+
+  @Test
+  public void testMaxDeltas() throws IOException {
+    for (int i = 0; i <= 5; i++) {
+      write(hubDir, ImmutableList.of(meta("a", "1.0.0", "description " + i)), 2);
+    }
+    assertHead(hubDir, 5, 3, 1);
+    for (int sequence = 1; sequence <= 3; sequence++) {
+      Assert.assertFalse(delta(hubDir, sequence).exists());
+    }
+    Map<String, File> files = write(hubDir, ImmutableList.of(meta("a", "1.0.0", "description 6")), 2);
+    Assert.assertEquals(ImmutableList.of(CatalogDeltas.DELTAS_DIR + "/5.json", CatalogDeltas.DELTAS_DIR + "/6.json",
+                                         HEAD_PATH),
+                        new ArrayList<>(files.keySet()));
+    assertHead(hubDir, 6, 4, 1);
+    Assert.assertFalse(delta(hubDir, 4).exists());
+  }
+
+  @Test
+  public void testFetchNothingPublished() throws IOException {
+    CatalogDeltas.fetchPublished(hubDir, publisher);
+    Assert.assertFalse(new File(hubDir, HEAD_PATH).exists());
+  }
+
+  @Test
+  public void testFetchPublishedAhead() throws IOException {
+    // the published feed is at delta 2, and the hub directory has none, like on a new CI machine
+    write(publishedDir, ImmutableList.of(meta("a", "1.0.0", "a")), 100);
+    write(publishedDir, ImmutableList.of(meta("a", "1.0.0", "a"), meta("b", "1.0.0", "b")), 100);
+    write(publishedDir, ImmutableList.of(meta("b", "1.0.0", "b")), 100);
+
+    CatalogDeltas.fetchPublished(hubDir, publisher);
+    assertHead(hubDir, 2, 0, 1);
+    Assert.assertArrayEquals(Files.toByteArray(delta(publishedDir, 1)), Files.toByteArray(delta(hubDir, 1)));
+    Assert.assertArrayEquals(Files.toByteArray(delta(publishedDir, 2)), Files.toByteArray(delta(hubDir, 2)));
+
+    // the published catalog is the snapshot, so the next delta only contains what changed since it
+    write(hubDir, ImmutableList.of(meta("b", "1.0.0", "b"), meta("c", "1.0.0", "c")), 100);
+    assertHead(hubDir, 3, 0, 2);
+    JsonObject delta = readJson(delta(hubDir, 3));
+    Assert.assertEquals(ImmutableList.of("c/1.0.0"), ids(delta.getAsJsonArray("added")));
+    Assert.assertEquals(0, delta.getAsJsonArray("updated").size());
+    Assert.assertEquals(0, delta.getAsJsonArray("removed").size());
+  }
+
+  @Test
+  public void testFetchPublishedBehind() throws IOException {
+    write(publishedDir, ImmutableList.of(meta("a", "1.0.0", "a")), 100);
+    write(publishedDir, ImmutableList.of(meta("a", "1.0.0", "b")), 100);
+    for (int i = 0; i < 4; i++) {
+      write(hubDir, ImmutableList.of(meta("a", "1.0.0", "local " + i)), 100);
+    }
+    byte[] head = Files.toByteArray(new File(hubDir, HEAD_PATH));
+
+    // the hub directory is ahead of what was published, so it is kept
+    CatalogDeltas.fetchPublished(hubDir, publisher);
+    Assert.assertArrayEquals(head, Files.toByteArray(new File(hubDir, HEAD_PATH)));
+    write(hubDir, ImmutableList.of(meta("a", "1.0.0", "local 4")), 100);
+    assertHead(hubDir, 4, 0, 1);
+    Assert.assertEquals(ImmutableList.of("a/1.0.0"), ids(readJson(delta(hubDir, 4)).getAsJsonArray("updated")));
+  }
+
+  @Test
+  public void testFetchPublishedCatalogMismatch() throws IOException {
+    write(publishedDir, ImmutableList.of(meta("a", "1.0.0", "a")), 100);
+    write(publishedDir, ImmutableList.of(meta("a", "1.0.0", "b")), 100);
+    // the published catalog was changed after the head was published
+    writeCatalog(publishedDir, ImmutableList.of(meta("a", "1.0.0", "c")));
+    write(hubDir, ImmutableList.of(meta("a", "1.0.0", "local")), 100);
+
+    CatalogDeltas.fetchPublished(hubDir, publisher);
+    assertHead(hubDir, 1, 0, 1);
+
+    // the head is published, but without a snapshot to compare against the feed starts over after it
+    write(hubDir, ImmutableList.of(meta("a", "1.0.0", "c")), 100);
+    assertHead(hubDir, 2, 2, 1);
+    Assert.assertFalse(delta(hubDir, 2).exists());
+  }
+
+  @Test
+  public void testFetchPublishedMissingDelta() throws IOException {
+    write(hubDir, ImmutableList.of(meta("a", "1.0.0", "a")), 100);
+    write(hubDir, ImmutableList.of(meta("a", "1.0.0", "local")), 100);
+    Assert.assertTrue(delta(hubDir, 1).isFile());
+
+    write(publishedDir, ImmutableList.of(meta("a", "1.0.0", "a")), 100);
+    write(publishedDir, ImmutableList.of(meta("a", "1.0.0", "b")), 100);
+    write(publishedDir, ImmutableList.of(meta("a", "1.0.0", "c")), 100);
+    Assert.assertTrue(delta(publishedDir, 1).delete());
+
+    // the local delta 1 is not the published one, so it must not be kept
+    CatalogDeltas.fetchPublished(hubDir, publisher);
+    assertHead(hubDir, 2, 0, 1);
+    Assert.assertFalse(delta(hubDir, 1).exists());
+    Assert.assertArrayEquals(Files.toByteArray(delta(publishedDir, 2)), Files.toByteArray(delta(hubDir, 2)));
+
+    Map<String, File> files = write(hubDir, ImmutableList.of(meta("a", "1.0.0", "d")), 100);
+    Assert.assertEquals(ImmutableList.of(CatalogDeltas.DELTAS_DIR + "/2.json", CatalogDeltas.DELTAS_DIR + "/3.json",
+                                         HEAD_PATH),
+                        new ArrayList<>(files.keySet()));
+  }
+
+  private static Map<String, File> write(File baseDir, List<PackageMeta> catalog, int maxDeltas) throws IOException {
+    return CatalogDeltas.write(baseDir, writeCatalog(baseDir, catalog), catalog, maxDeltas);
+  }
+
+  private static File writeCatalog(File baseDir, List<PackageMeta> catalog) throws IOException {
+    File catalogFile = new File(baseDir, Packager.PACKAGE_CATALOG_NAME);
+    Files.write(GSON.toJson(catalog), catalogFile, StandardCharsets.UTF_8);
+    return catalogFile;
+  }
+
+  private static void assertHead(File baseDir, long sequence, long oldestSequence, int packages) throws IOException {
+    JsonObject head = readJson(new File(baseDir, HEAD_PATH));
+    Assert.assertEquals(sequence, head.get("sequence").getAsLong());
+    Assert.assertEquals(oldestSequence, head.get("oldestSequence").getAsLong());
+    Assert.assertEquals(packages, head.get("packages").getAsInt());
+  }
+
+  private static File delta(File baseDir, long sequence) {
+    return new File(baseDir, CatalogDeltas.DELTAS_DIR + "/" + sequence + ".json");
+  }
+
+  private static JsonObject readJson(File file) throws IOException {
+    return new JsonParser().parse(Files.toString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+  }
+
+  private static List<String> ids(JsonArray packages) {
+    List<String> ids = new ArrayList<>();
+    for (JsonElement element : packages) {
+      JsonObject pkg = element.getAsJsonObject();
+      ids.add(pkg.get("name").getAsString() + "/" + pkg.get("version").getAsString());
+    }
+    return ids;
+  }
+
+  private static PackageMeta meta(String name, String version, String description) {
+    return new PackageMeta(name, version, description, name, "Cask", "Cask", "[6.0.0,7.0.0-SNAPSHOT)", null, null, 0L,
+                           false, ImmutableSet.of("pipeline"), false, null);
+  }
+
+  /**
+   * A publisher whose published hub is a local directory.
+   */
+  private static class DirectoryPublisher implements Publisher {
+    private final File dir;
+
+    private DirectoryPublisher(File dir) {
+      this.dir = dir;
+    }
+
+    @Override
+    public void publish(Hub hub) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean fetch(String path, File file) throws IOException {
+      File published = new File(dir, path);
+      if (!published.isFile()) {
+        return false;
+      }
+      Files.copy(published, file);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.hub.spec.PackageMeta;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Tests for {@link CatalogIndex}.
+ */
+public class CatalogIndexTest {
+  private static final CatalogIndex INDEX = CatalogIndex.build(ImmutableList.of(
+    meta("csv-parser", "[6.0.0,7.0.0-SNAPSHOT)", "pipeline", "Parses CSV files"),
+    meta("old-csv-parser", "[4.0.0,4.3.0)", "pipeline", "Parses old CSV files"),
+    meta("snapshot-sink", "[6.5.0-SNAPSHOT,6.6.0-SNAPSHOT)", "pipeline", "Writes to a sink"),
+    meta("exact-usecase", "6.5.1", "usecase", "An exact usecase"),
+    meta("exclusive-lower", "(6.5.0,6.6.0]", "usecase", "Excludes its lower version"),
+    meta("empty-range", "[6.0.0,6.0.0-SNAPSHOT)", "usecase", "Never compatible"),
+    meta("invalid-range", "6.x", "usecase", "Not indexed by version"),
+    meta("no-range", null, "usecase", "No CDAP version")));
+
+  @Test
+  public void testCompatible() {
+    assertCompatible("6.5.0", "csv-parser", "snapshot-sink");
+    assertCompatible("6.5.1", "csv-parser", "snapshot-sink", "exact-usecase", "exclusive-lower");
+    assertCompatible("6.5.0-SNAPSHOT", "csv-parser", "snapshot-sink");
+    assertCompatible("6.6.0-SNAPSHOT", "csv-parser", "exclusive-lower");
+    assertCompatible("6.6.0", "csv-parser", "exclusive-lower");
+    assertCompatible("6.9.9", "csv-parser");
+    assertCompatible("7.0.0-SNAPSHOT");
+    assertCompatible("4.2.1", "old-csv-parser");
+    assertCompatible("4.3.0");
+    assertCompatible("3.0.0");
+    assertCompatible("6.0.0", "csv-parser");
+  }
+
+  @Test
+  public void testSearch() {
+    Assert.assertEquals(ImmutableList.of("csv-parser", "old-csv-parser"),
+                        names(INDEX.search(CatalogIndex.query().setText("csv"))));
+    Assert.assertEquals(ImmutableList.of("old-csv-parser"),
+                        names(INDEX.search(CatalogIndex.query().setText("Parses old"))));
+    Assert.assertEquals(ImmutableList.of("csv-parser"),
+                        names(INDEX.search(CatalogIndex.query().setText("csv").setCategory("Pipeline")
+                                             .setCdapVersion(Version.parse("6.1.0")))));
+    Assert.assertEquals(ImmutableList.of("exact-usecase", "exclusive-lower", "empty-range", "invalid-range",
+                                         "no-range"),
+                        names(INDEX.search(CatalogIndex.query().setCategory("usecase"))));
+    Assert.assertEquals(8, INDEX.search(CatalogIndex.query()).size());
+  }
+
+  private static void assertCompatible(String cdapVersion, String... expected) {
+    List<PackageMeta> results = INDEX.search(CatalogIndex.query().setCdapVersion(Version.parse(cdapVersion)));
+    Assert.assertEquals("Packages compatible with " + cdapVersion, ImmutableList.copyOf(expected), names(results));
+  }
+
+  private static List<String> names(List<PackageMeta> packages) {
+    List<String> names = new ArrayList<>();
+    for (PackageMeta meta : packages) {
+      names.add(meta.getName());
+    }
+    return names;
+  }
+
+  private static PackageMeta meta(String name, @Nullable String cdapVersion, String category, String description) {
+    return new PackageMeta(name, "1.0.0", description, name, "Cask", "Cask", cdapVersion, null, null, 0L, false,
+                           ImmutableSet.of(category), false, null);
+  }
+}
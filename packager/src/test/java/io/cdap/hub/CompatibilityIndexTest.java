@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.hub.spec.PackageMeta;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link CompatibilityIndex}.
+ */
+public class CompatibilityIndexTest {
+
+  @Test
+  public void testRangesToNextMajorVersion() {
+    List<Package> packages = ImmutableList.of(pkg("a", "[6.0.0,7.0.0-SNAPSHOT)"), pkg("b", "[6.5.0,6.5.1]"));
+    Assert.assertEquals(minors("6.", 0, 10),
+                        keys(CompatibilityIndex.getMinorVersions(packages, Version.parse("6.10.0"))));
+    Assert.assertEquals(minors("6.", 0, 7),
+                        keys(CompatibilityIndex.getMinorVersions(packages, Version.parse("6.7.2"))));
+    // the latest version does not hide minor versions that packages name
+    Assert.assertEquals(minors("6.", 0, 5),
+                        keys(CompatibilityIndex.getMinorVersions(packages, Version.parse("6.2.0"))));
+  }
+
+  @Test
+  public void testPastMajorVersions() {
+    List<Package> packages = ImmutableList.of(pkg("a", "[4.2.0,6.0.0-SNAPSHOT)"), pkg("b", "[4.0.0,4.0.0]"));
+    // nothing is compatible with 4.1
+    List<String> expected = new ArrayList<>(minors("4.", 0, 0));
+    expected.addAll(minors("4.", 2, 3));
+    expected.addAll(minors("5.", 0, 1));
+    Assert.assertEquals(expected, keys(CompatibilityIndex.getMinorVersions(packages, Version.parse("6.10.0"))));
+  }
+
+  @Test
+  public void testNoEmptyMinorVersions() {
+    List<Package> packages = ImmutableList.of(pkg("a", "[6.6.0,7.0.0-SNAPSHOT)"), pkg("b", "[6.0.0,6.0.0-SNAPSHOT)"),
+                                              pkg("c", "[6.1.0,6.2.0-SNAPSHOT)"));
+    List<String> expected = new ArrayList<>(minors("6.", 1, 1));
+    expected.addAll(minors("6.", 6, 8));
+    Assert.assertEquals(expected, keys(CompatibilityIndex.getMinorVersions(packages, Version.parse("6.8.0"))));
+    Assert.assertEquals(Collections.emptyList(),
+                        keys(CompatibilityIndex.getMinorVersions(ImmutableList.of(pkg("b", "[6.0.0,6.0.0-SNAPSHOT)")),
+                                                                 Version.parse("6.8.0"))));
+  }
+
+  @Test
+  public void testSnapshotsAreCompatible() {
+    List<Package> packages = ImmutableList.of(pkg("a", "[6.3.0-SNAPSHOT,6.4.0-SNAPSHOT)"));
+    Assert.assertEquals(ImmutableList.of("6.3"),
+                        keys(CompatibilityIndex.getMinorVersions(packages, Version.parse("6.10.0"))));
+  }
+
+  private static List<String> keys(Map<String, VersionRange> minorVersions) {
+    return new ArrayList<>(minorVersions.keySet());
+  }
+
+  private static List<String> minors(String prefix, int lowest, int highest) {
+    List<String> minors = new ArrayList<>();
+    for (int minor = lowest; minor <= highest; minor++) {
+      minors.add(prefix + minor);
+    }
+    return minors;
+  }
+
+  private static Package pkg(String name, String cdapVersion) {
+    PackageMeta meta = new PackageMeta(name, "1.0.0", name, name, "Cask", "Cask", cdapVersion, null, null, 0L, false,
+                                       ImmutableSet.of("pipeline"), false, null);
+    return new Package(name, "1.0.0", meta, null, null, null, null, Collections.emptyList());
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link FileSystemPublisher}.
+ */
+public class FileSystemPublisherTest {
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private File hubDir;
+  private File targetDir;
+  private Hub hub;
+
+  @Before
+  public void setup() throws Exception {
+    hubDir = tmpFolder.newFolder("hub");
+    targetDir = new File(tmpFolder.newFolder("www"), "v2");
+    SyntheticHub.builder(hubDir).setPackages(2).setVersions(2).setJarSize(4096).build().generate();
+    hub = Packager.builder(hubDir).build().build();
+  }
+
+  @Test
+  public void testMirror() throws Exception {
+    FileSystemPublisher.builder(targetDir).build().publish(hub);
+    for (Package pkg : hub.getPackages()) {
+      String dir = String.format("packages/%s/%s/", pkg.getName(), pkg.getVersion());
+      assertCopied(pkg.getSpec().getFile(), dir);
+      assertCopied(pkg.getSpecGzip(), dir);
+      for (SignedFile file : pkg.getFiles()) {
+        assertCopied(file.getFile(), dir);
+      }
+    }
+    assertCopied(hub.getPackageCatalog(), "");
+    assertCopied(hub.getCategoryCatalog(), "");
+    for (String path : hub.getCatalogShards().keySet()) {
+      assertCopied(hub.getCatalogShards().get(path), path.substring(0, path.lastIndexOf('/') + 1));
+    }
+    Assert.assertTrue(new File(targetDir, CatalogDeltas.DELTAS_DIR + "/" + CatalogDeltas.HEAD_NAME).isFile());
+  }
+
+  @Test
+  public void testSkipUnchanged() throws Exception {
+    FileSystemPublisher.builder(targetDir).build().publish(hub);
+    Path target = new File(targetDir, Packager.PACKAGE_CATALOG_NAME).toPath();
+    Object fileKey = getFileKey(target);
+
+    // a file with the same size and modified time is not copied again, even if its contents are different
+    FileTime modified = Files.getLastModifiedTime(target);
+    byte[] contents = Files.readAllBytes(target);
+    byte[] changed = contents.clone();
+    changed[0] = ' ';
+    Files.write(target, changed);
+    Files.setLastModifiedTime(target, modified);
+    FileSystemPublisher.builder(targetDir).build().publish(hub);
+    Assert.assertArrayEquals(changed, Files.readAllBytes(target));
+    Assert.assertEquals(fileKey, getFileKey(target));
+
+    // unless it is forced
+    FileSystemPublisher.builder(targetDir).setForcePush(true).build().publish(hub);
+    Assert.assertArrayEquals(contents, Files.readAllBytes(target));
+  }
+
+  @Test
+  public void testSameContentsDifferentModifiedTime() throws Exception {
+    FileSystemPublisher.builder(targetDir).build().publish(hub);
+    Path source = hub.getPackageCatalog().toPath();
+    Path target = new File(targetDir, Packager.PACKAGE_CATALOG_NAME).toPath();
+    Object fileKey = getFileKey(target);
+
+    // the file is not copied again, only its modified time is updated
+    FileTime modified = FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() - 60000);
+    Files.setLastModifiedTime(source, modified);
+    FileSystemPublisher.builder(targetDir).build().publish(hub);
+    Assert.assertEquals(fileKey, getFileKey(target));
+    Assert.assertEquals(modified, Files.getLastModifiedTime(target));
+
+    // if the contents are different, it is copied again
+    byte[] changed = Files.readAllBytes(source);
+    changed[0] = ' ';
+    Files.write(source, changed);
+    FileSystemPublisher.builder(targetDir).build().publish(hub);
+    Assert.assertArrayEquals(changed, Files.readAllBytes(target));
+    Assert.assertNotEquals(fileKey, getFileKey(target));
+  }
+
+  @Test
+  public void testDeleteUnpublished() throws Exception {
+    File stale = new File(targetDir, "packages/old/1.0.0/old.jar");
+    Assert.assertTrue(stale.getParentFile().mkdirs());
+    Files.write(stale.toPath(), new byte[] { 1, 2, 3 });
+    File staleCatalog = new File(targetDir, "old.json");
+    Files.write(staleCatalog.toPath(), new byte[] { 1 });
+
+    FileSystemPublisher.builder(targetDir).setDryRun(true).build().publish(hub);
+    Assert.assertTrue(stale.isFile());
+    Assert.assertTrue(staleCatalog.isFile());
+    Assert.assertFalse(new File(targetDir, Packager.PACKAGE_CATALOG_NAME).exists());
+
+    FileSystemPublisher.builder(targetDir).build().publish(hub);
+    Assert.assertFalse(stale.exists());
+    Assert.assertFalse(new File(targetDir, "packages/old").exists());
+    Assert.assertFalse(staleCatalog.exists());
+    Assert.assertTrue(new File(targetDir, Packager.PACKAGE_CATALOG_NAME).isFile());
+  }
+
+  @Test
+  public void testLink() throws Exception {
+    FileSystemPublisher.builder(targetDir).setLink(true).build().publish(hub);
+    Path source = hub.getPackageCatalog().toPath();
+    Path target = new File(targetDir, Packager.PACKAGE_CATALOG_NAME).toPath();
+    Assume.assumeTrue("Hard links are not supported", Files.isSameFile(source, target));
+    byte[] published = Files.readAllBytes(target);
+
+    // an incremental build replaces files instead of changing the linked files in place
+    hub = Packager.builder(hubDir).setIncremental(true).setCompactCatalogs(true).build().build();
+    Assert.assertFalse(Files.isSameFile(source, target));
+    Assert.assertArrayEquals(published, Files.readAllBytes(target));
+    Assert.assertFalse(Arrays.equals(published, Files.readAllBytes(source)));
+
+    FileSystemPublisher.builder(targetDir).setLink(true).build().publish(hub);
+    Assert.assertTrue(Files.isSameFile(source, target));
+  }
+
+  @Test
+  public void testLinkFallsBackToCopy() throws Exception {
+    // a target directory on another filesystem can't have hard links to the hub directory
+    File otherFileSystem = new File("/dev/shm");
+    Assume.assumeTrue(otherFileSystem.isDirectory() && otherFileSystem.canWrite() &&
+                        !Files.getFileStore(otherFileSystem.toPath()).equals(Files.getFileStore(hubDir.toPath())));
+    TemporaryFolder otherFolder = new TemporaryFolder(otherFileSystem);
+    otherFolder.create();
+    try {
+      File otherTarget = new File(otherFolder.getRoot(), "v2");
+      FileSystemPublisher.builder(otherTarget).setLink(true).build().publish(hub);
+      Path source = hub.getPackageCatalog().toPath();
+      Path target = new File(otherTarget, Packager.PACKAGE_CATALOG_NAME).toPath();
+      Assert.assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+      Assert.assertEquals(Files.getLastModifiedTime(source), Files.getLastModifiedTime(target));
+    } finally {
+      otherFolder.delete();
+    }
+  }
+
+  private void assertCopied(File source, String dir) throws IOException {
+    Path target = new File(targetDir, dir + source.getName()).toPath();
+    Assert.assertTrue("Missing " + target, Files.isRegularFile(target));
+    Assert.assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target));
+    Assert.assertEquals(Files.getLastModifiedTime(source.toPath()), Files.getLastModifiedTime(target));
+    Assert.assertFalse(Files.isSameFile(source.toPath(), target));
+  }
+
+  private static Object getFileKey(Path path) throws IOException {
+    return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+  }
+}
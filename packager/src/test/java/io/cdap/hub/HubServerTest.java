@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link HubServer}, over a real socket.
+ */
+public class HubServerTest {
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private File hubDir;
+  private File versionDir;
+  private HubServer server;
+
+  @Before
+  public void setup() throws Exception {
+    hubDir = tmpFolder.newFolder("hub");
+    versionDir = SyntheticHub.builder(hubDir).setPackages(2).setVersions(1).setJarSize(4096).build().generate().get(0);
+    Packager.builder(hubDir).build().build();
+    // files in the directory that are not part of the hub
+    Files.write(new File(hubDir, "pom.xml").toPath(), "<project/>".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(hubDir, ".secret").toPath(), "secret".getBytes(StandardCharsets.UTF_8));
+    server = HubServer.builder(hubDir).setPort(0).setThreads(2).build();
+    server.start();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  public void testGet() throws IOException {
+    byte[] catalog = Files.readAllBytes(new File(hubDir, Packager.PACKAGE_CATALOG_NAME).toPath());
+    try (Socket socket = connect()) {
+      Response response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME);
+      Assert.assertEquals(200, response.status);
+      Assert.assertArrayEquals(catalog, response.body);
+      Assert.assertEquals("bytes", response.headers.get("accept-ranges"));
+      Assert.assertNotNull(response.headers.get("etag"));
+      Assert.assertNull(response.headers.get("content-encoding"));
+
+      response = send(socket, "HEAD", "/" + Packager.PACKAGE_CATALOG_NAME);
+      Assert.assertEquals(200, response.status);
+      Assert.assertEquals(String.valueOf(catalog.length), response.headers.get("content-length"));
+      Assert.assertEquals(0, response.body.length);
+    }
+  }
+
+  @Test
+  public void testNotModified() throws IOException {
+    try (Socket socket = connect()) {
+      Response response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME);
+      String eTag = response.headers.get("etag");
+      response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME, "If-None-Match: " + eTag);
+      Assert.assertEquals(304, response.status);
+      Assert.assertEquals(eTag, response.headers.get("etag"));
+      Assert.assertEquals(0, response.body.length);
+
+      response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME, "If-None-Match: \"other\"");
+      Assert.assertEquals(200, response.status);
+    }
+  }
+
+  @Test
+  public void testRange() throws IOException {
+    byte[] catalog = Files.readAllBytes(new File(hubDir, Packager.PACKAGE_CATALOG_NAME).toPath());
+    try (Socket socket = connect()) {
+      // byte ranges are served from the original file, even if gzip is accepted
+      Response response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME,
+                               "Range: bytes=10-19", "Accept-Encoding: gzip");
+      Assert.assertEquals(206, response.status);
+      Assert.assertEquals("bytes 10-19/" + catalog.length, response.headers.get("content-range"));
+      Assert.assertArrayEquals(Arrays.copyOfRange(catalog, 10, 20), response.body);
+      Assert.assertNull(response.headers.get("content-encoding"));
+
+      response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME, "Range: bytes=-5");
+      Assert.assertEquals(206, response.status);
+      Assert.assertArrayEquals(Arrays.copyOfRange(catalog, catalog.length - 5, catalog.length), response.body);
+
+      response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME, "Range: bytes=" + catalog.length + "-");
+      Assert.assertEquals(416, response.status);
+      Assert.assertEquals("bytes */" + catalog.length, response.headers.get("content-range"));
+    }
+  }
+
+  @Test
+  public void testGzip() throws IOException {
+    File catalog = new File(hubDir, Packager.PACKAGE_CATALOG_NAME);
+    byte[] compressed = Files.readAllBytes(Gzip.getVariant(catalog).toPath());
+    try (Socket socket = connect()) {
+      Response response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME, "Accept-Encoding: deflate, gzip");
+      Assert.assertEquals(200, response.status);
+      Assert.assertEquals(Gzip.ENCODING, response.headers.get("content-encoding"));
+      Assert.assertEquals("Accept-Encoding", response.headers.get("vary"));
+      Assert.assertArrayEquals(compressed, response.body);
+
+      // gzip with a quality of 0 is not acceptable
+      response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME, "Accept-Encoding: gzip;q=0, identity");
+      Assert.assertEquals(200, response.status);
+      Assert.assertNull(response.headers.get("content-encoding"));
+      Assert.assertArrayEquals(Files.readAllBytes(catalog.toPath()), response.body);
+
+      response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME, "Accept-Encoding: gzip; q=0.0");
+      Assert.assertNull(response.headers.get("content-encoding"));
+    }
+  }
+
+  @Test
+  public void testOnlyHubIsServed() throws IOException {
+    try (Socket socket = connect()) {
+      for (String path : new String[] { "/pom.xml", "/.secret", "/.build-manifest.json", "/packages/../pom.xml",
+        "/%2e%2e/hub/pom.xml", "/packages/%2e%2e/pom.xml", "/..%2fpom.xml", "/", "/packages" }) {
+        Assert.assertEquals(path, 404, send(socket, "GET", path).status);
+      }
+      String spec = String.format("/packages/%s/%s/%s", versionDir.getParentFile().getName(), versionDir.getName(),
+                                  Packager.SPEC_NAME);
+      Assert.assertEquals(200, send(socket, "GET", spec).status);
+    }
+  }
+
+  @Test
+  public void testKeepAlive() throws Exception {
+    try (Socket socket = connect()) {
+      Assert.assertEquals(200, send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME).status);
+      // gives the server time to hand the idle connection back to the selector
+      TimeUnit.MILLISECONDS.sleep(500);
+      Assert.assertEquals(200, send(socket, "GET", "/" + Packager.CATEGORY_CATALOG_NAME).status);
+      TimeUnit.MILLISECONDS.sleep(500);
+      Assert.assertEquals(200, send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME).status);
+    }
+  }
+
+  @Test
+  public void testConnectionClose() throws IOException {
+    try (Socket socket = connect()) {
+      Response response = send(socket, "GET", "/" + Packager.PACKAGE_CATALOG_NAME, "Connection: close");
+      Assert.assertEquals(200, response.status);
+      Assert.assertEquals(-1, socket.getInputStream().read());
+    }
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+    socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(10));
+    return socket;
+  }
+
+  private static Response send(Socket socket, String method, String path, String... headers) throws IOException {
+    StringBuilder request = new StringBuilder(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+      .append("Host: localhost\r\n");
+    for (String header : headers) {
+      request.append(header).append("\r\n");
+    }
+    request.append("\r\n");
+    OutputStream out = socket.getOutputStream();
+    out.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+
+    InputStream in = socket.getInputStream();
+    String statusLine = readLine(in);
+    Response response = new Response(Integer.parseInt(statusLine.split(" ")[1]));
+    for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+      int colon = line.indexOf(':');
+      response.headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+    }
+    String contentLength = response.headers.get("content-length");
+    if (!"HEAD".equals(method) && response.status != 304 && contentLength != null) {
+      response.body = new byte[Integer.parseInt(contentLength)];
+      ByteStreams.readFully(in, response.body);
+    }
+    return response;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b < 0) {
+        throw new IOException("Connection closed");
+      }
+      if (b != '\r') {
+        line.write(b);
+      }
+    }
+    return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * A response read from the server.
+   */
+  private static class Response {
+    private final int status;
+    private final Map<String, String> headers = new TreeMap<>();
+    private byte[] body = new byte[0];
+
+    private Response(int status) {
+      this.status = status;
+    }
+  }
+}
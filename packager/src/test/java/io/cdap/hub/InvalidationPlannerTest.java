@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link InvalidationPlanner}.
+ */
+public class InvalidationPlannerTest {
+  private static final String ROOT = "/v2/";
+
+  @Test
+  public void testSinglePathsAreNotCollapsed() {
+    List<String> paths = ImmutableList.of("/v2/packages.json", "/v2/packages/a/1.0.0/spec.json",
+                                          "/v2/catalog/pages/0.json");
+    List<List<String>> batches = new InvalidationPlanner(ROOT, 3000, 15).plan(paths);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of("/v2/catalog/pages/0.json", "/v2/packages.json",
+                                                          "/v2/packages/a/1.0.0/spec.json")), batches);
+  }
+
+  @Test
+  public void testPackagesAreCollapsed() {
+    List<String> paths = ImmutableList.of("/v2/packages/a/1.0.0/spec.json", "/v2/packages/a/1.0.0/spec.json.asc",
+                                          "/v2/packages/a/2.0.0/icon.png", "/v2/packages/b/1.0.0/spec.json",
+                                          "/v2/packages.json", "/v2/categories.json");
+    List<List<String>> batches = new InvalidationPlanner(ROOT, 3000, 15).plan(paths);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of("/v2/packages/a/*", "/v2/categories.json",
+                                                          "/v2/packages.json", "/v2/packages/b/1.0.0/spec.json")),
+                        batches);
+  }
+
+  @Test
+  public void testOnlyLargestGroupsUseWildcards() {
+    // package i has i + 2 updated files, so the last packages save the most paths
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < i + 2; j++) {
+        paths.add(String.format("/v2/packages/p%d/1.0.0/file%d", i, j));
+      }
+    }
+    List<List<String>> batches = new InvalidationPlanner(ROOT, 3000, 3).plan(paths);
+    Assert.assertEquals(1, batches.size());
+    List<String> batch = batches.get(0);
+    Assert.assertEquals(ImmutableList.of("/v2/packages/p7/*", "/v2/packages/p8/*", "/v2/packages/p9/*"),
+                        batch.subList(0, 3));
+    // everything else is invalidated as is: 2 + 3 + ... + 8 paths
+    Assert.assertEquals(3 + 35, batch.size());
+    Assert.assertEquals(3, countWildcards(batch));
+    assertCovers(batches, paths);
+  }
+
+  @Test
+  public void testPathsOverflowIntoMoreBatches() {
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      paths.add(String.format("/v2/packages/p%02d/1.0.0/spec.json", i));
+      paths.add(String.format("/v2/packages/p%02d/1.0.0/spec.json.asc", i));
+    }
+    List<List<String>> batches = new InvalidationPlanner(ROOT, 10, 2).plan(paths);
+    // 2 wildcards, and 36 other paths, in batches of at most 10
+    Assert.assertEquals(4, batches.size());
+    Assert.assertEquals(ImmutableList.of("/v2/packages/p00/*", "/v2/packages/p01/*"), batches.get(0).subList(0, 2));
+    for (List<String> batch : batches) {
+      Assert.assertTrue(batch.size() <= 10);
+    }
+    for (List<String> batch : batches.subList(1, batches.size())) {
+      Assert.assertEquals(0, countWildcards(batch));
+    }
+    Assert.assertEquals(38, InvalidationPlanner.countPaths(batches));
+    assertCovers(batches, paths);
+  }
+
+  @Test
+  public void testPlanIsDeterministic() {
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      paths.add(String.format("/v2/packages/p%d/1.0.0/spec.json", i % 7));
+      paths.add(String.format("/v2/catalog/pages/%d.json", i));
+    }
+    InvalidationPlanner planner = new InvalidationPlanner(ROOT, 20, 3);
+    List<List<String>> batches = planner.plan(paths);
+    Collections.reverse(paths);
+    Assert.assertEquals(batches, planner.plan(paths));
+    assertCovers(batches, paths);
+  }
+
+  @Test
+  public void testNoPaths() {
+    Assert.assertEquals(Collections.emptyList(), new InvalidationPlanner(ROOT, 3000, 15).plan(ImmutableList.of()));
+  }
+
+  private static int countWildcards(List<String> batch) {
+    int count = 0;
+    for (String path : batch) {
+      if (path.endsWith("*")) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static void assertCovers(List<List<String>> batches, List<String> paths) {
+    for (String path : paths) {
+      boolean covered = false;
+      for (List<String> batch : batches) {
+        for (String invalidation : batch) {
+          covered |= invalidation.endsWith("*") ?
+            path.startsWith(invalidation.substring(0, invalidation.length() - 1)) : path.equals(invalidation);
+        }
+      }
+      Assert.assertTrue("Path " + path + " is not invalidated", covered);
+    }
+  }
+}
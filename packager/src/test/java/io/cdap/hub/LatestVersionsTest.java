@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.cdap.hub.spec.PackageMeta;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link LatestVersions}.
+ */
+public class LatestVersionsTest {
+  private static final String ALL_VERSIONS = "[6.0.0,7.0.0-SNAPSHOT)";
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testSemanticOrder() throws IOException {
+    JsonObject latest = write(ImmutableList.of(pkg("a", "1.9.0", ALL_VERSIONS, false),
+                                               pkg("a", "1.10.0", ALL_VERSIONS, false),
+                                               pkg("a", "1.2.0", ALL_VERSIONS, false)));
+    JsonObject a = latest.getAsJsonObject("a");
+    Assert.assertEquals("1.10.0", a.get("stable").getAsString());
+    Assert.assertFalse(a.has("beta"));
+    Assert.assertEquals(ImmutableMap.of("6.0", "1.10.0", "6.1", "1.10.0", "6.2", "1.10.0"),
+                        toMap(a.getAsJsonObject("cdapVersions")));
+  }
+
+  @Test
+  public void testBetas() throws IOException {
+    JsonObject latest = write(ImmutableList.of(pkg("a", "1.0.0", ALL_VERSIONS, false),
+                                               pkg("a", "1.1.0-SNAPSHOT", ALL_VERSIONS, false),
+                                               pkg("b", "2.0.0", ALL_VERSIONS, true),
+                                               pkg("b", "1.0.0", ALL_VERSIONS, false)));
+    // a snapshot is a beta
+    JsonObject a = latest.getAsJsonObject("a");
+    Assert.assertEquals("1.0.0", a.get("stable").getAsString());
+    Assert.assertEquals("1.1.0-SNAPSHOT", a.get("beta").getAsString());
+    // so is a version whose spec says it is
+    JsonObject b = latest.getAsJsonObject("b");
+    Assert.assertEquals("1.0.0", b.get("stable").getAsString());
+    Assert.assertEquals("2.0.0", b.get("beta").getAsString());
+    Assert.assertEquals(ImmutableMap.of("6.0", "1.0.0", "6.1", "1.0.0", "6.2", "1.0.0"),
+                        toMap(b.getAsJsonObject("cdapVersions")));
+  }
+
+  @Test
+  public void testStablePreferredPerMinorVersion() throws IOException {
+    JsonObject latest = write(ImmutableList.of(pkg("a", "1.0.0", "[6.0.0,6.2.0-SNAPSHOT)", false),
+                                               pkg("a", "1.1.0", ALL_VERSIONS, true),
+                                               pkg("a", "1.2.0-SNAPSHOT", "[6.2.0,7.0.0-SNAPSHOT)", false)));
+    JsonObject a = latest.getAsJsonObject("a");
+    Assert.assertEquals("1.0.0", a.get("stable").getAsString());
+    Assert.assertEquals("1.2.0-SNAPSHOT", a.get("beta").getAsString());
+    // the stable version is picked where it is compatible, even though the betas are later
+    Assert.assertEquals(ImmutableMap.of("6.0", "1.0.0", "6.1", "1.0.0", "6.2", "1.2.0-SNAPSHOT"),
+                        toMap(a.getAsJsonObject("cdapVersions")));
+  }
+
+  @Test
+  public void testUnparsableVersions() throws IOException {
+    JsonObject latest = write(ImmutableList.of(pkg("a", "beta", ALL_VERSIONS, false),
+                                               pkg("a", "alpha", ALL_VERSIONS, false)));
+    // unparsable versions are compared as strings, and are not betas unless the spec says so
+    JsonObject a = latest.getAsJsonObject("a");
+    Assert.assertEquals("beta", a.get("stable").getAsString());
+    Assert.assertFalse(a.has("beta"));
+  }
+
+  private JsonObject write(List<Package> packages) throws IOException {
+    Map<String, File> files = LatestVersions.write(tmpFolder.getRoot(), packages, Version.parse("6.2.0"), false);
+    Assert.assertEquals(ImmutableList.of(LatestVersions.LATEST_NAME, LatestVersions.LATEST_NAME + Gzip.EXTENSION),
+                        ImmutableList.copyOf(files.keySet()));
+    String json = Files.toString(files.get(LatestVersions.LATEST_NAME), StandardCharsets.UTF_8);
+    return new JsonParser().parse(json).getAsJsonObject();
+  }
+
+  private static Map<String, String> toMap(JsonObject object) {
+    Map<String, String> map = new LinkedHashMap<>();
+    for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+      map.put(entry.getKey(), entry.getValue().getAsString());
+    }
+    return map;
+  }
+
+  private static Package pkg(String name, String version, String cdapVersion, boolean beta) {
+    PackageMeta meta = new PackageMeta(name, version, name, name, "Cask", "Cask", cdapVersion, null, null, 0L, beta,
+                                       ImmutableSet.of("pipeline"), false, null);
+    return new Package(name, version, meta, null, null, null, null, Collections.emptyList());
+  }
+}
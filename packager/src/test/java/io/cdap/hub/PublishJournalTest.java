@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * Tests for {@link PublishJournal}.
+ */
+public class PublishJournalTest {
+  private static final String TARGET = "s3://hub/v2";
+  private static final FileDigest SPEC = new FileDigest(100, 0, "md5-spec", "sha-spec", null);
+  private static final FileDigest JAR = new FileDigest(2000, 0, "md5-jar", "sha-jar", null);
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testReplay() throws IOException {
+    File journalFile = new File(tmpFolder.getRoot(), ".publish-journal");
+    PublishJournal journal = PublishJournal.open(journalFile, TARGET);
+    journal.recordPut("v2/packages/a/1.0.0/spec.json", SPEC);
+    journal.recordPut("v2/packages/a/1.0.0/a.jar", JAR);
+    journal.recordDelete("v2/packages/a/0.9.0/a.jar");
+
+    // the publish dies, and is resumed
+    journal = PublishJournal.open(journalFile, TARGET);
+    Assert.assertTrue(journal.isPut("v2/packages/a/1.0.0/spec.json", SPEC));
+    Assert.assertTrue(journal.isPut("v2/packages/a/1.0.0/a.jar", JAR));
+    // content that changed since it was put is put again
+    Assert.assertFalse(journal.isPut("v2/packages/a/1.0.0/spec.json", JAR));
+    Assert.assertFalse(journal.isPut("v2/packages/a/1.0.0/spec.json",
+                                     new FileDigest(101, 0, "md5-spec", "sha-spec", null)));
+    Assert.assertFalse(journal.isPut("v2/packages/b/1.0.0/spec.json", SPEC));
+    Assert.assertTrue(journal.isDeleted("v2/packages/a/0.9.0/a.jar"));
+    Assert.assertFalse(journal.isDeleted("v2/packages/a/1.0.0/a.jar"));
+    Assert.assertEquals(ImmutableSet.of("v2/packages/a/1.0.0/spec.json", "v2/packages/a/1.0.0/a.jar",
+                                        "v2/packages/a/0.9.0/a.jar"),
+                        journal.getPendingInvalidations());
+  }
+
+  @Test
+  public void testPutAfterDelete() throws IOException {
+    File journalFile = new File(tmpFolder.getRoot(), ".publish-journal");
+    PublishJournal journal = PublishJournal.open(journalFile, TARGET);
+    journal.recordPut("v2/packages.json", SPEC);
+    journal.recordDelete("v2/packages.json");
+    journal.recordDelete("v2/categories.json");
+    journal.recordPut("v2/categories.json", SPEC);
+
+    journal = PublishJournal.open(journalFile, TARGET);
+    Assert.assertFalse(journal.isPut("v2/packages.json", SPEC));
+    Assert.assertTrue(journal.isDeleted("v2/packages.json"));
+    Assert.assertTrue(journal.isPut("v2/categories.json", SPEC));
+    Assert.assertFalse(journal.isDeleted("v2/categories.json"));
+  }
+
+  @Test
+  public void testInvalidations() throws IOException {
+    File journalFile = new File(tmpFolder.getRoot(), ".publish-journal");
+    PublishJournal journal = PublishJournal.open(journalFile, TARGET);
+    journal.recordPut("v2/packages/a/1.0.0/spec.json", SPEC);
+    journal.recordPut("v2/packages/a/1.0.0/a.jar", JAR);
+    journal.recordPut("v2/packages/ab/1.0.0/spec.json", SPEC);
+    journal.recordPut("v2/packages.json", SPEC);
+    journal.recordInvalidation(ImmutableList.of("/v2/packages/a/*", "/v2/packages.json"));
+    Assert.assertEquals(ImmutableSet.of("v2/packages/ab/1.0.0/spec.json"), journal.getPendingInvalidations());
+
+    // an object that is changed again after it was invalidated has to be invalidated again
+    journal.recordPut("v2/packages.json", JAR);
+    journal = PublishJournal.open(journalFile, TARGET);
+    Assert.assertEquals(ImmutableSet.of("v2/packages/ab/1.0.0/spec.json", "v2/packages.json"),
+                        journal.getPendingInvalidations());
+    Assert.assertTrue(journal.isPut("v2/packages/a/1.0.0/a.jar", JAR));
+  }
+
+  @Test
+  public void testTruncatedLastLine() throws IOException {
+    File journalFile = new File(tmpFolder.getRoot(), ".publish-journal");
+    PublishJournal journal = PublishJournal.open(journalFile, TARGET);
+    journal.recordPut("v2/packages/a/1.0.0/spec.json", SPEC);
+    // the publish dies while writing an entry
+    Files.append("{\"op\":\"put\",\"key\":\"v2/packages/a/1.0.0/a.j", journalFile, StandardCharsets.UTF_8);
+
+    journal = PublishJournal.open(journalFile, TARGET);
+    Assert.assertTrue(journal.isPut("v2/packages/a/1.0.0/spec.json", SPEC));
+    Assert.assertFalse(journal.isPut("v2/packages/a/1.0.0/a.jar", JAR));
+    Assert.assertEquals(ImmutableSet.of("v2/packages/a/1.0.0/spec.json"), journal.getPendingInvalidations());
+
+    // entries recorded after the cut off line can still be replayed
+    journal.recordPut("v2/packages/a/1.0.0/a.jar", JAR);
+    journal = PublishJournal.open(journalFile, TARGET);
+    Assert.assertTrue(journal.isPut("v2/packages/a/1.0.0/spec.json", SPEC));
+    Assert.assertTrue(journal.isPut("v2/packages/a/1.0.0/a.jar", JAR));
+  }
+
+  @Test
+  public void testOtherTarget() throws IOException {
+    File journalFile = new File(tmpFolder.getRoot(), ".publish-journal");
+    PublishJournal journal = PublishJournal.open(journalFile, TARGET);
+    journal.recordPut("v2/packages.json", SPEC);
+    journal.recordDelete("v2/categories.json");
+
+    journal = PublishJournal.open(journalFile, "s3://hub/v3");
+    Assert.assertFalse(journal.isPut("v2/packages.json", SPEC));
+    Assert.assertFalse(journal.isDeleted("v2/categories.json"));
+    Assert.assertEquals(Collections.emptySet(), journal.getPendingInvalidations());
+
+    // the journal of the other target replaced it
+    journal = PublishJournal.open(journalFile, TARGET);
+    Assert.assertFalse(journal.isPut("v2/packages.json", SPEC));
+  }
+
+  @Test
+  public void testUnreadableJournal() throws IOException {
+    File journalFile = new File(tmpFolder.getRoot(), ".publish-journal");
+    Files.write("not a journal\n", journalFile, StandardCharsets.UTF_8);
+    PublishJournal journal = PublishJournal.open(journalFile, TARGET);
+    Assert.assertEquals(Collections.emptySet(), journal.getPendingInvalidations());
+    journal.recordPut("v2/packages.json", SPEC);
+
+    journal = PublishJournal.open(journalFile, TARGET);
+    Assert.assertTrue(journal.isPut("v2/packages.json", SPEC));
+  }
+
+  @Test
+  public void testComplete() throws IOException {
+    File journalFile = new File(tmpFolder.getRoot(), ".publish-journal");
+    PublishJournal journal = PublishJournal.open(journalFile, TARGET);
+    journal.recordPut("v2/packages.json", SPEC);
+    journal.complete();
+    Assert.assertFalse(journalFile.exists());
+
+    journal = PublishJournal.open(journalFile, TARGET);
+    Assert.assertFalse(journal.isPut("v2/packages.json", SPEC));
+    Assert.assertEquals(Collections.emptySet(), journal.getPendingInvalidations());
+  }
+}
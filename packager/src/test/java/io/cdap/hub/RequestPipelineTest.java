@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link RequestPipeline}.
+ */
+public class RequestPipelineTest {
+
+  @Test
+  public void testRequestsComplete() throws Exception {
+    RequestPipeline pipeline = new RequestPipeline("test", 2);
+    final AtomicInteger completed = new AtomicInteger();
+    for (int i = 0; i < 20; i++) {
+      pipeline.submit("count", increment(completed));
+    }
+    pipeline.await();
+    Assert.assertEquals(20, completed.get());
+    Assert.assertTrue(pipeline.isIdle());
+  }
+
+  @Test
+  public void testFailureIsKeptUntilAwait() throws Exception {
+    RequestPipeline pipeline = new RequestPipeline("test", 2);
+    final CountDownLatch release = new CountDownLatch(1);
+    pipeline.submit("wait", new RequestPipeline.Request() {
+      @Override
+      public void run() throws InterruptedException {
+        release.await();
+      }
+    });
+    Assert.assertFalse(pipeline.isIdle());
+    pipeline.submit("fail", new RequestPipeline.Request() {
+      @Override
+      public void run() throws IOException {
+        throw new IOException("failed");
+      }
+    });
+
+    // every submit rethrows the failure without starting the request
+    final AtomicInteger started = new AtomicInteger();
+    for (int i = 0; i < 3; i++) {
+      try {
+        pipeline.submit("count", increment(started));
+        Assert.fail("Expected the failure to be rethrown");
+      } catch (IOException e) {
+        Assert.assertEquals("failed", e.getMessage());
+      }
+    }
+    Assert.assertEquals(0, started.get());
+
+    release.countDown();
+    try {
+      pipeline.await();
+      Assert.fail("Expected the failure to be rethrown");
+    } catch (IOException e) {
+      Assert.assertEquals("failed", e.getMessage());
+    }
+    Assert.assertTrue(pipeline.isIdle());
+
+    // the pipeline can be used again once await rethrew the failure
+    pipeline.submit("count", increment(started));
+    pipeline.await();
+    Assert.assertEquals(1, started.get());
+  }
+
+  private static RequestPipeline.Request increment(final AtomicInteger counter) {
+    return new RequestPipeline.Request() {
+      @Override
+      public void run() {
+        counter.incrementAndGet();
+      }
+    };
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link VersionRange}.
+ */
+public class VersionRangeTest {
+
+  @Test
+  public void testParse() {
+    VersionRange range = VersionRange.parse("[6.1.0-SNAPSHOT, 7.0.0-SNAPSHOT)");
+    Assert.assertEquals(Version.parse("6.1.0-SNAPSHOT"), range.getLower());
+    Assert.assertTrue(range.isLowerInclusive());
+    Assert.assertEquals(Version.parse("7.0.0-SNAPSHOT"), range.getUpper());
+    Assert.assertFalse(range.isUpperInclusive());
+    Assert.assertEquals("[6.1.0-SNAPSHOT,7.0.0-SNAPSHOT)", range.toString());
+    Assert.assertEquals(range, VersionRange.parse(range.toString()));
+
+    range = VersionRange.parse("6.5.0");
+    Assert.assertTrue(range.contains(Version.parse("6.5.0")));
+    Assert.assertFalse(range.contains(Version.parse("6.5.1")));
+  }
+
+  @Test
+  public void testInvalid() {
+    for (String invalid : new String[] { "", "[6.0.0", "[6.0.0,7.0.0", "6.0.0,7.0.0)", "[6.0.0,7.0.0,8.0.0)",
+      "[abc,7.0.0)" }) {
+      try {
+        VersionRange.parse(invalid);
+        Assert.fail("Expected '" + invalid + "' to be invalid");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testContains() {
+    VersionRange range = VersionRange.parse("[6.1.0,7.0.0-SNAPSHOT)");
+    Assert.assertTrue(range.contains(Version.parse("6.1.0")));
+    Assert.assertTrue(range.contains(Version.parse("6.10.2")));
+    Assert.assertFalse(range.contains(Version.parse("6.1.0-SNAPSHOT")));
+    Assert.assertFalse(range.contains(Version.parse("7.0.0-SNAPSHOT")));
+    Assert.assertFalse(range.contains(Version.parse("7.0.0")));
+
+    range = VersionRange.parse("(6.1.0,6.2.0]");
+    Assert.assertFalse(range.contains(Version.parse("6.1.0")));
+    Assert.assertTrue(range.contains(Version.parse("6.1.1")));
+    Assert.assertTrue(range.contains(Version.parse("6.2.0")));
+    Assert.assertFalse(range.contains(Version.parse("6.2.1-SNAPSHOT")));
+  }
+
+  @Test
+  public void testEmpty() {
+    Assert.assertTrue(VersionRange.parse("[6.0.0,6.0.0-SNAPSHOT)").isEmpty());
+    Assert.assertTrue(VersionRange.parse("[6.0.0,6.0.0)").isEmpty());
+    Assert.assertTrue(VersionRange.parse("(6.0.0,6.0.0]").isEmpty());
+    Assert.assertFalse(VersionRange.parse("[6.0.0,6.0.0]").isEmpty());
+    Assert.assertFalse(VersionRange.parse("[6.0.0-SNAPSHOT,6.0.0)").isEmpty());
+  }
+
+  @Test
+  public void testIntersects() {
+    VersionRange range = VersionRange.parse("[6.0.0,7.0.0)");
+    Assert.assertTrue(range.intersects(VersionRange.parse("[6.5.0,6.6.0)")));
+    Assert.assertTrue(range.intersects(VersionRange.parse("[5.0.0,6.0.0]")));
+    Assert.assertTrue(range.intersects(VersionRange.parse("[6.9.0,8.0.0)")));
+    Assert.assertFalse(range.intersects(VersionRange.parse("[5.0.0,6.0.0)")));
+    Assert.assertFalse(range.intersects(VersionRange.parse("[7.0.0,8.0.0)")));
+    Assert.assertFalse(range.intersects(VersionRange.parse("[6.5.0,6.5.0-SNAPSHOT)")));
+  }
+}
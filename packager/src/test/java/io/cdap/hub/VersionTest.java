@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2026 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.hub;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Version}.
+ */
+public class VersionTest {
+
+  @Test
+  public void testParse() {
+    Version version = Version.parse(" 6.5.1-SNAPSHOT ");
+    Assert.assertEquals(6, version.getMajor());
+    Assert.assertEquals(5, version.getMinor());
+    Assert.assertEquals(1, version.getPart(2));
+    Assert.assertEquals(0, version.getPart(3));
+    Assert.assertEquals("SNAPSHOT", version.getSuffix());
+    Assert.assertFalse(version.isRelease());
+    Assert.assertEquals("6.5.1-SNAPSHOT", version.toString());
+
+    version = Version.parse("4");
+    Assert.assertEquals(4, version.getMajor());
+    Assert.assertEquals(0, version.getMinor());
+    Assert.assertNull(version.getSuffix());
+    Assert.assertTrue(version.isRelease());
+  }
+
+  @Test
+  public void testInvalid() {
+    for (String invalid : new String[] { "", "abc", "1.", ".1", "1..2", "1.2-", "99999999999.0" }) {
+      try {
+        Version.parse(invalid);
+        Assert.fail("Expected '" + invalid + "' to be invalid");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testCompare() {
+    assertOrdered("1.9.0", "1.10.0");
+    assertOrdered("1.0.0-SNAPSHOT", "1.0.0");
+    assertOrdered("1.0.0-BETA", "1.0.0-SNAPSHOT");
+    assertOrdered("1.0.0", "1.0.1-SNAPSHOT");
+    assertOrdered("6.9.9", "7.0.0-SNAPSHOT");
+    assertOrdered("2", "2.0.1");
+  }
+
+  @Test
+  public void testTrailingZeros() {
+    Assert.assertEquals(Version.parse("6.5"), Version.parse("6.5.0"));
+    Assert.assertEquals(Version.parse("6.5").hashCode(), Version.parse("6.5.0").hashCode());
+    Assert.assertEquals(0, Version.parse("6.5.0-SNAPSHOT").compareTo(Version.parse("6.5-SNAPSHOT")));
+    Assert.assertNotEquals(Version.parse("6.5.0"), Version.parse("6.5.0-SNAPSHOT"));
+  }
+
+  private static void assertOrdered(String lower, String higher) {
+    Version lowerVersion = Version.parse(lower);
+    Version higherVersion = Version.parse(higher);
+    Assert.assertTrue(lower + " should be before " + higher, lowerVersion.compareTo(higherVersion) < 0);
+    Assert.assertTrue(higher + " should be after " + lower, higherVersion.compareTo(lowerVersion) > 0);
+  }
+}